@@ -1,5 +1,6 @@
 from fastapi import FastAPI, UploadFile, HTTPException, File
 from fastapi.middleware.cors import CORSMiddleware
+from fastapi.responses import StreamingResponse
 from typing import List, Optional
 from pydantic import BaseModel
 import os
@@ -32,6 +33,13 @@ class EmbeddingRequest(BaseModel):
     course_id: int
     chunks: List[dict]
 
+class EmbeddingDeleteRequest(BaseModel):
+    course_id: int
+    ids: List[str]
+
+class EmbeddingResetRequest(BaseModel):
+    course_id: int
+
 class NotesRequest(BaseModel):
     course_id: int
     language: str = "en"
@@ -90,6 +98,35 @@ async def create_embeddings(request: EmbeddingRequest):
         traceback.print_exc()
         raise HTTPException(status_code=500, detail=str(e))
 
+@app.post("/api/embedding/delete")
+async def delete_embeddings(request: EmbeddingDeleteRequest):
+    """Delete chunks from a course's vector collection by id."""
+    result = embedding_service.delete_embeddings(request.course_id, request.ids)
+    if not result["success"]:
+        raise HTTPException(status_code=500, detail=result.get("error"))
+    return result
+
+@app.post("/api/embedding/metadata")
+async def update_embedding_metadata(request: EmbeddingRequest):
+    """Replace the metadata of stored chunks (given by id) without re-encoding them."""
+    result = embedding_service.update_metadata(request.course_id, request.chunks)
+    if not result["success"]:
+        raise HTTPException(status_code=500, detail=result.get("error"))
+    return result
+
+@app.post("/api/embedding/reset")
+async def reset_embeddings(request: EmbeddingResetRequest):
+    """Drop every chunk stored for a course."""
+    return embedding_service.reset_embeddings(request.course_id)
+
+@app.get("/api/embedding/count")
+async def count_embeddings(course_id: int, source: Optional[str] = None):
+    """Count the chunks stored for a course, optionally for one source."""
+    result = embedding_service.count_embeddings(course_id, source)
+    if not result["success"]:
+        raise HTTPException(status_code=500, detail=result.get("error"))
+    return result
+
 @app.get("/api/embedding/search")
 async def search_embeddings(
     course_id: int,
@@ -133,6 +170,14 @@ async def chat(request: ChatRequest):
         raise HTTPException(status_code=500, detail=result.get("error"))
     return result
 
+@app.post("/api/chat/stream")
+def chat_stream(request: ChatRequest):
+    """Answer questions about course content, streaming the answer as JSON lines."""
+    return StreamingResponse(
+        chat_service.chat_stream(request.course_id, request.question, request.language),
+        media_type="application/x-ndjson"
+    )
+
 if __name__ == "__main__":
     import uvicorn
     import os
@@ -1,7 +1,8 @@
 from langchain_community.llms import Ollama
 from langdetect import detect
 import chromadb
-from typing import Dict, Any, Optional
+import json
+from typing import Dict, Any, Iterator, Optional
 from sentence_transformers import SentenceTransformer
 
 class ChatService:
@@ -35,32 +36,12 @@ class ChatService:
             if language is None:
                 language = detect(question)
 
-            collection_name = f"course_{course_id}_mixed"
-            
-            # Check if collection exists
-            try:
-                collection = self.chroma_client.get_collection(collection_name)
-            except Exception as e:
+            context, sources, error = self._retrieve(course_id, question)
+            if error:
                 return {
                     "success": False,
-                    "error": f"Course content not found. Please process the course first. Collection '{collection_name}' does not exist."
+                    "error": error
                 }
-            
-            # Generate embedding for question using the same model as stored embeddings
-            question_embedding = self.embedding_model.encode([question])[0].tolist()
-            
-            # Use query_embeddings instead of query_texts to avoid dimension mismatch
-            results = collection.query(query_embeddings=[question_embedding], n_results=5)
-
-            # Check if we have any results
-            if not results['documents'] or len(results['documents'][0]) == 0:
-                return {
-                    "success": False,
-                    "error": "No relevant content found in the course material to answer this question."
-                }
-
-            context = "\n\n".join(results['documents'][0])
-            sources = results['metadatas'][0] if results['metadatas'] and len(results['metadatas'][0]) > 0 else []
 
             retrieved_langs = [meta.get('lang', 'unknown') for meta in sources] if sources else []
 
@@ -85,6 +66,67 @@ class ChatService:
                 "error": str(e)
             }
 
+    def chat_stream(self, course_id: int, question: str,
+                    language: Optional[str] = None) -> Iterator[str]:
+        """
+        Same as chat, but yields the answer as it is generated, one JSON object
+        per line: a "meta" event with the sources, one "token" event per chunk
+        of the answer, then "done". Failures are reported as an "error" event.
+        """
+        try:
+            if language is None:
+                language = detect(question)
+
+            context, sources, error = self._retrieve(course_id, question)
+            if error:
+                yield json.dumps({"type": "error", "error": error}) + "\n"
+                return
+
+            retrieved_langs = [meta.get('lang', 'unknown') for meta in sources] if sources else []
+            yield json.dumps({
+                "type": "meta",
+                "question": question,
+                "question_lang": language,
+                "sources": sources,
+                "retrieved_langs": retrieved_langs
+            }) + "\n"
+
+            prompt = self._get_chat_prompt(language, context, question)
+            for token in self.llm.stream(prompt):
+                yield json.dumps({"type": "token", "text": token}) + "\n"
+
+            yield json.dumps({"type": "done"}) + "\n"
+
+        except Exception as e:
+            import traceback
+            error_trace = traceback.format_exc()
+            print(f"Error in chat stream for course {course_id}: {error_trace}")
+            yield json.dumps({"type": "error", "error": str(e)}) + "\n"
+
+    def _retrieve(self, course_id: int, question: str):
+        """Return (context, sources, error) for the question; error is None on success."""
+        collection_name = f"course_{course_id}_mixed"
+
+        # Check if collection exists
+        try:
+            collection = self.chroma_client.get_collection(collection_name)
+        except Exception:
+            return None, None, f"Course content not found. Please process the course first. Collection '{collection_name}' does not exist."
+
+        # Generate embedding for question using the same model as stored embeddings
+        question_embedding = self.embedding_model.encode([question])[0].tolist()
+
+        # Use query_embeddings instead of query_texts to avoid dimension mismatch
+        results = collection.query(query_embeddings=[question_embedding], n_results=5)
+
+        # Check if we have any results
+        if not results['documents'] or len(results['documents'][0]) == 0:
+            return None, None, "No relevant content found in the course material to answer this question."
+
+        context = "\n\n".join(results['documents'][0])
+        sources = results['metadatas'][0] if results['metadatas'] and len(results['metadatas'][0]) > 0 else []
+        return context, sources, None
+
     def _get_chat_prompt(self, language: str, context: str, question: str) -> str:
         """Generate prompt for chat response."""
         prompts = {
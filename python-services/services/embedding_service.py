@@ -76,11 +76,21 @@ class EmbeddingService:
             print(f"Creating embeddings for {len(texts)} chunks for course {course_id}")
             embeddings = self.model.encode(texts)
 
-            collection.add(
+            # Callers that embed a course in several calls (e.g. PDF before transcript)
+            # send their own stable ids; chunks without one are numbered by position
+            ids = []
+            for i, chunk in enumerate(valid_chunks):
+                if chunk.get('id'):
+                    ids.append(str(chunk['id']))
+                else:
+                    ids.append(f"chunk_{i:04d}")
+
+            # Upsert, so a re-embedded chunk replaces the vector stored under its id
+            collection.upsert(
                 documents=texts,
                 embeddings=embeddings.tolist(),
                 metadatas=metadatas,
-                ids=[f"chunk_{i:04d}" for i in range(len(texts))]
+                ids=ids
             )
 
             return {
@@ -143,6 +153,91 @@ class EmbeddingService:
                 "error": str(e)
             }
 
+    def delete_embeddings(self, course_id: int, ids: List[str]) -> Dict[str, Any]:
+        """Delete chunks by id, e.g. chunks a re-processed course no longer has."""
+        try:
+            collection_name = f"course_{course_id}_mixed"
+            try:
+                collection = self.chroma_client.get_collection(collection_name)
+            except Exception:
+                # Nothing stored for this course, so nothing to delete
+                return {"success": True, "collection": collection_name, "chunks_deleted": 0}
+
+            if ids:
+                collection.delete(ids=ids)
+
+            return {
+                "success": True,
+                "collection": collection_name,
+                "chunks_deleted": len(ids)
+            }
+        except Exception as e:
+            return {
+                "success": False,
+                "error": str(e)
+            }
+
+    def update_metadata(self, course_id: int, chunks: List[Dict[str, Any]]) -> Dict[str, Any]:
+        """Replace the metadata of stored chunks without re-encoding their text,
+        e.g. chunks whose text moved to other offsets or pages."""
+        try:
+            collection_name = f"course_{course_id}_mixed"
+            collection = self.chroma_client.get_collection(collection_name)
+
+            ids = [str(chunk['id']) for chunk in chunks]
+            metadatas = [chunk.get('metadata', {}) for chunk in chunks]
+            if ids:
+                collection.update(ids=ids, metadatas=metadatas)
+
+            return {
+                "success": True,
+                "collection": collection_name,
+                "chunks_updated": len(ids)
+            }
+        except Exception as e:
+            return {
+                "success": False,
+                "error": str(e)
+            }
+
+    def reset_embeddings(self, course_id: int) -> Dict[str, Any]:
+        """Drop a course's collection, e.g. vectors stored under ids the caller no longer tracks."""
+        collection_name = f"course_{course_id}_mixed"
+        try:
+            self.chroma_client.delete_collection(collection_name)
+        except Exception:
+            # No collection yet, so nothing to drop
+            pass
+        return {
+            "success": True,
+            "collection": collection_name
+        }
+
+    def count_embeddings(self, course_id: int, source: str = None) -> Dict[str, Any]:
+        """Count the chunks stored for a course, optionally only those of one source."""
+        try:
+            collection_name = f"course_{course_id}_mixed"
+            try:
+                collection = self.chroma_client.get_collection(collection_name)
+            except Exception:
+                return {"success": True, "collection": collection_name, "count": 0}
+
+            if source:
+                count = len(collection.get(where={"source": source}, include=[])["ids"])
+            else:
+                count = collection.count()
+
+            return {
+                "success": True,
+                "collection": collection_name,
+                "count": count
+            }
+        except Exception as e:
+            return {
+                "success": False,
+                "error": str(e)
+            }
+
     def get_collection_stats(self, course_id: int) -> Dict[str, Any]:
         """Get statistics about a course collection."""
         try:
@@ -0,0 +1,358 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chat exchanges (question, answer, languages, sources).
+ * record() only queues the exchange; a background writer inserts queued rows in
+ * JDBC batches, so request threads never wait on the database. The queue is
+ * bounded: when it is full a caller waits at most OFFER_TIMEOUT_MS and the
+ * exchange is then dropped and counted.
+ */
+public class ChatHistoryDAO {
+
+    private static final int QUEUE_CAPACITY =
+        System.getenv("CHAT_HISTORY_QUEUE_CAPACITY") != null ?
+        Integer.parseInt(System.getenv("CHAT_HISTORY_QUEUE_CAPACITY")) : 10000;
+
+    private static final int BATCH_SIZE =
+        System.getenv("CHAT_HISTORY_BATCH_SIZE") != null ?
+        Integer.parseInt(System.getenv("CHAT_HISTORY_BATCH_SIZE")) : 100;
+
+    private static final long OFFER_TIMEOUT_MS =
+        System.getenv("CHAT_HISTORY_OFFER_TIMEOUT_MS") != null ?
+        Long.parseLong(System.getenv("CHAT_HISTORY_OFFER_TIMEOUT_MS")) : 50;
+
+    // How long the writer waits for more rows before writing a partial batch
+    private static final long LINGER_MS = 200;
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final String INSERT_SQL =
+        "INSERT INTO chat_history (course_id, user_id, question, question_lang, answer, answer_lang, " +
+        "sources, retrieved_langs, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    private static final AtomicLong queued = new AtomicLong();
+    private static final AtomicLong written = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final AtomicLong failed = new AtomicLong();
+    private static final AtomicLong batches = new AtomicLong();
+
+    private static volatile boolean running = true;
+    private static final Thread writer = new Thread(ChatHistoryDAO::writeLoop, "chat-history-writer");
+
+    static {
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static class Entry {
+        public long id;
+        public int courseId;
+        public String userId;
+        public String question;
+        public String questionLang;
+        public String answer;
+        public String answerLang;
+        public String sources;
+        public String retrievedLangs;
+        public Timestamp createdAt;
+
+        public Entry(int courseId, String userId, String question, String questionLang, String answer,
+                     String answerLang, String sources, String retrievedLangs) {
+            this.courseId = courseId;
+            this.userId = userId;
+            this.question = question;
+            this.questionLang = questionLang;
+            this.answer = answer;
+            this.answerLang = answerLang;
+            this.sources = sources;
+            this.retrievedLangs = retrievedLangs;
+            this.createdAt = new Timestamp(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * One page of history, newest first. Pass nextBeforeId as beforeId to get
+     * the following page; it is null on the last page.
+     */
+    public static class Page {
+        public final List<Entry> entries;
+        public final Long nextBeforeId;
+
+        Page(List<Entry> entries, Long nextBeforeId) {
+            this.entries = entries;
+            this.nextBeforeId = nextBeforeId;
+        }
+    }
+
+    /**
+     * Queue an exchange for writing.
+     *
+     * @return false if the queue stayed full and the exchange was dropped
+     */
+    public static boolean record(Entry entry) {
+        try {
+            if (running && queue.offer(entry, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                queued.incrementAndGet();
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    private static void writeLoop() {
+        List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Give a burst a moment to fill the batch
+                long lingerUntil = System.currentTimeMillis() + LINGER_MS;
+                while (batch.size() < BATCH_SIZE) {
+                    long wait = lingerUntil - System.currentTimeMillis();
+                    Entry next = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, BATCH_SIZE - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // shutdown() wakes a waiting writer; the loop then drains what is left
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Insert a batch in one transaction. If the batch fails (for example because a
+     * course was deleted meanwhile), the rows are retried one by one so a single
+     * bad row does not lose the others.
+     */
+    private static void writeBatch(List<Entry> batch) {
+        Connection connection = null;
+        PreparedStatement statement = null;
+        boolean committed = false;
+
+        try {
+            connection = DatabaseManager.getConnection();
+            connection.setAutoCommit(false);
+            statement = connection.prepareStatement(INSERT_SQL);
+            for (Entry entry : batch) {
+                bind(statement, entry);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            connection.commit();
+            committed = true;
+            batches.incrementAndGet();
+            written.addAndGet(batch.size());
+        } catch (SQLException | ClassNotFoundException e) {
+            System.err.println("Error writing chat history batch: " + e.getMessage());
+            if (connection != null) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackEx) {
+                    System.err.println("Error rolling back transaction: " + rollbackEx.getMessage());
+                }
+            }
+        } finally {
+            DatabaseManager.closeStatement(statement);
+            if (connection != null) {
+                try {
+                    connection.setAutoCommit(true);
+                } catch (SQLException e) {
+                    System.err.println("Error resetting auto-commit: " + e.getMessage());
+                }
+            }
+            DatabaseManager.closeConnection(connection);
+        }
+
+        if (!committed) {
+            for (Entry entry : batch) {
+                writeOne(entry);
+            }
+        }
+    }
+
+    private static void writeOne(Entry entry) {
+        Connection connection = null;
+        PreparedStatement statement = null;
+        try {
+            connection = DatabaseManager.getConnection();
+            statement = connection.prepareStatement(INSERT_SQL);
+            bind(statement, entry);
+            statement.executeUpdate();
+            written.incrementAndGet();
+        } catch (SQLException | ClassNotFoundException e) {
+            failed.incrementAndGet();
+            System.err.println("Error writing chat history for course " + entry.courseId + ": " + e.getMessage());
+        } finally {
+            DatabaseManager.closeStatement(statement);
+            DatabaseManager.closeConnection(connection);
+        }
+    }
+
+    private static void bind(PreparedStatement statement, Entry entry) throws SQLException {
+        statement.setInt(1, entry.courseId);
+        statement.setString(2, entry.userId);
+        statement.setString(3, entry.question);
+        statement.setString(4, truncate(entry.questionLang, 10));
+        statement.setString(5, entry.answer);
+        statement.setString(6, truncate(entry.answerLang, 10));
+        statement.setString(7, entry.sources);
+        statement.setString(8, truncate(entry.retrievedLangs, 50));
+        statement.setTimestamp(9, entry.createdAt);
+    }
+
+    private static String truncate(String value, int max) {
+        return value != null && value.length() > max ? value.substring(0, max) : value;
+    }
+
+    /**
+     * Page through a course's history, newest first, optionally for one user.
+     * Keyset pagination on id: each page is an index range scan starting below
+     * beforeId, so deep pages cost the same as the first.
+     *
+     * @param beforeId only return entries with a smaller id, null for the newest
+     */
+    public static Page getHistory(int courseId, String userId, Long beforeId, int limit) {
+        return getHistory(courseId, userId, beforeId, null, limit);
+    }
+
+    /**
+     * @param since only return entries created after this time, null for all
+     */
+    public static Page getHistory(int courseId, String userId, Long beforeId, Timestamp since, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        StringBuilder sql = new StringBuilder(
+            "SELECT id, course_id, user_id, question, question_lang, answer, answer_lang, sources, " +
+            "retrieved_langs, created_at FROM chat_history WHERE course_id = ?");
+        if (userId != null) {
+            sql.append(" AND user_id = ?");
+        }
+        if (beforeId != null) {
+            sql.append(" AND id < ?");
+        }
+        if (since != null) {
+            sql.append(" AND created_at > ?");
+        }
+        // One extra row tells whether there is a next page
+        sql.append(" ORDER BY id DESC FETCH FIRST ? ROWS ONLY");
+
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        List<Entry> entries = new ArrayList<>();
+
+        try {
+            connection = DatabaseManager.getConnection();
+            statement = connection.prepareStatement(sql.toString());
+            int index = 1;
+            statement.setInt(index++, courseId);
+            if (userId != null) {
+                statement.setString(index++, userId);
+            }
+            if (beforeId != null) {
+                statement.setLong(index++, beforeId);
+            }
+            if (since != null) {
+                statement.setTimestamp(index++, since);
+            }
+            statement.setInt(index, pageSize + 1);
+            resultSet = statement.executeQuery();
+
+            while (resultSet.next()) {
+                Entry entry = new Entry(
+                    resultSet.getInt("course_id"),
+                    resultSet.getString("user_id"),
+                    resultSet.getString("question"),
+                    resultSet.getString("question_lang"),
+                    resultSet.getString("answer"),
+                    resultSet.getString("answer_lang"),
+                    resultSet.getString("sources"),
+                    resultSet.getString("retrieved_langs")
+                );
+                entry.id = resultSet.getLong("id");
+                entry.createdAt = resultSet.getTimestamp("created_at");
+                entries.add(entry);
+            }
+        } catch (SQLException | ClassNotFoundException e) {
+            System.err.println("Error getting chat history: " + e.getMessage());
+        } finally {
+            DatabaseManager.closeResultSet(resultSet);
+            DatabaseManager.closeStatement(statement);
+            DatabaseManager.closeConnection(connection);
+        }
+
+        Long nextBeforeId = null;
+        if (entries.size() > pageSize) {
+            entries.remove(entries.size() - 1);
+            nextBeforeId = entries.get(entries.size() - 1).id;
+        }
+        return new Page(entries, nextBeforeId);
+    }
+
+    /**
+     * Stop accepting exchanges and write out whatever is still queued.
+     */
+    public static void shutdown() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static int getQueueSize() {
+        return queue.size();
+    }
+
+    public static int getQueueCapacity() {
+        return QUEUE_CAPACITY;
+    }
+
+    public static long getQueued() {
+        return queued.get();
+    }
+
+    public static long getWritten() {
+        return written.get();
+    }
+
+    public static long getDropped() {
+        return dropped.get();
+    }
+
+    public static long getFailed() {
+        return failed.get();
+    }
+
+    public static long getBatches() {
+        return batches.get();
+    }
+}
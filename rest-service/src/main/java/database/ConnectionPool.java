@@ -0,0 +1,491 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded JDBC connection pool used by DatabaseManager.
+ * Connections handed out are proxies: calling close() returns the physical
+ * connection to the pool instead of closing the Derby session. Each physical
+ * connection keeps its own StatementCache, so prepareStatement() calls for
+ * SQL already seen on that connection skip Derby's parse and compile.
+ * A thread that already holds a connection shares it with its nested borrows:
+ * DAO methods that call other DAO methods (insertVideo reading the row back
+ * with getVideoById) get another handle on the same connection, and its
+ * transaction, instead of waiting for a second slot they could time out on
+ * when the pool is full. The connection goes back when the last handle closes.
+ */
+public class ConnectionPool {
+
+    private final String url;
+    private final int maxSize;
+    private final int minIdle;
+    private final long maxWaitMillis;
+    private final long idleTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    // LIFO: most recently returned connections are reused first, stale ones sink to the tail
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    // Connection each thread currently holds, shared by its nested borrows
+    private final ThreadLocal<Lease> leases = new ThreadLocal<>();
+    private final ScheduledExecutorService evictor;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong invalidCount = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+    private final AtomicLong statementEvictions = new AtomicLong();
+
+    private volatile boolean closed = false;
+
+    ConnectionPool(String url, int maxSize, int minIdle, long maxWaitMillis,
+                   long idleTimeoutMillis, int validationTimeoutSeconds, int statementCacheSize) {
+        this.url = url;
+        this.maxSize = maxSize;
+        this.minIdle = Math.min(minIdle, maxSize);
+        this.maxWaitMillis = maxWaitMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrow a connection, waiting at most maxWaitMillis for a free slot.
+     * Idle connections are validated before being handed out. A nested borrow
+     * on a thread that already holds a connection gets a handle on that one.
+     */
+    Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        Lease current = leases.get();
+        if (current != null && current.join()) {
+            borrowCount.incrementAndGet();
+            return current.pooled.newHandle(current);
+        }
+
+        acquirePermit();
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (isValid(pooled)) {
+                    break;
+                }
+                invalidCount.incrementAndGet();
+                destroy(pooled);
+            }
+            if (pooled == null) {
+                pooled = create();
+            }
+            active.incrementAndGet();
+            borrowCount.incrementAndGet();
+            Lease lease = new Lease(pooled);
+            leases.set(lease);
+            return pooled.newHandle(lease);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void acquirePermit() throws SQLException {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        long waited = System.nanoTime() - start;
+        waitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+        if (!acquired) {
+            timeoutCount.incrementAndGet();
+            throw new SQLTimeoutException("Timed out after " + maxWaitMillis +
+                    " ms waiting for a database connection (max pool size " + maxSize + ")");
+        }
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return !pooled.physical.isClosed() && pooled.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection create() throws SQLException {
+        Connection physical = DriverManager.getConnection(url);
+        total.incrementAndGet();
+        createdCount.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    /**
+     * Close one handle of a lease; the last one returns the connection to the pool.
+     */
+    private void release(Lease lease) {
+        if (lease.depth.decrementAndGet() > 0) {
+            return;
+        }
+        if (lease.owner == Thread.currentThread() && leases.get() == lease) {
+            leases.remove();
+        }
+        release(lease.pooled);
+    }
+
+    /**
+     * Return a connection to the pool, resetting any transaction state left by the caller.
+     */
+    private void release(PooledConnection pooled) {
+        active.decrementAndGet();
+
+        boolean reusable = !closed;
+        try {
+            if (reusable && !pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            if (reusable) {
+                pooled.physical.clearWarnings();
+            }
+        } catch (SQLException e) {
+            System.err.println("Discarding pooled connection after reset failure: " + e.getMessage());
+            reusable = false;
+        }
+
+        if (reusable) {
+            pooled.lastUsed = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } else {
+            destroy(pooled);
+        }
+        permits.release();
+    }
+
+    private void destroy(PooledConnection pooled) {
+        total.decrementAndGet();
+        pooled.statementCache.closeAll();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Close connections that have been idle longer than idleTimeoutMillis,
+     * keeping at least minIdle warm.
+     */
+    private void evictIdle() {
+        try {
+            long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+            List<PooledConnection> expired = new ArrayList<>();
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && idle.size() - expired.size() > minIdle) {
+                PooledConnection pooled = it.next();
+                if (pooled.lastUsed < cutoff) {
+                    expired.add(pooled);
+                }
+            }
+            for (PooledConnection pooled : expired) {
+                if (idle.remove(pooled)) {
+                    evictedCount.incrementAndGet();
+                    destroy(pooled);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error evicting idle connections: " + e.getMessage());
+        }
+    }
+
+    void shutdown() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    Stats stats() {
+        long borrows = borrowCount.get();
+        return new Stats(
+                maxSize,
+                active.get(),
+                idle.size(),
+                total.get(),
+                permits.getQueueLength(),
+                borrows,
+                timeoutCount.get(),
+                createdCount.get(),
+                evictedCount.get(),
+                invalidCount.get(),
+                borrows > 0 ? waitNanos.get() / 1_000_000.0 / borrows : 0.0,
+                maxWaitNanos.get() / 1_000_000.0,
+                statementHits.get(),
+                statementMisses.get(),
+                statementEvictions.get()
+        );
+    }
+
+    /**
+     * Snapshot of pool counters for monitoring.
+     */
+    public static class Stats {
+        public final int maxSize;
+        public final int active;
+        public final int idle;
+        public final int total;
+        public final int waiting;
+        public final long borrowCount;
+        public final long timeoutCount;
+        public final long createdCount;
+        public final long evictedCount;
+        public final long invalidCount;
+        public final double avgWaitMillis;
+        public final double maxWaitMillis;
+        public final long statementCacheHits;
+        public final long statementCacheMisses;
+        public final long statementCacheEvictions;
+
+        Stats(int maxSize, int active, int idle, int total, int waiting, long borrowCount,
+              long timeoutCount, long createdCount, long evictedCount, long invalidCount,
+              double avgWaitMillis, double maxWaitMillis, long statementCacheHits,
+              long statementCacheMisses, long statementCacheEvictions) {
+            this.maxSize = maxSize;
+            this.active = active;
+            this.idle = idle;
+            this.total = total;
+            this.waiting = waiting;
+            this.borrowCount = borrowCount;
+            this.timeoutCount = timeoutCount;
+            this.createdCount = createdCount;
+            this.evictedCount = evictedCount;
+            this.invalidCount = invalidCount;
+            this.avgWaitMillis = avgWaitMillis;
+            this.maxWaitMillis = maxWaitMillis;
+            this.statementCacheHits = statementCacheHits;
+            this.statementCacheMisses = statementCacheMisses;
+            this.statementCacheEvictions = statementCacheEvictions;
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool.
+     */
+    private class PooledConnection {
+        final Connection physical;
+        final StatementCache statementCache;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statementCache = new StatementCache(statementCacheSize,
+                    statementHits, statementMisses, statementEvictions);
+        }
+
+        Connection newHandle(Lease lease) {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Handle(this, lease));
+        }
+    }
+
+    /**
+     * One thread's hold on a pooled connection: the number of its handles still open.
+     */
+    private static class Lease {
+        final PooledConnection pooled;
+        final Thread owner = Thread.currentThread();
+        final AtomicInteger depth = new AtomicInteger(1);
+
+        Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        /**
+         * Add a handle, unless the last one was closed (possibly on another thread).
+         */
+        boolean join() {
+            while (true) {
+                int current = depth.get();
+                if (current == 0) {
+                    return false;
+                }
+                if (depth.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Per-borrow view of a pooled connection. Once closed, the handle can no
+     * longer be used even though the physical connection lives on.
+     */
+    private class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final Lease lease;
+        private boolean handleClosed = false;
+
+        Handle(PooledConnection pooled, Lease lease) {
+            this.pooled = pooled;
+            this.lease = lease;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!handleClosed) {
+                        handleClosed = true;
+                        release(lease);
+                    }
+                    return null;
+                case "isClosed":
+                    return handleClosed || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + "]";
+                default:
+                    break;
+            }
+
+            if (handleClosed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            if (statementCacheSize > 0 && isCacheablePrepare(method)) {
+                int autoGeneratedKeys = args.length > 1 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+                return prepareCached((Connection) proxy, (String) args[0], autoGeneratedKeys);
+            }
+
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private boolean isCacheablePrepare(Method method) {
+            if (!method.getName().equals("prepareStatement")) {
+                return false;
+            }
+            Class<?>[] types = method.getParameterTypes();
+            return types.length == 1
+                    || (types.length == 2 && types[1] == int.class);
+        }
+
+        private PreparedStatement prepareCached(Connection connectionProxy, String sql,
+                                                int autoGeneratedKeys) throws SQLException {
+            StatementCache.Key key = new StatementCache.Key(sql, autoGeneratedKeys);
+            PreparedStatement statement = pooled.statementCache.checkout(key);
+            if (statement == null) {
+                statement = autoGeneratedKeys == Statement.NO_GENERATED_KEYS
+                        ? pooled.physical.prepareStatement(sql)
+                        : pooled.physical.prepareStatement(sql, autoGeneratedKeys);
+            }
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new StatementHandle(pooled.statementCache, key, statement, connectionProxy));
+        }
+    }
+
+    /**
+     * Wraps a cached statement so that close() hands it back to the cache.
+     */
+    private static class StatementHandle implements InvocationHandler {
+        private final StatementCache cache;
+        private final StatementCache.Key key;
+        private final PreparedStatement statement;
+        private final Connection connectionProxy;
+        private boolean handleClosed = false;
+
+        StatementHandle(StatementCache cache, StatementCache.Key key,
+                        PreparedStatement statement, Connection connectionProxy) {
+            this.cache = cache;
+            this.key = key;
+            this.statement = statement;
+            this.connectionProxy = connectionProxy;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!handleClosed) {
+                        handleClosed = true;
+                        cache.checkin(key, statement);
+                    }
+                    return null;
+                case "isClosed":
+                    return handleClosed || statement.isClosed();
+                case "getConnection":
+                    return connectionProxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + key.sql + "]";
+                default:
+                    break;
+            }
+
+            if (handleClosed) {
+                throw new SQLException("Statement is closed");
+            }
+
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
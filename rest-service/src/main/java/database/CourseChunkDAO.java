@@ -0,0 +1,133 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The chunks last embedded for each course and source: the vector id of each
+ * chunk (derived from a hash of its text) and a hash of the metadata stored with
+ * it. Reprocessing a course compares against these so only chunks with new text
+ * go to the embedding service, and moved chunks only get their metadata updated.
+ */
+public class CourseChunkDAO {
+
+    /**
+     * @return vector id -> metadata hash for one source of a course; empty if none are stored
+     */
+    public static Map<String, String> getChunks(int courseId, String source) {
+        String sql = "SELECT chunk_id, metadata_hash FROM course_chunks WHERE course_id = ? AND source = ?";
+
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        Map<String, String> chunks = new HashMap<>();
+
+        try {
+            connection = DatabaseManager.getConnection();
+            statement = connection.prepareStatement(sql);
+            statement.setInt(1, courseId);
+            statement.setString(2, source);
+            resultSet = statement.executeQuery();
+
+            while (resultSet.next()) {
+                chunks.put(resultSet.getString("chunk_id"), resultSet.getString("metadata_hash"));
+            }
+        } catch (SQLException | ClassNotFoundException e) {
+            System.err.println("Error getting course chunks: " + e.getMessage());
+        } finally {
+            DatabaseManager.closeResultSet(resultSet);
+            DatabaseManager.closeStatement(statement);
+            DatabaseManager.closeConnection(connection);
+        }
+
+        return chunks;
+    }
+
+    /**
+     * @return true if any chunk of any source is recorded for the course
+     * @throws SQLException if the table could not be read, so callers do not mistake
+     *                      an error for a course that was never embedded
+     */
+    public static boolean hasChunks(int courseId) throws SQLException, ClassNotFoundException {
+        String sql = "SELECT 1 FROM course_chunks WHERE course_id = ? FETCH FIRST 1 ROWS ONLY";
+
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+
+        try {
+            connection = DatabaseManager.getConnection();
+            statement = connection.prepareStatement(sql);
+            statement.setInt(1, courseId);
+            resultSet = statement.executeQuery();
+            return resultSet.next();
+        } finally {
+            DatabaseManager.closeResultSet(resultSet);
+            DatabaseManager.closeStatement(statement);
+            DatabaseManager.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Replace the recorded chunks of one source in a single transaction.
+     *
+     * @param chunks vector id -> metadata hash of every chunk the source now has
+     * @return false if nothing was saved
+     */
+    public static boolean saveChunks(int courseId, String source, Map<String, String> chunks) {
+        Connection connection = null;
+        PreparedStatement statement = null;
+
+        try {
+            connection = DatabaseManager.getConnection();
+            connection.setAutoCommit(false);
+
+            statement = connection.prepareStatement(
+                "DELETE FROM course_chunks WHERE course_id = ? AND source = ?");
+            statement.setInt(1, courseId);
+            statement.setString(2, source);
+            statement.executeUpdate();
+            statement.close();
+
+            if (!chunks.isEmpty()) {
+                statement = connection.prepareStatement(
+                    "INSERT INTO course_chunks (course_id, source, chunk_id, metadata_hash) VALUES (?, ?, ?, ?)");
+                for (Map.Entry<String, String> chunk : chunks.entrySet()) {
+                    statement.setInt(1, courseId);
+                    statement.setString(2, source);
+                    statement.setString(3, chunk.getKey());
+                    statement.setString(4, chunk.getValue());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+
+            connection.commit();
+            return true;
+        } catch (SQLException | ClassNotFoundException e) {
+            System.err.println("Error saving course chunks: " + e.getMessage());
+            if (connection != null) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackEx) {
+                    System.err.println("Error rolling back transaction: " + rollbackEx.getMessage());
+                }
+            }
+            return false;
+        } finally {
+            DatabaseManager.closeStatement(statement);
+            if (connection != null) {
+                try {
+                    connection.setAutoCommit(true);
+                } catch (SQLException e) {
+                    System.err.println("Error resetting auto-commit: " + e.getMessage());
+                }
+            }
+            DatabaseManager.closeConnection(connection);
+        }
+    }
+}
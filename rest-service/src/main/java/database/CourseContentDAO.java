@@ -0,0 +1,69 @@
+package database;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Text extracted from a course's uploaded material (one row per content type).
+ */
+public class CourseContentDAO {
+
+    /**
+     * Replace the course's extracted text of this content type. The text is
+     * streamed into the CLOB, so it never has to be in memory as one string.
+     *
+     * @param length number of chars the reader returns
+     * @return false if the text could not be saved
+     */
+    public static boolean saveContent(int courseId, String contentType, String filename,
+                                      Reader text, long length) {
+        Connection connection = null;
+        PreparedStatement statement = null;
+
+        try {
+            connection = DatabaseManager.getConnection();
+            connection.setAutoCommit(false);
+
+            statement = connection.prepareStatement(
+                "DELETE FROM course_contents WHERE course_id = ? AND content_type = ?");
+            statement.setInt(1, courseId);
+            statement.setString(2, contentType);
+            statement.executeUpdate();
+            statement.close();
+
+            statement = connection.prepareStatement(
+                "INSERT INTO course_contents (course_id, content_type, filename, extracted_text) " +
+                "VALUES (?, ?, ?, ?)");
+            statement.setInt(1, courseId);
+            statement.setString(2, contentType);
+            statement.setString(3, filename);
+            statement.setCharacterStream(4, text, length);
+            statement.executeUpdate();
+
+            connection.commit();
+            return true;
+        } catch (SQLException | ClassNotFoundException e) {
+            System.err.println("Error saving course content: " + e.getMessage());
+            if (connection != null) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackEx) {
+                    System.err.println("Error rolling back transaction: " + rollbackEx.getMessage());
+                }
+            }
+            return false;
+        } finally {
+            DatabaseManager.closeStatement(statement);
+            if (connection != null) {
+                try {
+                    connection.setAutoCommit(true);
+                } catch (SQLException e) {
+                    System.err.println("Error resetting auto-commit: " + e.getMessage());
+                }
+            }
+            DatabaseManager.closeConnection(connection);
+        }
+    }
+}
@@ -162,8 +162,13 @@ public class CourseDAO {
         return courses;
     }
 
+    /**
+     * Set the course status; READY also records the time processing completed.
+     */
     public static boolean updateCourseStatus(int courseId, String status) {
-        String sql = "UPDATE courses SET status = ? WHERE id = ?";
+        String sql = "READY".equals(status)
+                ? "UPDATE courses SET status = ?, processed_at = CURRENT_TIMESTAMP WHERE id = ?"
+                : "UPDATE courses SET status = ? WHERE id = ?";
 
         Connection connection = null;
         PreparedStatement statement = null;
@@ -186,6 +191,34 @@ public class CourseDAO {
         }
     }
 
+    /**
+     * @return when the course last finished processing, or null if it never did
+     *         or could not be read
+     */
+    public static Timestamp getProcessedAt(int courseId) {
+        String sql = "SELECT processed_at FROM courses WHERE id = ?";
+
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+
+        try {
+            connection = DatabaseManager.getConnection();
+            statement = connection.prepareStatement(sql);
+            statement.setInt(1, courseId);
+            resultSet = statement.executeQuery();
+            return resultSet.next() ? resultSet.getTimestamp("processed_at") : null;
+
+        } catch (SQLException | ClassNotFoundException e) {
+            System.err.println("Error getting course processing time: " + e.getMessage());
+            return null;
+        } finally {
+            DatabaseManager.closeResultSet(resultSet);
+            DatabaseManager.closeStatement(statement);
+            DatabaseManager.closeConnection(connection);
+        }
+    }
+
     public static boolean updateDetectedLanguages(int courseId, String languages) {
         String sql = "UPDATE courses SET detected_languages = ? WHERE id = ?";
 
@@ -229,7 +262,16 @@ public class CourseDAO {
                 System.err.println("Warning: Error deleting course_notes: " + e.getMessage());
             }
 
-            // 2. Delete transcripts
+            // 2. Delete transcript_segments and transcripts
+            try {
+                statement = connection.prepareStatement("DELETE FROM transcript_segments WHERE course_id = ?");
+                statement.setInt(1, courseId);
+                statement.executeUpdate();
+                statement.close();
+            } catch (SQLException e) {
+                System.err.println("Warning: Error deleting transcript_segments: " + e.getMessage());
+            }
+
             try {
                 statement = connection.prepareStatement("DELETE FROM transcripts WHERE course_id = ?");
                 statement.setInt(1, courseId);
@@ -249,7 +291,27 @@ public class CourseDAO {
                 System.err.println("Warning: Error deleting course_contents: " + e.getMessage());
             }
 
-            // 4. Finally delete the course
+            // 4. Delete chat_history
+            try {
+                statement = connection.prepareStatement("DELETE FROM chat_history WHERE course_id = ?");
+                statement.setInt(1, courseId);
+                statement.executeUpdate();
+                statement.close();
+            } catch (SQLException e) {
+                System.err.println("Warning: Error deleting chat_history: " + e.getMessage());
+            }
+
+            // 5. Delete course_chunks
+            try {
+                statement = connection.prepareStatement("DELETE FROM course_chunks WHERE course_id = ?");
+                statement.setInt(1, courseId);
+                statement.executeUpdate();
+                statement.close();
+            } catch (SQLException e) {
+                System.err.println("Warning: Error deleting course_chunks: " + e.getMessage());
+            }
+
+            // 6. Finally delete the course
             statement = connection.prepareStatement("DELETE FROM courses WHERE id = ?");
             statement.setInt(1, courseId);
             int affectedRows = statement.executeUpdate();
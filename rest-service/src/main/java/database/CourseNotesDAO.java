@@ -141,6 +141,66 @@ public class CourseNotesDAO {
         }
     }
 
+    /**
+     * Write the notes of several languages at once, creating the course's row if
+     * needed. A null argument leaves that language unchanged.
+     *
+     * @return true if the row was written
+     */
+    public static boolean upsertNotes(int courseId, String notesEn, String notesEs, String notesCa) {
+        // Derby's MERGE cannot handle the CURRENT_TIMESTAMP default of generated_at,
+        // so this is an UPDATE followed by an INSERT when no row matched
+        String updateSql = "UPDATE course_notes SET " +
+                    "notes_en = COALESCE(CAST(? AS CLOB), notes_en), " +
+                    "notes_es = COALESCE(CAST(? AS CLOB), notes_es), " +
+                    "notes_ca = COALESCE(CAST(? AS CLOB), notes_ca), " +
+                    "generated_at = CURRENT_TIMESTAMP WHERE course_id = ?";
+        String insertSql = "INSERT INTO course_notes (course_id, notes_en, notes_es, notes_ca) " +
+                    "VALUES (?, ?, ?, ?)";
+
+        Connection connection = null;
+        PreparedStatement statement = null;
+
+        try {
+            connection = DatabaseManager.getConnection();
+            connection.setAutoCommit(false);
+
+            statement = connection.prepareStatement(updateSql);
+            statement.setString(1, notesEn);
+            statement.setString(2, notesEs);
+            statement.setString(3, notesCa);
+            statement.setInt(4, courseId);
+            int affectedRows = statement.executeUpdate();
+            statement.close();
+
+            if (affectedRows == 0) {
+                statement = connection.prepareStatement(insertSql);
+                statement.setInt(1, courseId);
+                statement.setString(2, notesEn);
+                statement.setString(3, notesEs);
+                statement.setString(4, notesCa);
+                affectedRows = statement.executeUpdate();
+            }
+
+            connection.commit();
+            return affectedRows > 0;
+
+        } catch (SQLException | ClassNotFoundException e) {
+            System.err.println("Error upserting notes: " + e.getMessage());
+            if (connection != null) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackEx) {
+                    System.err.println("Error rolling back transaction: " + rollbackEx.getMessage());
+                }
+            }
+            return false;
+        } finally {
+            DatabaseManager.closeStatement(statement);
+            DatabaseManager.closeConnection(connection);
+        }
+    }
+
     public static boolean updateNotes(int courseId, String language, String notes) {
         String column = switch(language) {
             case "en" -> "notes_en";
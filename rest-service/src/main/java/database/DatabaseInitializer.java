@@ -3,6 +3,8 @@ package database;
 import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
 import jakarta.servlet.annotation.WebListener;
+import service.StatusEvents;
+import service.TranscodingScheduler;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -29,15 +31,23 @@ public class DatabaseInitializer implements ServletContextListener {
             } else {
                 System.out.println("Tables already exist. Skipping initialization.");
             }
+            createMissingTables();
         } catch (Exception e) {
             System.err.println("ERROR: Failed to initialize database: " + e.getMessage());
             e.printStackTrace();
         }
+
+        // Resume queued and interrupted transcoding jobs from the previous run
+        TranscodingScheduler.start();
     }
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
-        // Cleanup if needed
+        TranscodingScheduler.shutdown();
+        StatusEvents.shutdown();
+        ViewCounter.shutdown();
+        ChatHistoryDAO.shutdown();
+        DatabaseManager.shutdown();
     }
 
     /**
@@ -79,6 +89,145 @@ public class DatabaseInitializer implements ServletContextListener {
         }
     }
 
+    /**
+     * Create tables added after the initial schema, so existing databases pick them up too.
+     */
+    private void createMissingTables() throws SQLException, ClassNotFoundException {
+        Connection connection = null;
+        try {
+            connection = DatabaseManager.getConnection();
+
+            createTableIfMissing(connection, "TRANSCODING_JOBS",
+                    "CREATE TABLE transcoding_jobs (" +
+                    "id INTEGER NOT NULL GENERATED ALWAYS AS IDENTITY (START WITH 1, INCREMENT BY 1)," +
+                    "video_id INTEGER NOT NULL," +
+                    "input_path VARCHAR(500)," +
+                    "output_dir VARCHAR(500)," +
+                    "mode VARCHAR(20)," +
+                    "priority INTEGER DEFAULT 0," +
+                    "status VARCHAR(20) NOT NULL," +
+                    "attempts INTEGER DEFAULT 0," +
+                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                    "started_at TIMESTAMP," +
+                    "finished_at TIMESTAMP," +
+                    "PRIMARY KEY (id))",
+                    "CREATE INDEX idx_transcoding_jobs_queue ON transcoding_jobs (status, priority, created_at)");
+
+            // Vector id (from the text hash) and metadata hash of every chunk last sent to the embedding service
+            createTableIfMissing(connection, "COURSE_CHUNKS",
+                    "CREATE TABLE course_chunks (" +
+                    "course_id INTEGER NOT NULL," +
+                    "source VARCHAR(20) NOT NULL," +
+                    "chunk_id VARCHAR(80) NOT NULL," +
+                    "metadata_hash CHAR(64) NOT NULL," +
+                    "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                    "PRIMARY KEY (course_id, source, chunk_id)," +
+                    "FOREIGN KEY (course_id) REFERENCES courses(id))");
+
+            // Whisper segments of the current transcript of each course
+            createTableIfMissing(connection, "TRANSCRIPT_SEGMENTS",
+                    "CREATE TABLE transcript_segments (" +
+                    "course_id INTEGER NOT NULL," +
+                    "segment_index INTEGER NOT NULL," +
+                    "start_time DOUBLE NOT NULL," +
+                    "end_time DOUBLE NOT NULL," +
+                    "lang VARCHAR(10)," +
+                    "text VARCHAR(4000)," +
+                    "PRIMARY KEY (course_id, segment_index)," +
+                    "FOREIGN KEY (course_id) REFERENCES courses(id))",
+                    "CREATE INDEX idx_transcript_segments_time ON transcript_segments (course_id, start_time)");
+
+            // When each course last finished processing; answers older than that are stale
+            addColumnIfMissing(connection, "COURSES", "PROCESSED_AT",
+                    "ALTER TABLE courses ADD COLUMN processed_at TIMESTAMP");
+
+            // Keyset pagination of chat history per course, and per course and user
+            createIndexIfMissing(connection, "CHAT_HISTORY", "IDX_CHAT_HISTORY_COURSE",
+                    "CREATE INDEX idx_chat_history_course ON chat_history (course_id, id DESC)");
+            createIndexIfMissing(connection, "CHAT_HISTORY", "IDX_CHAT_HISTORY_USER",
+                    "CREATE INDEX idx_chat_history_user ON chat_history (course_id, user_id, id DESC)");
+
+        } finally {
+            DatabaseManager.closeConnection(connection);
+        }
+    }
+
+    private void createTableIfMissing(Connection connection, String tableName, String... ddl)
+            throws SQLException {
+        ResultSet rs = null;
+        try {
+            rs = connection.getMetaData().getTables(null, null, tableName, null);
+            if (rs.next()) {
+                return;
+            }
+        } finally {
+            if (rs != null) {
+                try { rs.close(); } catch (SQLException ignored) {}
+            }
+        }
+
+        for (String sql : ddl) {
+            PreparedStatement statement = null;
+            try {
+                statement = connection.prepareStatement(sql);
+                statement.executeUpdate();
+            } finally {
+                DatabaseManager.closeStatement(statement);
+            }
+        }
+        System.out.println("  ✓ Table '" + tableName.toLowerCase() + "' created");
+    }
+
+    private void addColumnIfMissing(Connection connection, String tableName, String columnName, String ddl)
+            throws SQLException {
+        ResultSet rs = null;
+        try {
+            rs = connection.getMetaData().getColumns(null, null, tableName, columnName);
+            if (rs.next()) {
+                return;
+            }
+        } finally {
+            if (rs != null) {
+                try { rs.close(); } catch (SQLException ignored) {}
+            }
+        }
+
+        PreparedStatement statement = null;
+        try {
+            statement = connection.prepareStatement(ddl);
+            statement.executeUpdate();
+        } finally {
+            DatabaseManager.closeStatement(statement);
+        }
+        System.out.println("  ✓ Column '" + tableName.toLowerCase() + "." + columnName.toLowerCase() + "' added");
+    }
+
+    private void createIndexIfMissing(Connection connection, String tableName, String indexName, String ddl)
+            throws SQLException {
+        ResultSet rs = null;
+        try {
+            rs = connection.getMetaData().getIndexInfo(null, null, tableName, false, false);
+            while (rs.next()) {
+                if (indexName.equals(rs.getString("INDEX_NAME"))) {
+                    return;
+                }
+            }
+        } finally {
+            if (rs != null) {
+                try { rs.close(); } catch (SQLException ignored) {}
+            }
+        }
+
+        PreparedStatement statement = null;
+        try {
+            statement = connection.prepareStatement(ddl);
+            statement.executeUpdate();
+        } finally {
+            DatabaseManager.closeStatement(statement);
+        }
+        System.out.println("  ✓ Index '" + indexName.toLowerCase() + "' created");
+    }
+
     /**
      * Initialize database schema and insert default users
      */
@@ -139,6 +288,7 @@ public class DatabaseInitializer implements ServletContextListener {
                     "video_id INTEGER," +
                     "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
                     "status VARCHAR(50)," +
+                    "processed_at TIMESTAMP," +
                     "PRIMARY KEY (id)," +
                     "FOREIGN KEY (video_id) REFERENCES videos(id))";
             statement = connection.prepareStatement(createCourses);
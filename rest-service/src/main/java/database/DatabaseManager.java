@@ -1,7 +1,6 @@
 package database;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -9,18 +8,75 @@ import java.sql.SQLException;
 /**
  * Database connection manager for Practica 5 REST service.
  * Uses Derby Network Server at localhost:1527 with database 'pr5'.
+ * Connections come from a bounded pool; closing them returns them to the pool.
  */
 public class DatabaseManager {
 
     private static final String DB_URL = "jdbc:derby://localhost:1527/pr5;create=true";
     private static final String DB_DRIVER = "org.apache.derby.jdbc.ClientDriver";
 
+    private static final int POOL_MAX_SIZE = envInt("DB_POOL_MAX_SIZE", 20);
+    private static final int POOL_MIN_IDLE = envInt("DB_POOL_MIN_IDLE", 2);
+    private static final long POOL_MAX_WAIT_MS = envInt("DB_POOL_MAX_WAIT_MS", 5000);
+    private static final long POOL_IDLE_TIMEOUT_MS = envInt("DB_POOL_IDLE_TIMEOUT_MS", 300000);
+    private static final int POOL_VALIDATION_TIMEOUT_S = envInt("DB_POOL_VALIDATION_TIMEOUT_S", 2);
+    private static final int STATEMENT_CACHE_SIZE = envInt("DB_STATEMENT_CACHE_SIZE", 64);
+
+    private static volatile ConnectionPool pool;
+
     /**
-     * Obtain a new database connection.
+     * Obtain a pooled database connection. Callers must close it to give it back.
      */
     public static Connection getConnection() throws SQLException, ClassNotFoundException {
-        Class.forName(DB_DRIVER);
-        return DriverManager.getConnection(DB_URL);
+        return getPool().borrow();
+    }
+
+    private static ConnectionPool getPool() throws ClassNotFoundException {
+        ConnectionPool current = pool;
+        if (current == null) {
+            synchronized (DatabaseManager.class) {
+                current = pool;
+                if (current == null) {
+                    Class.forName(DB_DRIVER);
+                    current = new ConnectionPool(DB_URL, POOL_MAX_SIZE, POOL_MIN_IDLE,
+                            POOL_MAX_WAIT_MS, POOL_IDLE_TIMEOUT_MS, POOL_VALIDATION_TIMEOUT_S,
+                            STATEMENT_CACHE_SIZE);
+                    pool = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Current pool counters, or null if no connection has been requested yet.
+     */
+    public static ConnectionPool.Stats getPoolStats() {
+        ConnectionPool current = pool;
+        return current != null ? current.stats() : null;
+    }
+
+    /**
+     * Close all idle connections. Called when the application is undeployed.
+     */
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    private static int envInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + name + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
     }
 
     public static void closeConnection(Connection connection) {
@@ -0,0 +1,120 @@
+package database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of prepared statements for one physical connection, keyed by SQL text.
+ * A statement is removed from the cache while checked out and put back when the
+ * caller closes it, so a statement is never shared between two open handles.
+ */
+class StatementCache {
+
+    private final int maxSize;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+    private final LinkedHashMap<Key, PreparedStatement> statements;
+
+    StatementCache(int maxSize, AtomicLong hits, AtomicLong misses, AtomicLong evictions) {
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, PreparedStatement> eldest) {
+                if (size() > StatementCache.this.maxSize) {
+                    StatementCache.this.evictions.incrementAndGet();
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Take a cached statement for this SQL, or null if none is available.
+     */
+    synchronized PreparedStatement checkout(Key key) {
+        PreparedStatement statement = statements.remove(key);
+        try {
+            if (statement != null && !statement.isClosed()) {
+                hits.incrementAndGet();
+                return statement;
+            }
+        } catch (SQLException e) {
+            closeQuietly(statement);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Give a statement back after use. Parameters are cleared so the next
+     * caller starts from a clean state.
+     */
+    synchronized void checkin(Key key, PreparedStatement statement) {
+        if (maxSize <= 0 || statements.containsKey(key)) {
+            closeQuietly(statement);
+            return;
+        }
+        try {
+            statement.clearParameters();
+            statement.clearWarnings();
+        } catch (SQLException e) {
+            closeQuietly(statement);
+            return;
+        }
+        statements.put(key, statement);
+    }
+
+    synchronized void closeAll() {
+        List<PreparedStatement> all = new ArrayList<>(statements.values());
+        statements.clear();
+        for (PreparedStatement statement : all) {
+            closeQuietly(statement);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing cached statement: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Cache key: SQL text plus the generated-keys flag, since both change the compiled statement.
+     */
+    static final class Key {
+        final String sql;
+        final int autoGeneratedKeys;
+
+        Key(String sql, int autoGeneratedKeys) {
+            this.sql = sql;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return autoGeneratedKeys == other.autoGeneratedKeys && sql.equals(other.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sql, autoGeneratedKeys);
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package database;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persistent transcoding queue. Jobs move QUEUED -> PROCESSING -> DONE/FAILED,
+ * or QUEUED -> CANCELLED. Workers claim jobs with a conditional UPDATE so two
+ * workers can never take the same job.
+ */
+public class TranscodingJobDAO {
+
+    public static class Job {
+        public int id;
+        public int videoId;
+        public String inputPath;
+        public String outputDir;
+        public String mode;
+        public int priority;
+        public String status;
+        public int attempts;
+        public Timestamp createdAt;
+        public Timestamp startedAt;
+        public Timestamp finishedAt;
+
+        public Job(int id, int videoId, String inputPath, String outputDir, String mode,
+                   int priority, String status, int attempts, Timestamp createdAt,
+                   Timestamp startedAt, Timestamp finishedAt) {
+            this.id = id;
+            this.videoId = videoId;
+            this.inputPath = inputPath;
+            this.outputDir = outputDir;
+            this.mode = mode;
+            this.priority = priority;
+            this.status = status;
+            this.attempts = attempts;
+            this.createdAt = createdAt;
+            this.startedAt = startedAt;
+            this.finishedAt = finishedAt;
+        }
+    }
+
+    private static final String JOB_COLUMNS = "id, video_id, input_path, output_dir, mode, priority, " +
+            "status, attempts, created_at, started_at, finished_at";
+
+    /**
+     * Add a job to the queue. A video has at most one live job: if it already has
+     * a queued job, that job is updated instead, and if it has one being processed,
+     * that job is returned and nothing is queued. The check and the insert run in
+     * one transaction holding the table lock, so neither a worker's claim nor a
+     * concurrent enqueue can slip in between them.
+     *
+     * @return the job id, or -1 on error
+     */
+    public static int enqueue(int videoId, String inputPath, String outputDir, String mode, int priority) {
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+
+        try {
+            connection = DatabaseManager.getConnection();
+            connection.setAutoCommit(false);
+
+            statement = connection.prepareStatement("LOCK TABLE transcoding_jobs IN EXCLUSIVE MODE");
+            statement.execute();
+            statement.close();
+
+            statement = connection.prepareStatement(
+                    "SELECT id, status FROM transcoding_jobs " +
+                    "WHERE video_id = ? AND status IN ('QUEUED', 'PROCESSING') ORDER BY id DESC");
+            statement.setInt(1, videoId);
+            resultSet = statement.executeQuery();
+            int jobId = -1;
+            String status = null;
+            if (resultSet.next()) {
+                jobId = resultSet.getInt(1);
+                status = resultSet.getString(2);
+            }
+            resultSet.close();
+            statement.close();
+
+            if ("QUEUED".equals(status)) {
+                statement = connection.prepareStatement(
+                        "UPDATE transcoding_jobs SET input_path = ?, output_dir = ?, mode = ?, priority = ? " +
+                        "WHERE id = ?");
+                statement.setString(1, inputPath);
+                statement.setString(2, outputDir);
+                statement.setString(3, mode);
+                statement.setInt(4, priority);
+                statement.setInt(5, jobId);
+                statement.executeUpdate();
+            } else if (status == null) {
+                statement = connection.prepareStatement(
+                        "INSERT INTO transcoding_jobs (video_id, input_path, output_dir, mode, priority, status) " +
+                        "VALUES (?, ?, ?, ?, ?, 'QUEUED')", Statement.RETURN_GENERATED_KEYS);
+                statement.setInt(1, videoId);
+                statement.setString(2, inputPath);
+                statement.setString(3, outputDir);
+                statement.setString(4, mode);
+                statement.setInt(5, priority);
+                statement.executeUpdate();
+
+                resultSet = statement.getGeneratedKeys();
+                jobId = resultSet.next() ? resultSet.getInt(1) : -1;
+            }
+
+            connection.commit();
+            return jobId;
+
+        } catch (SQLException | ClassNotFoundException e) {
+            System.err.println("Error enqueuing transcoding job: " + e.getMessage());
+            if (connection != null) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackEx) {
+                    System.err.println("Error rolling back transaction: " + rollbackEx.getMessage());
+                }
+            }
+            return -1;
+        } finally {
+            DatabaseManager.closeResultSet(resultSet);
+            DatabaseManager.closeStatement(statement);
+            DatabaseManager.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Claim the highest-priority queued job, oldest first within a priority.
+     *
+     * @return the claimed job (now PROCESSING), or null if the queue is empty
+     */
+    public static Job claimNext() {
+        Connection connection = null;
+        PreparedStatement select = null;
+        PreparedStatement claim = null;
+        ResultSet resultSet = null;
+
+        try {
+            connection = DatabaseManager.getConnection();
+            connection.setAutoCommit(false);
+
+            select = connection.prepareStatement(
+                    "SELECT id FROM transcoding_jobs WHERE status = 'QUEUED' " +
+                    "ORDER BY priority DESC, created_at, id FETCH FIRST 5 ROWS ONLY");
+            resultSet = select.executeQuery();
+            List<Integer> candidates = new ArrayList<>();
+            while (resultSet.next()) {
+                candidates.add(resultSet.getInt(1));
+            }
+
+            claim = connection.prepareStatement(
+                    "UPDATE transcoding_jobs SET status = 'PROCESSING', attempts = attempts + 1, " +
+                    "started_at = CURRENT_TIMESTAMP WHERE id = ? AND status = 'QUEUED'");
+            for (int jobId : candidates) {
+                claim.setInt(1, jobId);
+                if (claim.executeUpdate() == 1) {
+                    Job job = getJob(connection, jobId);
+                    connection.commit();
+                    return job;
+                }
+                // Another worker got there first, try the next candidate
+            }
+
+            connection.commit();
+            return null;
+
+        } catch (SQLException | ClassNotFoundException e) {
+            System.err.println("Error claiming transcoding job: " + e.getMessage());
+            if (connection != null) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackEx) {
+                    System.err.println("Error rolling back transaction: " + rollbackEx.getMessage());
+                }
+            }
+            return null;
+        } finally {
+            DatabaseManager.closeResultSet(resultSet);
+            DatabaseManager.closeStatement(select);
+            DatabaseManager.closeStatement(claim);
+            DatabaseManager.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Record the outcome of a run. attempt is the attempt count the job was
+     * claimed with: if the job has since been re-queued and claimed again, this
+     * stale run leaves the newer one alone.
+     *
+     * @return false if the job is no longer in this run
+     */
+    public static boolean finishJob(int jobId, int attempt, String status) {
+        String sql = "UPDATE transcoding_jobs SET status = ?, finished_at = CURRENT_TIMESTAMP " +
+                    "WHERE id = ? AND attempts = ? AND status = 'PROCESSING'";
+
+        Connection connection = null;
+        PreparedStatement statement = null;
+
+        try {
+            connection = DatabaseManager.getConnection();
+            statement = connection.prepareStatement(sql);
+            statement.setString(1, status);
+            statement.setInt(2, jobId);
+            statement.setInt(3, attempt);
+            return statement.executeUpdate() > 0;
+
+        } catch (SQLException | ClassNotFoundException e) {
+            System.err.println("Error finishing transcoding job: " + e.getMessage());
+            return false;
+        } finally {
+            DatabaseManager.closeStatement(statement);
+            DatabaseManager.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Change the priority of a job that has not been claimed yet.
+     *
+     * @return false if the job is no longer queued
+     */
+    public static boolean updateQueuedPriority(int jobId, int priority) {
+        String sql = "UPDATE transcoding_jobs SET priority = ? WHERE id = ? AND status = 'QUEUED'";
+
+        Connection connection = null;
+        PreparedStatement statement = null;
+
+        try {
+            connection = DatabaseManager.getConnection();
+            statement = connection.prepareStatement(sql);
+            statement.setInt(1, priority);
+            statement.setInt(2, jobId);
+            return statement.executeUpdate() > 0;
+
+        } catch (SQLException | ClassNotFoundException e) {
+            System.err.println("Error updating transcoding job priority: " + e.getMessage());
+            return false;
+        } finally {
+            DatabaseManager.closeStatement(statement);
+            DatabaseManager.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Cancel a job that has not started yet.
+     *
+     * @return the cancelled job, or null if it does not exist or is no longer queued
+     */
+    public static Job cancelJob(int jobId) {
+        String sql = "UPDATE transcoding_jobs SET status = 'CANCELLED', finished_at = CURRENT_TIMESTAMP " +
+                    "WHERE id = ? AND status = 'QUEUED'";
+
+        Connection connection = null;
+        PreparedStatement statement = null;
+
+        try {
+            connection = DatabaseManager.getConnection();
+            statement = connection.prepareStatement(sql);
+            statement.setInt(1, jobId);
+            if (statement.executeUpdate() == 0) {
+                return null;
+            }
+            return getJob(connection, jobId);
+
+        } catch (SQLException | ClassNotFoundException e) {
+            System.err.println("Error cancelling transcoding job: " + e.getMessage());
+            return null;
+        } finally {
+            DatabaseManager.closeStatement(statement);
+            DatabaseManager.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Put a job interrupted by a shutdown back in the queue, ahead of new work.
+     * Like finishJob, only the run with the given attempt count is re-queued.
+     *
+     * @return false if the job is no longer in this run
+     */
+    public static boolean requeueJob(int jobId, int attempt, int retryPriority) {
+        String sql = "UPDATE transcoding_jobs SET status = 'QUEUED', started_at = NULL, " +
+                    "priority = CASE WHEN priority >= ? THEN priority ELSE priority + ? END " +
+                    "WHERE id = ? AND attempts = ? AND status = 'PROCESSING'";
+
+        Connection connection = null;
+        PreparedStatement statement = null;
+
+        try {
+            connection = DatabaseManager.getConnection();
+            statement = connection.prepareStatement(sql);
+            statement.setInt(1, retryPriority);
+            statement.setInt(2, retryPriority);
+            statement.setInt(3, jobId);
+            statement.setInt(4, attempt);
+            return statement.executeUpdate() > 0;
+
+        } catch (SQLException | ClassNotFoundException e) {
+            System.err.println("Error re-queuing transcoding job: " + e.getMessage());
+            return false;
+        } finally {
+            DatabaseManager.closeStatement(statement);
+            DatabaseManager.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Fail jobs left PROCESSING by a previous run that have used up their
+     * attempts, e.g. an input that crashes the server every time it is encoded.
+     *
+     * @return ids of the videos whose job was failed
+     */
+    public static List<Integer> failExhausted(int maxAttempts) {
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        List<Integer> videoIds = new ArrayList<>();
+
+        try {
+            connection = DatabaseManager.getConnection();
+            connection.setAutoCommit(false);
+
+            statement = connection.prepareStatement(
+                    "SELECT video_id FROM transcoding_jobs WHERE status = 'PROCESSING' AND attempts >= ?");
+            statement.setInt(1, maxAttempts);
+            resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                videoIds.add(resultSet.getInt(1));
+            }
+            resultSet.close();
+            statement.close();
+
+            statement = connection.prepareStatement(
+                    "UPDATE transcoding_jobs SET status = 'FAILED', finished_at = CURRENT_TIMESTAMP " +
+                    "WHERE status = 'PROCESSING' AND attempts >= ?");
+            statement.setInt(1, maxAttempts);
+            statement.executeUpdate();
+
+            connection.commit();
+            return videoIds;
+
+        } catch (SQLException | ClassNotFoundException e) {
+            System.err.println("Error failing exhausted jobs: " + e.getMessage());
+            if (connection != null) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackEx) {
+                    System.err.println("Error rolling back transaction: " + rollbackEx.getMessage());
+                }
+            }
+            return new ArrayList<>();
+        } finally {
+            DatabaseManager.closeResultSet(resultSet);
+            DatabaseManager.closeStatement(statement);
+            if (connection != null) {
+                try {
+                    connection.setAutoCommit(true);
+                } catch (SQLException e) {
+                    System.err.println("Error resetting auto-commit: " + e.getMessage());
+                }
+            }
+            DatabaseManager.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Put jobs that were PROCESSING when the server stopped back in the queue,
+     * ahead of new work. A job is boosted to retryPriority once, not on every restart.
+     *
+     * @return number of jobs re-queued
+     */
+    public static int requeueInterrupted(int retryPriority) {
+        String sql = "UPDATE transcoding_jobs SET status = 'QUEUED', started_at = NULL, " +
+                    "priority = CASE WHEN priority >= ? THEN priority ELSE priority + ? END " +
+                    "WHERE status = 'PROCESSING'";
+
+        Connection connection = null;
+        PreparedStatement statement = null;
+
+        try {
+            connection = DatabaseManager.getConnection();
+            statement = connection.prepareStatement(sql);
+            statement.setInt(1, retryPriority);
+            statement.setInt(2, retryPriority);
+            return statement.executeUpdate();
+
+        } catch (SQLException | ClassNotFoundException e) {
+            System.err.println("Error re-queuing interrupted jobs: " + e.getMessage());
+            return 0;
+        } finally {
+            DatabaseManager.closeStatement(statement);
+            DatabaseManager.closeConnection(connection);
+        }
+    }
+
+    public static boolean hasJobsForVideo(int videoId) {
+        String sql = "SELECT 1 FROM transcoding_jobs WHERE video_id = ? FETCH FIRST 1 ROWS ONLY";
+
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+
+        try {
+            connection = DatabaseManager.getConnection();
+            statement = connection.prepareStatement(sql);
+            statement.setInt(1, videoId);
+            resultSet = statement.executeQuery();
+            return resultSet.next();
+
+        } catch (SQLException | ClassNotFoundException e) {
+            System.err.println("Error checking transcoding jobs: " + e.getMessage());
+            return false;
+        } finally {
+            DatabaseManager.closeResultSet(resultSet);
+            DatabaseManager.closeStatement(statement);
+            DatabaseManager.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Queued and running jobs: running first, then in the order they will be claimed.
+     */
+    public static List<Job> getActiveJobs() {
+        String sql = "SELECT " + JOB_COLUMNS + " FROM transcoding_jobs " +
+                    "WHERE status IN ('QUEUED', 'PROCESSING') " +
+                    "ORDER BY status, priority DESC, created_at, id";
+
+        List<Job> jobs = new ArrayList<>();
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+
+        try {
+            connection = DatabaseManager.getConnection();
+            statement = connection.prepareStatement(sql);
+            resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                jobs.add(mapRow(resultSet));
+            }
+
+        } catch (SQLException | ClassNotFoundException e) {
+            System.err.println("Error listing transcoding jobs: " + e.getMessage());
+        } finally {
+            DatabaseManager.closeResultSet(resultSet);
+            DatabaseManager.closeStatement(statement);
+            DatabaseManager.closeConnection(connection);
+        }
+
+        return jobs;
+    }
+
+    public static Job getJobById(int jobId) {
+        Connection connection = null;
+
+        try {
+            connection = DatabaseManager.getConnection();
+            return getJob(connection, jobId);
+
+        } catch (SQLException | ClassNotFoundException e) {
+            System.err.println("Error getting transcoding job: " + e.getMessage());
+            return null;
+        } finally {
+            DatabaseManager.closeConnection(connection);
+        }
+    }
+
+    private static Job getJob(Connection connection, int jobId) throws SQLException {
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            statement = connection.prepareStatement(
+                    "SELECT " + JOB_COLUMNS + " FROM transcoding_jobs WHERE id = ?");
+            statement.setInt(1, jobId);
+            resultSet = statement.executeQuery();
+            return resultSet.next() ? mapRow(resultSet) : null;
+        } finally {
+            DatabaseManager.closeResultSet(resultSet);
+            DatabaseManager.closeStatement(statement);
+        }
+    }
+
+    private static Job mapRow(ResultSet rs) throws SQLException {
+        return new Job(
+                rs.getInt("id"),
+                rs.getInt("video_id"),
+                rs.getString("input_path"),
+                rs.getString("output_dir"),
+                rs.getString("mode"),
+                rs.getInt("priority"),
+                rs.getString("status"),
+                rs.getInt("attempts"),
+                rs.getTimestamp("created_at"),
+                rs.getTimestamp("started_at"),
+                rs.getTimestamp("finished_at")
+        );
+    }
+}
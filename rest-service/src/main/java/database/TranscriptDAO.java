@@ -1,6 +1,8 @@
 package database;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public class TranscriptDAO {
 
@@ -25,6 +27,147 @@ public class TranscriptDAO {
         }
     }
 
+    /**
+     * One timed piece of a transcript, as returned by Whisper.
+     */
+    public static class Segment {
+        public int index;
+        public double startTime;
+        public double endTime;
+        public String text;
+        public String lang;
+
+        public Segment(int index, double startTime, double endTime, String text, String lang) {
+            this.index = index;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.text = text;
+            this.lang = lang;
+        }
+    }
+
+    /**
+     * Replace a course's transcript and its segments in one transaction. The
+     * segments go to transcript_segments rather than the segments column, so
+     * they can be read back by time without parsing the STT response again.
+     *
+     * @return false if nothing was saved
+     */
+    public static boolean saveTranscript(int courseId, String fullText, String primaryLanguage,
+                                         String languageDistribution, List<Segment> segments) {
+        Connection connection = null;
+        PreparedStatement statement = null;
+
+        try {
+            connection = DatabaseManager.getConnection();
+            connection.setAutoCommit(false);
+
+            statement = connection.prepareStatement("DELETE FROM transcript_segments WHERE course_id = ?");
+            statement.setInt(1, courseId);
+            statement.executeUpdate();
+            statement.close();
+
+            statement = connection.prepareStatement("DELETE FROM transcripts WHERE course_id = ?");
+            statement.setInt(1, courseId);
+            statement.executeUpdate();
+            statement.close();
+
+            statement = connection.prepareStatement(
+                "INSERT INTO transcripts (course_id, full_text, primary_language, language_distribution) " +
+                "VALUES (?, ?, ?, ?)");
+            statement.setInt(1, courseId);
+            statement.setString(2, fullText);
+            statement.setString(3, primaryLanguage);
+            statement.setString(4, languageDistribution);
+            statement.executeUpdate();
+            statement.close();
+
+            statement = connection.prepareStatement(
+                "INSERT INTO transcript_segments (course_id, segment_index, start_time, end_time, lang, text) " +
+                "VALUES (?, ?, ?, ?, ?, ?)");
+            int batched = 0;
+            for (Segment segment : segments) {
+                statement.setInt(1, courseId);
+                statement.setInt(2, segment.index);
+                statement.setDouble(3, segment.startTime);
+                statement.setDouble(4, segment.endTime);
+                statement.setString(5, truncate(segment.lang, 10));
+                statement.setString(6, truncate(segment.text, 4000));
+                statement.addBatch();
+                if (++batched % 500 == 0) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+
+            connection.commit();
+            return true;
+        } catch (SQLException | ClassNotFoundException e) {
+            System.err.println("Error saving transcript: " + e.getMessage());
+            if (connection != null) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackEx) {
+                    System.err.println("Error rolling back transaction: " + rollbackEx.getMessage());
+                }
+            }
+            return false;
+        } finally {
+            DatabaseManager.closeStatement(statement);
+            if (connection != null) {
+                try {
+                    connection.setAutoCommit(true);
+                } catch (SQLException e) {
+                    System.err.println("Error resetting auto-commit: " + e.getMessage());
+                }
+            }
+            DatabaseManager.closeConnection(connection);
+        }
+    }
+
+    /**
+     * A course's transcript segments in time order.
+     *
+     * @throws SQLException if the segments could not be read, so callers do not
+     *                      mistake an error for a course without a transcript
+     */
+    public static List<Segment> getSegments(int courseId) throws SQLException, ClassNotFoundException {
+        String sql = "SELECT segment_index, start_time, end_time, lang, text FROM transcript_segments " +
+                    "WHERE course_id = ? ORDER BY segment_index";
+
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        List<Segment> segments = new ArrayList<>();
+
+        try {
+            connection = DatabaseManager.getConnection();
+            statement = connection.prepareStatement(sql);
+            statement.setInt(1, courseId);
+            resultSet = statement.executeQuery();
+
+            while (resultSet.next()) {
+                segments.add(new Segment(
+                    resultSet.getInt("segment_index"),
+                    resultSet.getDouble("start_time"),
+                    resultSet.getDouble("end_time"),
+                    resultSet.getString("text"),
+                    resultSet.getString("lang")
+                ));
+            }
+        } finally {
+            DatabaseManager.closeResultSet(resultSet);
+            DatabaseManager.closeStatement(statement);
+            DatabaseManager.closeConnection(connection);
+        }
+
+        return segments;
+    }
+
+    private static String truncate(String value, int max) {
+        return value != null && value.length() > max ? value.substring(0, max) : value;
+    }
+
     public static Transcript insertTranscript(int courseId, String fullText, String segments,
                                              String primaryLanguage, String languageDistribution) {
         String sql = "INSERT INTO transcripts (course_id, full_text, segments, primary_language, language_distribution) " +
@@ -0,0 +1,126 @@
+package database;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-memory cache of video rows keyed by id, used by VideoDAO.getVideoById.
+ * Entries expire after a TTL and are invalidated by every VideoDAO write.
+ * Cached rows hold the views value as stored in the database; pending
+ * write-behind views are added on read.
+ */
+public class VideoCache {
+
+    private static final int MAX_ENTRIES =
+        System.getenv("VIDEO_CACHE_MAX_ENTRIES") != null ?
+        Integer.parseInt(System.getenv("VIDEO_CACHE_MAX_ENTRIES")) : 1000;
+
+    private static final long TTL_MS =
+        System.getenv("VIDEO_CACHE_TTL_MS") != null ?
+        Long.parseLong(System.getenv("VIDEO_CACHE_TTL_MS")) : 30000;
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+
+    // Bumped on every invalidation so a load that raced with a write is not cached
+    private static final AtomicLong epoch = new AtomicLong();
+
+    private static final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+            if (size() > MAX_ENTRIES) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private static class Entry {
+        final VideoDAO.Video video;
+        final long expiresAt;
+
+        Entry(VideoDAO.Video video, long expiresAt) {
+            this.video = video;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    static VideoDAO.Video get(int id) {
+        synchronized (entries) {
+            Entry entry = entries.get(id);
+            if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+                hits.incrementAndGet();
+                return entry.video;
+            }
+            if (entry != null) {
+                entries.remove(id);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Epoch to pass to put() after loading a row from the database.
+     */
+    static long currentEpoch() {
+        return epoch.get();
+    }
+
+    static void put(VideoDAO.Video video, long loadEpoch) {
+        if (video == null || MAX_ENTRIES <= 0) {
+            return;
+        }
+        synchronized (entries) {
+            if (epoch.get() != loadEpoch) {
+                return;
+            }
+            entries.put(video.id, new Entry(video, System.currentTimeMillis() + TTL_MS));
+        }
+    }
+
+    public static void invalidate(int id) {
+        synchronized (entries) {
+            epoch.incrementAndGet();
+            entries.remove(id);
+        }
+    }
+
+    public static void clear() {
+        synchronized (entries) {
+            epoch.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    public static int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public static int getMaxEntries() {
+        return MAX_ENTRIES;
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static long getEvictions() {
+        return evictions.get();
+    }
+
+    public static double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total > 0 ? (double) h / total : 0.0;
+    }
+}
@@ -39,6 +39,11 @@ public class VideoDAO {
             this.status = status;
             this.views = views;
         }
+
+        public Video withViews(int views) {
+            return new Video(id, title, description, uploader, uploadDate, duration,
+                    originalFilename, filePath, processedPath, status, views);
+        }
     }
 
     public static Video insertVideo(String title, String description, String uploader,
@@ -102,6 +107,7 @@ public class VideoDAO {
             statement.setString(4, uploader);
 
             int updated = statement.executeUpdate();
+            VideoCache.invalidate(id);
             if (updated == 0) {
                 return null;
             }
@@ -126,7 +132,9 @@ public class VideoDAO {
             statement = connection.prepareStatement(query);
             statement.setString(1, status);
             statement.setInt(2, id);
-            return statement.executeUpdate() > 0;
+            boolean updated = statement.executeUpdate() > 0;
+            VideoCache.invalidate(id);
+            return updated;
 
         } catch (Exception e) {
             System.err.println("Error updating video status: " + e.getMessage());
@@ -147,7 +155,9 @@ public class VideoDAO {
             statement = connection.prepareStatement(query);
             statement.setString(1, processedPath);
             statement.setInt(2, id);
-            return statement.executeUpdate() > 0;
+            boolean updated = statement.executeUpdate() > 0;
+            VideoCache.invalidate(id);
+            return updated;
 
         } catch (Exception e) {
             System.err.println("Error updating video processed path: " + e.getMessage());
@@ -169,7 +179,12 @@ public class VideoDAO {
             statement = connection.prepareStatement(query);
             statement.setInt(1, id);
             statement.setString(2, uploader);
-            return statement.executeUpdate() > 0;
+            boolean deleted = statement.executeUpdate() > 0;
+            VideoCache.invalidate(id);
+            if (deleted) {
+                ViewCounter.forget(id);
+            }
+            return deleted;
 
         } catch (Exception e) {
             System.err.println("Error deleting video: " + e.getMessage());
@@ -180,7 +195,17 @@ public class VideoDAO {
         }
     }
 
+    /**
+     * Look up a video, served from VideoCache when possible since the streaming
+     * endpoints resolve the same row for every manifest and segment request.
+     */
     public static Video getVideoById(int id) {
+        Video cached = VideoCache.get(id);
+        if (cached != null) {
+            return withPendingViews(cached);
+        }
+
+        long epoch = VideoCache.currentEpoch();
         Connection connection = null;
         PreparedStatement statement = null;
         ResultSet resultSet = null;
@@ -193,7 +218,9 @@ public class VideoDAO {
             resultSet = statement.executeQuery();
 
             if (resultSet.next()) {
-                return mapRow(resultSet);
+                Video video = readRow(resultSet);
+                VideoCache.put(video, epoch);
+                return withPendingViews(video);
             }
             return null;
 
@@ -325,6 +352,13 @@ public class VideoDAO {
     }
 
     private static Video mapRow(ResultSet rs) throws SQLException {
+        return withPendingViews(readRow(rs));
+    }
+
+    /**
+     * Map a row exactly as stored, without buffered views.
+     */
+    private static Video readRow(ResultSet rs) throws SQLException {
         Date uploadDate = rs.getDate("upload_date");
         return new Video(
                 rs.getInt("id"),
@@ -341,6 +375,11 @@ public class VideoDAO {
         );
     }
 
+    private static Video withPendingViews(Video video) {
+        long pending = ViewCounter.pendingViews(video.id);
+        return pending == 0 ? video : video.withViews(video.views + (int) pending);
+    }
+
     public static boolean updateDuration(int id, int duration) {
         Connection connection = null;
         PreparedStatement statement = null;
@@ -351,7 +390,9 @@ public class VideoDAO {
             statement = connection.prepareStatement(query);
             statement.setInt(1, duration);
             statement.setInt(2, id);
-            return statement.executeUpdate() > 0;
+            boolean updated = statement.executeUpdate() > 0;
+            VideoCache.invalidate(id);
+            return updated;
 
         } catch (Exception e) {
             System.err.println("Error updating video duration: " + e.getMessage());
@@ -362,23 +403,12 @@ public class VideoDAO {
         }
     }
 
+    /**
+     * Record a view. The increment is buffered in ViewCounter and written to the
+     * videos table by its periodic batch flush; reads already include it.
+     */
     public static boolean incrementViews(int id) {
-        Connection connection = null;
-        PreparedStatement statement = null;
-
-        try {
-            connection = DatabaseManager.getConnection();
-            String query = "UPDATE videos SET views = views + 1 WHERE id = ?";
-            statement = connection.prepareStatement(query);
-            statement.setInt(1, id);
-            return statement.executeUpdate() > 0;
-
-        } catch (Exception e) {
-            System.err.println("Error incrementing video views: " + e.getMessage());
-            return false;
-        } finally {
-            DatabaseManager.closeStatement(statement);
-            DatabaseManager.closeConnection(connection);
-        }
+        ViewCounter.increment(id);
+        return true;
     }
 }
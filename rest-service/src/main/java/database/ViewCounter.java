@@ -0,0 +1,183 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind buffer for video view counts.
+ * Increments only touch an in-memory LongAdder per video; a background thread
+ * periodically applies the accumulated deltas to the videos table in one JDBC batch.
+ */
+public class ViewCounter {
+
+    private static final long FLUSH_INTERVAL_MS =
+        System.getenv("VIEW_FLUSH_INTERVAL_MS") != null ?
+        Long.parseLong(System.getenv("VIEW_FLUSH_INTERVAL_MS")) : 5000;
+
+    private static final String FLUSH_SQL = "UPDATE videos SET views = views + ? WHERE id = ?";
+
+    // Views not yet picked up by a flush
+    private static final ConcurrentHashMap<Integer, LongAdder> pending = new ConcurrentHashMap<>();
+    // Views taken by the running flush but not yet committed
+    private static final ConcurrentHashMap<Integer, Long> inFlight = new ConcurrentHashMap<>();
+
+    private static final AtomicLong flushCount = new AtomicLong();
+    private static final AtomicLong flushedViews = new AtomicLong();
+    private static final AtomicLong failedFlushes = new AtomicLong();
+
+    private static final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "view-counter-flush");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        flusher.scheduleWithFixedDelay(ViewCounter::flushQuietly,
+                FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public static void increment(int videoId) {
+        pending.computeIfAbsent(videoId, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Views recorded for this video that are not yet reflected in the database.
+     */
+    public static long pendingViews(int videoId) {
+        long total = 0;
+        LongAdder adder = pending.get(videoId);
+        if (adder != null) {
+            total += adder.sum();
+        }
+        Long flushing = inFlight.get(videoId);
+        if (flushing != null) {
+            total += flushing;
+        }
+        return total;
+    }
+
+    /**
+     * Drop buffered views for a video that no longer exists.
+     */
+    public static void forget(int videoId) {
+        pending.remove(videoId);
+    }
+
+    /**
+     * Write all buffered deltas to the database in a single batch.
+     * On failure the deltas are put back so the next flush retries them.
+     */
+    public static synchronized void flush() throws SQLException, ClassNotFoundException {
+        List<Integer> ids = new ArrayList<>();
+        List<Long> deltas = new ArrayList<>();
+
+        for (Map.Entry<Integer, LongAdder> entry : pending.entrySet()) {
+            long delta = entry.getValue().sum();
+            if (delta == 0) {
+                continue;
+            }
+            // Publish to inFlight before subtracting so readers never see the views disappear
+            inFlight.merge(entry.getKey(), delta, Long::sum);
+            entry.getValue().add(-delta);
+            ids.add(entry.getKey());
+            deltas.add(delta);
+        }
+
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        Connection connection = null;
+        PreparedStatement statement = null;
+        boolean committed = false;
+
+        try {
+            connection = DatabaseManager.getConnection();
+            connection.setAutoCommit(false);
+            statement = connection.prepareStatement(FLUSH_SQL);
+            for (int i = 0; i < ids.size(); i++) {
+                statement.setLong(1, deltas.get(i));
+                statement.setInt(2, ids.get(i));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            connection.commit();
+            committed = true;
+
+            flushCount.incrementAndGet();
+            for (long delta : deltas) {
+                flushedViews.addAndGet(delta);
+            }
+        } finally {
+            if (!committed) {
+                failedFlushes.incrementAndGet();
+                for (int i = 0; i < ids.size(); i++) {
+                    pending.computeIfAbsent(ids.get(i), k -> new LongAdder()).add(deltas.get(i));
+                }
+            }
+            for (int id : ids) {
+                if (committed) {
+                    // Cached rows still carry the pre-flush views value
+                    VideoCache.invalidate(id);
+                }
+                inFlight.remove(id);
+            }
+            DatabaseManager.closeStatement(statement);
+            DatabaseManager.closeConnection(connection);
+        }
+    }
+
+    private static void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            System.err.println("Error flushing view counts: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stop the background flusher and write out whatever is still buffered.
+     */
+    public static void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+
+    public static long getPendingTotal() {
+        long total = 0;
+        for (LongAdder adder : pending.values()) {
+            total += adder.sum();
+        }
+        for (long flushing : inFlight.values()) {
+            total += flushing;
+        }
+        return total;
+    }
+
+    public static long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public static long getFlushedViews() {
+        return flushedViews.get();
+    }
+
+    public static long getFailedFlushes() {
+        return failedFlushes.get();
+    }
+}
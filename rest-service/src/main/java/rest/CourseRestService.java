@@ -1,10 +1,18 @@
 package rest;
 
+import database.ChatHistoryDAO;
 import database.CourseDAO;
 import database.CourseNotesDAO;
 import database.TranscriptDAO;
 import database.VideoDAO;
+import security.AdminUsers;
+import service.AnswerCache;
 import service.CourseProcessingService;
+import service.PythonServiceClient;
+import service.SearchCache;
+import service.StageTimings;
+import service.TranscriptIndex;
+import util.JsonReader;
 import util.JsonSerializer;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -12,13 +20,21 @@ import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * REST service for multilingual course management.
@@ -28,9 +44,7 @@ import java.nio.charset.StandardCharsets;
 @Produces(MediaType.APPLICATION_JSON)
 public class CourseRestService {
 
-    private static final String PYTHON_SERVICE_URL =
-        System.getenv("PYTHON_SERVICE_URL") != null ?
-        System.getenv("PYTHON_SERVICE_URL") : "http://localhost:5001";
+    private static final Pattern EVENT_TYPE = Pattern.compile("\"type\"\\s*:\\s*\"(\\w+)\"");
 
     @POST
     @Path("/create")
@@ -166,6 +180,31 @@ public class CourseRestService {
         return Response.ok(json).build();
     }
 
+    /**
+     * Per-stage timings and critical path of the course's last processing run.
+     */
+    @GET
+    @Path("/{id}/timings")
+    public Response getProcessingTimings(@PathParam("id") int courseId,
+                                         @Context HttpServletRequest request) {
+
+        String user = (String) request.getAttribute("jwtUser");
+        if (isBlank(user)) {
+            return Response.status(Response.Status.UNAUTHORIZED)
+                    .entity(JsonSerializer.errorResponse("Unauthorized", "Valid token required", 401))
+                    .build();
+        }
+
+        StageTimings timings = CourseProcessingService.getTimings(courseId);
+        if (timings == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity(JsonSerializer.errorResponse("Not Found", "Course has not been processed since startup", 404))
+                    .build();
+        }
+
+        return Response.ok(timings.toJson()).build();
+    }
+
     @POST
     @Path("/{id}/generate-notes")
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
@@ -183,31 +222,24 @@ public class CourseRestService {
         String lang = language != null ? language : "en";
 
         try {
-            String pythonResponse = callPythonService(
+            String pythonResponse = PythonServiceClient.postJson(
                 "/api/rag/generate_notes",
                 String.format("{\"course_id\":%d,\"language\":\"%s\",\"include_sources\":true}", courseId, lang)
             );
 
             // Parse the response and save notes to database
-            String notes = extractNotesFromResponse(pythonResponse);
+            String notes = CourseProcessingService.extractNotes(pythonResponse);
             if (notes != null) {
-                // Check if notes record exists
-                CourseNotesDAO.CourseNotes existingNotes = CourseNotesDAO.getNotesByCourseId(courseId);
-                
-                if (existingNotes == null) {
-                    // Create new notes record
-                    String notesEn = lang.equals("en") ? notes : null;
-                    String notesEs = lang.equals("es") ? notes : null;
-                    String notesCa = lang.equals("ca") ? notes : null;
-                    CourseNotesDAO.insertNotes(courseId, notesEn, notesEs, notesCa);
-                } else {
-                    // Update existing notes record
-                    CourseNotesDAO.updateNotes(courseId, lang, notes);
-                }
+                CourseNotesDAO.upsertNotes(courseId,
+                        lang.equals("en") ? notes : null,
+                        lang.equals("es") ? notes : null,
+                        lang.equals("ca") ? notes : null);
             }
 
             return Response.ok(pythonResponse).build();
 
+        } catch (PythonServiceClient.UnavailableException e) {
+            return serviceUnavailable(e);
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity(JsonSerializer.errorResponse("Internal Server Error", e.getMessage(), 500))
@@ -280,16 +312,29 @@ public class CourseRestService {
                     .build();
         }
 
+        String cachedResponse = AnswerCache.get(courseId, language, question);
+        if (cachedResponse != null) {
+            recordChat(courseId, user, question, language, cachedResponse);
+            return Response.ok(AnswerCache.markCached(cachedResponse, true)).build();
+        }
+
         try {
+            long loadEpoch = AnswerCache.currentEpoch();
+            long started = System.currentTimeMillis();
             String langParam = language != null ? String.format(",\"language\":\"%s\"", language) : "";
-            String pythonResponse = callPythonService(
+            String pythonResponse = PythonServiceClient.postJson(
                 "/api/chat",
                 String.format("{\"course_id\":%d,\"question\":\"%s\"%s}",
                     courseId, escapeJson(question), langParam)
             );
+            AnswerCache.put(courseId, language, question, pythonResponse,
+                    System.currentTimeMillis() - started, loadEpoch);
 
-            return Response.ok(pythonResponse).build();
+            recordChat(courseId, user, question, language, pythonResponse);
+            return Response.ok(AnswerCache.markCached(pythonResponse, false)).build();
 
+        } catch (PythonServiceClient.UnavailableException e) {
+            return serviceUnavailable(e);
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity(JsonSerializer.errorResponse("Internal Server Error", e.getMessage(), 500))
@@ -297,6 +342,308 @@ public class CourseRestService {
         }
     }
 
+    /**
+     * Streaming variant of chat: relays the answer as Server-Sent Events while the
+     * model generates it. Events are "meta" (sources), "token", "done" and "error",
+     * each carrying the JSON object produced by the Python service. The request
+     * thread returns at once; lines are relayed from the HTTP client's threads
+     * without waiting for the writes, and the upstream request is cancelled when
+     * the client goes away or the model stops producing tokens.
+     * The meta event carries "cached"; a cached answer arrives as a single token.
+     */
+    @POST
+    @Path("/{id}/chat/stream")
+    @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void chatStream(@PathParam("id") int courseId,
+                           @FormParam("question") String question,
+                           @FormParam("language") String language,
+                           @Context HttpServletRequest request,
+                           @Context SseEventSink sink,
+                           @Context Sse sse) {
+
+        String user = (String) request.getAttribute("jwtUser");
+        if (isBlank(user)) {
+            throw new WebApplicationException(Response.status(Response.Status.UNAUTHORIZED)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity(JsonSerializer.errorResponse("Unauthorized", "Valid token required", 401))
+                    .build());
+        }
+
+        if (isBlank(question)) {
+            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity(JsonSerializer.errorResponse("Bad Request", "Question is required", 400))
+                    .build());
+        }
+
+        String langParam = language != null ? String.format(",\"language\":\"%s\"", language) : "";
+        String requestBody = String.format("{\"course_id\":%d,\"question\":\"%s\"%s}",
+                courseId, escapeJson(question), langParam);
+
+        String cachedResponse = AnswerCache.get(courseId, language, question);
+        if (cachedResponse != null) {
+            recordChat(courseId, user, question, language, cachedResponse);
+            replayCached(sink, sse, cachedResponse);
+            sink.close();
+            return;
+        }
+
+        long loadEpoch = AnswerCache.currentEpoch();
+        long started = System.currentTimeMillis();
+        StreamedAnswer streamed = new StreamedAnswer();
+        try {
+            PythonServiceClient.postJsonLines("/api/chat/stream", requestBody, line -> {
+                    String type = streamed.accept(line);
+                    return relay(sink, sse, "meta".equals(type) ? AnswerCache.markCached(line, false) : line);
+                }, () -> !sink.isClosed())
+                .whenComplete((result, error) -> {
+                    if (streamed.done) {
+                        String response = streamed.toResponse();
+                        AnswerCache.put(courseId, language, question, response,
+                                System.currentTimeMillis() - started, loadEpoch);
+                        recordChat(courseId, user, question, language, response);
+                    }
+                    if (error != null && !sink.isClosed()) {
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        relay(sink, sse, String.format("{\"type\":\"error\",\"error\":\"%s\"}",
+                                escapeJson(cause.getMessage())));
+                    }
+                    sink.close();
+                });
+        } catch (PythonServiceClient.UnavailableException e) {
+            throw new WebApplicationException(serviceUnavailable(e));
+        } catch (Exception e) {
+            throw new WebApplicationException(Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity(JsonSerializer.errorResponse("Internal Server Error", e.getMessage(), 500))
+                    .build());
+        }
+    }
+
+    /**
+     * Collects the events of a streamed answer into the shape of a /api/chat response.
+     */
+    private static class StreamedAnswer {
+        Map<String, Object> meta;
+        final StringBuilder answer = new StringBuilder();
+        boolean done;
+
+        /**
+         * @return the event type, or null if the line is not a JSON object
+         */
+        String accept(String line) {
+            try {
+                Map<String, Object> event = JsonReader.parseObject(line);
+                String type = JsonReader.getString(event, "type");
+                if ("meta".equals(type)) {
+                    meta = event;
+                } else if ("token".equals(type)) {
+                    String text = JsonReader.getString(event, "text");
+                    if (text != null) {
+                        answer.append(text);
+                    }
+                } else if ("done".equals(type)) {
+                    done = true;
+                }
+                return type;
+            } catch (IllegalArgumentException e) {
+                // Relayed as-is, just not recorded
+                return null;
+            }
+        }
+
+        String toResponse() {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("success", Boolean.TRUE);
+            if (meta != null) {
+                response.putAll(meta);
+                response.remove("type");
+            }
+            response.put("answer", answer.toString());
+            return JsonReader.toJson(response);
+        }
+    }
+
+    /**
+     * Send a cached /api/chat response as the events a live stream would produce.
+     */
+    private void replayCached(SseEventSink sink, Sse sse, String cachedResponse) {
+        Map<String, Object> response;
+        try {
+            response = JsonReader.parseObject(cachedResponse);
+        } catch (IllegalArgumentException e) {
+            relay(sink, sse, "{\"type\":\"error\",\"error\":\"Invalid cached answer\"}");
+            return;
+        }
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("type", "meta");
+        meta.put("cached", Boolean.TRUE);
+        meta.put("question", response.get("question"));
+        meta.put("question_lang", response.get("question_lang"));
+        meta.put("sources", JsonReader.getList(response, "sources"));
+        meta.put("retrieved_langs", JsonReader.getList(response, "retrieved_langs"));
+
+        Map<String, Object> token = new LinkedHashMap<>();
+        token.put("type", "token");
+        token.put("text", JsonReader.getString(response, "answer"));
+
+        if (relay(sink, sse, JsonReader.toJson(meta)) && relay(sink, sse, JsonReader.toJson(token))) {
+            relay(sink, sse, "{\"type\":\"done\"}");
+        }
+    }
+
+    /**
+     * Load the course's recent answers from chat history into the answer cache.
+     * Only answers given since the course last finished processing are loaded.
+     * Admins only.
+     */
+    @POST
+    @Path("/{id}/chat/cache/warm")
+    public Response warmAnswerCache(@PathParam("id") int courseId,
+                                    @QueryParam("limit") Integer limit,
+                                    @Context HttpServletRequest request) {
+
+        String user = (String) request.getAttribute("jwtUser");
+        if (isBlank(user)) {
+            return Response.status(Response.Status.UNAUTHORIZED)
+                    .entity(JsonSerializer.errorResponse("Unauthorized", "Valid token required", 401))
+                    .build();
+        }
+        if (!AdminUsers.isAdmin(user)) {
+            return Response.status(Response.Status.FORBIDDEN)
+                    .entity(JsonSerializer.errorResponse("Forbidden", "Only admins can warm the answer cache", 403))
+                    .build();
+        }
+
+        int warmed = AnswerCache.warm(courseId, limit != null && limit > 0 ? limit : 200);
+        return Response.ok("{\"courseId\":" + courseId + ",\"warmed\":" + warmed + "}").build();
+    }
+
+    /**
+     * Queue a chat exchange for chat_history; never fails the request.
+     */
+    private void recordChat(int courseId, String user, String question, String language, String pythonResponse) {
+        try {
+            Map<String, Object> response = JsonReader.parseObject(pythonResponse);
+            String questionLang = JsonReader.getString(response, "question_lang");
+            Set<String> langs = new LinkedHashSet<>();
+            for (Object lang : JsonReader.getList(response, "retrieved_langs")) {
+                langs.add(String.valueOf(lang));
+            }
+            ChatHistoryDAO.record(new ChatHistoryDAO.Entry(
+                courseId,
+                user,
+                question,
+                questionLang,
+                JsonReader.getString(response, "answer"),
+                language != null ? language : questionLang,
+                JsonReader.toJson(JsonReader.getList(response, "sources")),
+                String.join(",", langs)
+            ));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Could not record chat for course " + courseId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Chat history of a course, newest first. Users get their own exchanges;
+     * admins get everyone's, optionally filtered with ?user=.
+     * Pages are chained with the returned nextBefore id.
+     */
+    @GET
+    @Path("/{id}/chat/history")
+    public Response getChatHistory(@PathParam("id") int courseId,
+                                   @QueryParam("user") String userFilter,
+                                   @QueryParam("before") Long beforeId,
+                                   @QueryParam("limit") Integer limit,
+                                   @Context HttpServletRequest request) {
+
+        String user = (String) request.getAttribute("jwtUser");
+        if (isBlank(user)) {
+            return Response.status(Response.Status.UNAUTHORIZED)
+                    .entity(JsonSerializer.errorResponse("Unauthorized", "Valid token required", 401))
+                    .build();
+        }
+
+        // Only admins may read other users' questions
+        String historyUser = isBlank(userFilter) ? null : userFilter;
+        if (!AdminUsers.isAdmin(user)) {
+            if (historyUser != null && !historyUser.equals(user)) {
+                return Response.status(Response.Status.FORBIDDEN)
+                        .entity(JsonSerializer.errorResponse("Forbidden", "Cannot read another user's history", 403))
+                        .build();
+            }
+            historyUser = user;
+        }
+
+        ChatHistoryDAO.Page page = ChatHistoryDAO.getHistory(courseId,
+                historyUser, beforeId, limit != null ? limit : 20);
+
+        List<Object> entries = new ArrayList<>();
+        for (ChatHistoryDAO.Entry entry : page.entries) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("id", entry.id);
+            json.put("userId", entry.userId);
+            json.put("question", entry.question);
+            json.put("questionLang", entry.questionLang);
+            json.put("answer", entry.answer);
+            json.put("answerLang", entry.answerLang);
+            json.put("sources", parseSources(entry.sources));
+            json.put("retrievedLangs", entry.retrievedLangs);
+            json.put("createdAt", entry.createdAt != null ? entry.createdAt.toString() : null);
+            entries.add(json);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("courseId", courseId);
+        response.put("entries", entries);
+        response.put("nextBefore", page.nextBeforeId);
+
+        return Response.ok(JsonReader.toJson(response)).build();
+    }
+
+    /**
+     * Sources are stored as the JSON array the Python service returned.
+     */
+    private static Object parseSources(String sources) {
+        if (sources == null) {
+            return new ArrayList<>();
+        }
+        try {
+            return JsonReader.parse(sources);
+        } catch (IllegalArgumentException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Send one JSON line as an event named after its "type" field. The write is
+     * not waited for; a failed write closes the sink, which stops the stream.
+     *
+     * @return false once the client has disconnected
+     */
+    private boolean relay(SseEventSink sink, Sse sse, String line) {
+        if (sink.isClosed()) {
+            return false;
+        }
+        Matcher type = EVENT_TYPE.matcher(line);
+        try {
+            sink.send(sse.newEventBuilder()
+                    .name(type.find() ? type.group(1) : "message")
+                    .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                    .data(String.class, line)
+                    .build())
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        sink.close();
+                    }
+                });
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
     @DELETE
     @Path("/{id}")
     public Response deleteCourse(@PathParam("id") int courseId,
@@ -322,6 +669,9 @@ public class CourseRestService {
                     .entity(JsonSerializer.errorResponse("Internal Server Error", "Unable to delete course", 500))
                     .build();
         }
+        SearchCache.invalidateCourse(courseId);
+        AnswerCache.invalidateCourse(courseId);
+        TranscriptIndex.invalidateCourse(courseId);
 
         return Response.ok(JsonSerializer.successResponse("Course deleted successfully")).build();
     }
@@ -357,34 +707,19 @@ public class CourseRestService {
                 }
             }
 
-            String urlStr = PYTHON_SERVICE_URL + "/api/embedding/search?course_id=" + courseId +
-                    "&query=" + java.net.URLEncoder.encode(query, StandardCharsets.UTF_8) +
-                    "&n_results=" + nResults;
-            if (languageFilter != null && !languageFilter.isEmpty()) {
-                urlStr += "&language_filter=" + languageFilter;
-            }
-
-            URL url = new URL(urlStr);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setRequestProperty("Accept", "application/json");
+            String filter = languageFilter != null && !languageFilter.isEmpty() ? languageFilter : null;
+            String path = "/api/embedding/search?course_id=" + courseId +
+                    "&query=" + URLEncoder.encode(query, StandardCharsets.UTF_8) +
+                    "&n_results=" + nResults +
+                    (filter != null ? "&language_filter=" + URLEncoder.encode(filter, StandardCharsets.UTF_8) : "");
 
-            int responseCode = conn.getResponseCode();
-            if (responseCode != 200) {
-                throw new Exception("Python service returned error: " + responseCode);
-            }
-
-            StringBuilder response = new StringBuilder();
-            try (BufferedReader br = new BufferedReader(
-                    new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    response.append(line.trim());
-                }
-            }
-
-            return Response.ok(response.toString()).build();
+            String results = SearchCache.get(courseId, query, nResults, filter,
+                    () -> PythonServiceClient.get(path));
+            TranscriptIndex.Result keywordResult = TranscriptIndex.search(courseId, query, nResults);
+            return Response.ok(withTimedHits(results, keywordResult.hits, keywordResult.videoId)).build();
 
+        } catch (PythonServiceClient.UnavailableException e) {
+            return serviceUnavailable(e);
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity(JsonSerializer.errorResponse("Internal Server Error", e.getMessage(), 500))
@@ -392,33 +727,103 @@ public class CourseRestService {
         }
     }
 
-    private String callPythonService(String endpoint, String jsonBody) throws Exception {
-        URL url = new URL(PYTHON_SERVICE_URL + endpoint);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("POST");
-        conn.setRequestProperty("Content-Type", "application/json");
-        conn.setDoOutput(true);
+    /**
+     * Add a "hits" list to a semantic search response, merging in the keyword
+     * hits of the transcript index. Semantic hits on transcript chunks and keyword
+     * hits on segments inside them are joined by time into one hit; each hit with
+     * a time has "t", the second to start the course video at. Hits found both
+     * ways come first, then the remaining semantic hits, then keyword hits.
+     */
+    private String withTimedHits(String semanticJson, List<TranscriptIndex.Hit> keywordHits, Integer videoId) {
+        Map<String, Object> response;
+        try {
+            response = JsonReader.parseObject(semanticJson);
+        } catch (IllegalArgumentException e) {
+            return semanticJson;
+        }
 
-        try (OutputStream os = conn.getOutputStream()) {
-            byte[] input = jsonBody.getBytes(StandardCharsets.UTF_8);
-            os.write(input, 0, input.length);
+        List<Object> documents = JsonReader.getList(response, "documents");
+        List<Object> metadatas = JsonReader.getList(response, "metadatas");
+        List<Object> distances = JsonReader.getList(response, "distances");
+        List<Map<String, Object>> semantic = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i++) {
+            Map<?, ?> metadata = i < metadatas.size() && metadatas.get(i) instanceof Map ?
+                    (Map<?, ?>) metadatas.get(i) : new LinkedHashMap<>();
+            Map<String, Object> hit = new LinkedHashMap<>();
+            hit.put("match", "semantic");
+            hit.put("source", metadata.get("source"));
+            hit.put("lang", metadata.get("lang"));
+            hit.put("text", documents.get(i));
+            hit.put("distance", i < distances.size() ? distances.get(i) : null);
+            if (metadata.get("start_time") instanceof Number && metadata.get("end_time") instanceof Number) {
+                hit.put("start", metadata.get("start_time"));
+                hit.put("end", metadata.get("end_time"));
+            }
+            if (metadata.get("start_page") instanceof Number) {
+                hit.put("page", metadata.get("start_page"));
+            }
+            semantic.add(hit);
         }
 
-        int responseCode = conn.getResponseCode();
-        if (responseCode != 200) {
-            throw new Exception("Python service returned error: " + responseCode);
+        List<Map<String, Object>> both = new ArrayList<>();
+        Set<Map<String, Object>> joinedHits = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Map<String, Object>> keywordOnly = new ArrayList<>();
+        for (TranscriptIndex.Hit keywordHit : keywordHits) {
+            Map<String, Object> joined = null;
+            for (Map<String, Object> hit : semantic) {
+                if (hit.containsKey("start") && !joinedHits.contains(hit)
+                        && keywordHit.startTime < ((Number) hit.get("end")).doubleValue()
+                        && keywordHit.endTime > ((Number) hit.get("start")).doubleValue()) {
+                    joined = hit;
+                    break;
+                }
+            }
+            if (joined != null) {
+                // The segment pins down where in the chunk the words are spoken
+                joined.put("match", "both");
+                joined.put("segment", keywordHit.text);
+                joined.put("score", keywordHit.score);
+                joined.put("t", (long) Math.floor(keywordHit.startTime));
+                both.add(joined);
+                joinedHits.add(joined);
+            } else {
+                Map<String, Object> hit = new LinkedHashMap<>();
+                hit.put("match", "keyword");
+                hit.put("source", "transcript");
+                hit.put("text", keywordHit.text);
+                hit.put("score", keywordHit.score);
+                hit.put("start", keywordHit.startTime);
+                hit.put("end", keywordHit.endTime);
+                hit.put("t", (long) Math.floor(keywordHit.startTime));
+                keywordOnly.add(hit);
+            }
         }
 
-        StringBuilder response = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                response.append(line.trim());
+        List<Object> hits = new ArrayList<>(both);
+        for (Map<String, Object> hit : semantic) {
+            if (!joinedHits.contains(hit)) {
+                if (hit.containsKey("start")) {
+                    hit.put("t", (long) Math.floor(((Number) hit.get("start")).doubleValue()));
+                }
+                hits.add(hit);
             }
         }
+        hits.addAll(keywordOnly);
 
-        return response.toString();
+        response.put("videoId", videoId);
+        response.put("hits", hits);
+        return JsonReader.toJson(response);
+    }
+
+    /**
+     * 503 with Retry-After for calls the Python client refused to make.
+     */
+    private Response serviceUnavailable(PythonServiceClient.UnavailableException e) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header("Retry-After", e.retryAfterSeconds)
+                .type(MediaType.APPLICATION_JSON)
+                .entity(JsonSerializer.errorResponse("Service Unavailable", e.getMessage(), 503))
+                .build();
     }
 
     private String courseToJson(CourseDAO.Course course) {
@@ -438,59 +843,8 @@ public class CourseRestService {
 
     private String escapeJson(String str) {
         if (str == null) return "";
-        return str.replace("\\", "\\\\")
-                 .replace("\"", "\\\"")
-                 .replace("\n", "\\n")
-                 .replace("\r", "\\r");
-    }
-
-    private String extractNotesFromResponse(String jsonResponse) {
-        try {
-            // Simple JSON parsing to extract "notes" field
-            // Expected format: {"success":true,"notes":"...","language":"en",...}
-            int notesStart = jsonResponse.indexOf("\"notes\":\"");
-            if (notesStart == -1) {
-                return null;
-            }
-            
-            notesStart += 9; // Skip past "notes":"
-            int notesEnd = notesStart;
-            boolean escaped = false;
-            
-            while (notesEnd < jsonResponse.length()) {
-                char c = jsonResponse.charAt(notesEnd);
-                if (escaped) {
-                    escaped = false;
-                    notesEnd++;
-                    continue;
-                }
-                if (c == '\\') {
-                    escaped = true;
-                    notesEnd++;
-                    continue;
-                }
-                if (c == '"') {
-                    break;
-                }
-                notesEnd++;
-            }
-            
-            if (notesEnd >= jsonResponse.length()) {
-                return null;
-            }
-            
-            String notes = jsonResponse.substring(notesStart, notesEnd);
-            // Unescape JSON string
-            notes = notes.replace("\\\"", "\"")
-                        .replace("\\n", "\n")
-                        .replace("\\r", "\r")
-                        .replace("\\t", "\t")
-                        .replace("\\\\", "\\");
-            
-            return notes;
-        } catch (Exception e) {
-            System.err.println("Error extracting notes from response: " + e.getMessage());
-            return null;
-        }
+        // Escape every control character, not just line breaks, so the result is valid JSON
+        String quoted = JsonReader.toJson(str);
+        return quoted.substring(1, quoted.length() - 1);
     }
 }
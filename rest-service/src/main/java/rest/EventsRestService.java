@@ -0,0 +1,98 @@
+package rest;
+
+import io.jsonwebtoken.JwtException;
+import security.JwtProvider;
+import service.StatusEvents;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Server-Sent Events stream of status changes, replacing client polling of
+ * /video/status and /course/list.
+ *
+ * Query parameters:
+ *   videos  - comma-separated video ids, or "all"
+ *   courses - comma-separated course ids, or "all"; requires token
+ *   token   - JWT, since EventSource cannot send an Authorization header
+ */
+@Path("/events")
+public class EventsRestService {
+
+    @GET
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void subscribe(@QueryParam("videos") String videos,
+                          @QueryParam("courses") String courses,
+                          @QueryParam("token") String token,
+                          @Context SseEventSink sink,
+                          @Context Sse sse) {
+        boolean wantsCourses = courses != null && !courses.trim().isEmpty();
+        if (wantsCourses && !isValidToken(token)) {
+            sendError(sink, sse, "Valid token required for course events");
+            return;
+        }
+
+        boolean allVideos = "all".equalsIgnoreCase(trim(videos));
+        Set<Integer> videoIds = allVideos ? new HashSet<>() : parseIds(videos);
+        Set<Integer> courseIds = "all".equalsIgnoreCase(trim(courses)) ? new HashSet<>() : parseIds(courses);
+
+        if (!allVideos && videoIds.isEmpty() && !wantsCourses) {
+            sendError(sink, sse, "Subscribe to at least one video or course");
+            return;
+        }
+
+        StatusEvents.subscribe(sink, sse, videoIds, allVideos, courseIds, wantsCourses);
+    }
+
+    private boolean isValidToken(String token) {
+        if (token == null || token.isEmpty()) {
+            return false;
+        }
+        try {
+            JwtProvider.validateToken(token);
+            return true;
+        } catch (JwtException e) {
+            return false;
+        }
+    }
+
+    private void sendError(SseEventSink sink, Sse sse, String message) {
+        try (SseEventSink closing = sink) {
+            OutboundSseEvent event = sse.newEventBuilder()
+                    .name("error")
+                    .data(String.class, "{\"error\":\"" + message + "\"}")
+                    .build();
+            closing.send(event).toCompletableFuture().join();
+        } catch (Exception e) {
+            System.err.println("Error sending SSE error event: " + e.getMessage());
+        }
+    }
+
+    private Set<Integer> parseIds(String value) {
+        Set<Integer> ids = new HashSet<>();
+        if (value == null) {
+            return ids;
+        }
+        for (String part : value.split(",")) {
+            try {
+                ids.add(Integer.parseInt(part.trim()));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return ids;
+    }
+
+    private String trim(String value) {
+        return value == null ? "" : value.trim();
+    }
+}
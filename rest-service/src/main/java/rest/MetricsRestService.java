@@ -0,0 +1,135 @@
+package rest;
+
+import database.ChatHistoryDAO;
+import database.ConnectionPool;
+import database.DatabaseManager;
+import database.VideoCache;
+import database.ViewCounter;
+import security.AdminUsers;
+import service.AnswerCache;
+import service.ManifestCache;
+import service.PythonServiceClient;
+import service.SearchCache;
+import service.StatusEvents;
+import service.TranscriptIndex;
+import util.JsonSerializer;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Locale;
+
+/**
+ * Exposes internal runtime counters (connection pool, caches) as JSON.
+ * Requires a token, and is limited to admins and requests made from the server itself.
+ */
+@Path("/metrics")
+@Produces(MediaType.APPLICATION_JSON)
+public class MetricsRestService {
+
+    @GET
+    public Response getMetrics(@Context HttpServletRequest request) {
+        String user = (String) request.getAttribute("jwtUser");
+        if (!AdminUsers.isAdmin(user) && !isLocal(request.getRemoteAddr())) {
+            return Response.status(Response.Status.FORBIDDEN)
+                    .entity(JsonSerializer.errorResponse("Forbidden", "Metrics are only available to admins", 403))
+                    .build();
+        }
+
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"dbPool\":").append(poolToJson(DatabaseManager.getPoolStats())).append(",");
+        json.append("\"viewCounter\":").append(String.format(
+            "{\"pendingViews\":%d,\"flushCount\":%d,\"flushedViews\":%d,\"failedFlushes\":%d}",
+            ViewCounter.getPendingTotal(), ViewCounter.getFlushCount(),
+            ViewCounter.getFlushedViews(), ViewCounter.getFailedFlushes())).append(",");
+        json.append("\"videoCache\":").append(String.format(Locale.ROOT,
+            "{\"size\":%d,\"maxSize\":%d,\"hits\":%d,\"misses\":%d,\"evictions\":%d,\"hitRatio\":%.4f}",
+            VideoCache.size(), VideoCache.getMaxEntries(), VideoCache.getHits(),
+            VideoCache.getMisses(), VideoCache.getEvictions(), VideoCache.getHitRatio())).append(",");
+        json.append("\"manifestCache\":").append(String.format(
+            "{\"size\":%d,\"hits\":%d,\"misses\":%d}",
+            ManifestCache.size(), ManifestCache.getHits(), ManifestCache.getMisses())).append(",");
+        json.append("\"searchCache\":").append(String.format(Locale.ROOT,
+            "{\"size\":%d,\"maxSize\":%d,\"hits\":%d,\"misses\":%d,\"coalesced\":%d,\"evictions\":%d,\"hitRatio\":%.4f}",
+            SearchCache.size(), SearchCache.getMaxEntries(), SearchCache.getHits(), SearchCache.getMisses(),
+            SearchCache.getCoalesced(), SearchCache.getEvictions(), SearchCache.getHitRatio())).append(",");
+        json.append("\"statusEvents\":").append(String.format(
+            "{\"subscribers\":%d,\"published\":%d,\"dropped\":%d,\"slowClients\":%d}",
+            StatusEvents.getSubscriberCount(), StatusEvents.getPublishedEvents(), StatusEvents.getDroppedEvents(),
+            StatusEvents.getSlowClients())).append(",");
+        json.append("\"answerCache\":").append(String.format(Locale.ROOT,
+            "{\"size\":%d,\"maxSize\":%d,\"hits\":%d,\"misses\":%d,\"evictions\":%d,\"warmed\":%d," +
+            "\"hitRatio\":%.4f,\"avgGenerationMillis\":%d,\"savedMillis\":%d}",
+            AnswerCache.size(), AnswerCache.getMaxEntries(), AnswerCache.getHits(), AnswerCache.getMisses(),
+            AnswerCache.getEvictions(), AnswerCache.getWarmed(), AnswerCache.getHitRatio(),
+            AnswerCache.getAvgGenerationMillis(), AnswerCache.getSavedMillis())).append(",");
+        json.append("\"transcriptIndex\":").append(String.format(Locale.ROOT,
+            "{\"courses\":%d,\"maxCourses\":%d,\"loads\":%d,\"evictions\":%d,\"queries\":%d," +
+            "\"avgQueryMicros\":%.1f}",
+            TranscriptIndex.size(), TranscriptIndex.getMaxCourses(), TranscriptIndex.getLoads(),
+            TranscriptIndex.getEvictions(), TranscriptIndex.getQueries(),
+            TranscriptIndex.getAvgQueryMicros())).append(",");
+        json.append("\"chatHistory\":").append(String.format(
+            "{\"queueSize\":%d,\"queueCapacity\":%d,\"queued\":%d,\"written\":%d,\"batches\":%d," +
+            "\"dropped\":%d,\"failed\":%d}",
+            ChatHistoryDAO.getQueueSize(), ChatHistoryDAO.getQueueCapacity(), ChatHistoryDAO.getQueued(),
+            ChatHistoryDAO.getWritten(), ChatHistoryDAO.getBatches(), ChatHistoryDAO.getDropped(),
+            ChatHistoryDAO.getFailed())).append(",");
+        json.append("\"pythonService\":").append(pythonRoutesToJson());
+        json.append("}");
+        return Response.ok(json.toString()).build();
+    }
+
+    private String pythonRoutesToJson() {
+        StringBuilder json = new StringBuilder("{");
+        boolean first = true;
+        for (PythonServiceClient.Route route : PythonServiceClient.getRoutes()) {
+            if (!first) {
+                json.append(",");
+            }
+            first = false;
+            json.append(String.format(
+                "\"%s\":{\"circuit\":\"%s\",\"active\":%d,\"maxConcurrent\":%d,\"waiting\":%d," +
+                "\"accepted\":%d,\"bulkheadRejections\":%d,\"circuitRejections\":%d," +
+                "\"successes\":%d,\"failures\":%d,\"timesOpened\":%d}",
+                route.name, route.breaker.getState(), route.bulkhead.getActive(),
+                route.bulkhead.getMaxConcurrent(), route.bulkhead.getWaiting(),
+                route.bulkhead.getAccepted(), route.bulkhead.getRejections(),
+                route.breaker.getRejections(), route.breaker.getSuccesses(),
+                route.breaker.getFailures(), route.breaker.getOpenCount()));
+        }
+        json.append("}");
+        return json.toString();
+    }
+
+    private String poolToJson(ConnectionPool.Stats stats) {
+        if (stats == null) {
+            return "null";
+        }
+        return String.format(Locale.ROOT,
+            "{\"maxSize\":%d,\"active\":%d,\"idle\":%d,\"total\":%d,\"waiting\":%d," +
+            "\"borrowCount\":%d,\"timeoutCount\":%d,\"createdCount\":%d,\"evictedCount\":%d," +
+            "\"invalidCount\":%d,\"avgWaitMillis\":%.3f,\"maxWaitMillis\":%.3f," +
+            "\"statementCache\":{\"hits\":%d,\"misses\":%d,\"evictions\":%d}}",
+            stats.maxSize, stats.active, stats.idle, stats.total, stats.waiting,
+            stats.borrowCount, stats.timeoutCount, stats.createdCount, stats.evictedCount,
+            stats.invalidCount, stats.avgWaitMillis, stats.maxWaitMillis,
+            stats.statementCacheHits, stats.statementCacheMisses, stats.statementCacheEvictions
+        );
+    }
+
+    private static boolean isLocal(String address) {
+        try {
+            return address != null && InetAddress.getByName(address).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package rest;
 
+import database.TranscodingJobDAO;
 import database.VideoDAO;
+import service.ManifestCache;
+import service.StatusEvents;
+import service.TranscodingScheduler;
 import service.TranscodingService;
 import util.JsonSerializer;
-import java.io.File;
+import util.SegmentStreamer;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.ws.rs.*;
@@ -30,6 +34,7 @@ public class VideoRestService {
                                   @FormParam("filename") String filename,
                                   @FormParam("filePath") String filePath,
                                   @FormParam("duration") String durationStr,
+                                  @FormParam("transcodeMode") String transcodeMode,
                                   @Context HttpServletRequest request) {
 
         String uploader = (String) request.getAttribute("jwtUser");
@@ -70,8 +75,10 @@ public class VideoRestService {
 
         String fullInputPath = safeFilePath;
         String outputDir = "/tmp/vidstream/videos/processed/" + video.id;
+        TranscodingService.Mode mode =
+                TranscodingService.Mode.parse(transcodeMode, TranscodingService.getDefaultMode());
 
-        TranscodingService.transcodeVideoAsync(video.id, fullInputPath, outputDir);
+        TranscodingService.transcodeVideoAsync(video.id, fullInputPath, outputDir, mode);
 
         return Response.status(Response.Status.CREATED)
                 .entity(JsonSerializer.videoToJson(video))
@@ -162,6 +169,7 @@ public class VideoRestService {
                     .entity(JsonSerializer.errorResponse("Internal Server Error", "Unable to delete video", 500))
                     .build();
         }
+        ManifestCache.invalidate(id);
         return Response.ok(JsonSerializer.successResponse("Video deleted")).build();
     }
 
@@ -186,11 +194,86 @@ public class VideoRestService {
                     .entity(JsonSerializer.errorResponse("Not Found", "Video not found", 404))
                     .build();
         }
-        String json = String.format("{\"id\":%d,\"status\":\"%s\",\"duration\":%s}",
-                video.id, video.status, video.duration != null ? video.duration : "null");
+        TranscodingService.JobStats stats = TranscodingService.getJobStats(id);
+        String transcode = "null";
+        if (stats != null) {
+            transcode = String.format(java.util.Locale.ROOT,
+                    "{\"mode\":\"%s\",\"finished\":%b,\"wallSeconds\":%.1f,\"cpuSeconds\":%.1f,\"progress\":%s}",
+                    stats.mode, stats.isFinished(), stats.getWallMillis() / 1000.0, stats.getCpuMillis() / 1000.0,
+                    stats.progressToJson());
+        }
+        String json = String.format("{\"id\":%d,\"status\":\"%s\",\"duration\":%s,\"transcode\":%s}",
+                video.id, video.status, video.duration != null ? video.duration : "null", transcode);
         return Response.ok(json).build();
     }
 
+    /**
+     * Transcoding queue: running jobs first, then queued jobs in claim order.
+     */
+    @GET
+    @Path("/queue")
+    public Response getQueue() {
+        List<TranscodingJobDAO.Job> jobs = TranscodingJobDAO.getActiveJobs();
+        int queued = 0;
+        int processing = 0;
+        StringBuilder items = new StringBuilder();
+        for (TranscodingJobDAO.Job job : jobs) {
+            if ("PROCESSING".equals(job.status)) {
+                processing++;
+            } else {
+                queued++;
+            }
+            if (items.length() > 0) {
+                items.append(",");
+            }
+            items.append(String.format(
+                    "{\"id\":%d,\"videoId\":%d,\"status\":\"%s\",\"mode\":\"%s\",\"priority\":%d," +
+                    "\"attempts\":%d,\"createdAt\":\"%s\",\"startedAt\":%s}",
+                    job.id, job.videoId, job.status, job.mode, job.priority, job.attempts, job.createdAt,
+                    job.startedAt != null ? "\"" + job.startedAt + "\"" : "null"));
+        }
+        String json = String.format(
+                "{\"maxConcurrent\":%d,\"queued\":%d,\"processing\":%d,\"runningHere\":%d,\"jobs\":[%s]}",
+                TranscodingScheduler.getMaxConcurrent(), queued, processing,
+                TranscodingScheduler.getRunningJobs().size(), items);
+        return Response.ok(json).build();
+    }
+
+    @POST
+    @Path("/queue/{jobId}/cancel")
+    public Response cancelTranscoding(@PathParam("jobId") int jobId, @Context HttpServletRequest request) {
+        String uploader = (String) request.getAttribute("jwtUser");
+        if (isBlank(uploader)) {
+            return Response.status(Response.Status.UNAUTHORIZED)
+                    .entity(JsonSerializer.errorResponse("Unauthorized", "Valid token required", 401))
+                    .build();
+        }
+
+        TranscodingJobDAO.Job job = TranscodingJobDAO.getJobById(jobId);
+        VideoDAO.Video video = job != null ? VideoDAO.getVideoById(job.videoId) : null;
+        if (video == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity(JsonSerializer.errorResponse("Not Found", "Job not found", 404))
+                    .build();
+        }
+
+        if (!uploader.equals(video.uploader)) {
+            return Response.status(Response.Status.FORBIDDEN)
+                    .entity(JsonSerializer.errorResponse("Forbidden", "You can only modify your own videos", 403))
+                    .build();
+        }
+
+        if (TranscodingJobDAO.cancelJob(jobId) == null) {
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(JsonSerializer.errorResponse("Conflict", "Only queued jobs can be cancelled", 409))
+                    .build();
+        }
+
+        VideoDAO.updateStatus(video.id, "ERROR");
+        StatusEvents.publishVideoStatus(video.id, "ERROR");
+        return Response.ok(JsonSerializer.successResponse("Transcoding job cancelled")).build();
+    }
+
     @GET
     @Path("/searchTitle/{title}")
     public Response searchByTitle(@PathParam("title") String title) {
@@ -280,6 +363,7 @@ public class VideoRestService {
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
     public Response updateStatus(@FormParam("id") String idStr,
                                  @FormParam("status") String status,
+                                 @FormParam("transcodeMode") String transcodeMode,
                                  @Context HttpServletRequest request) {
         String uploader = (String) request.getAttribute("jwtUser");
         if (isBlank(uploader)) {
@@ -329,13 +413,16 @@ public class VideoRestService {
                     .entity(JsonSerializer.errorResponse("Internal Server Error", "Unable to update status", 500))
                     .build();
         }
+        StatusEvents.publishVideoStatus(id, status);
 
         VideoDAO.Video video = VideoDAO.getVideoById(id);
 
         if ("UPLOADING".equals(status) && video != null && video.filePath != null) {
             String fullInputPath = video.filePath;
             String outputDir = "/tmp/vidstream/videos/processed/" + video.id;
-            TranscodingService.transcodeVideoAsync(video.id, fullInputPath, outputDir);
+            TranscodingService.Mode mode =
+                    TranscodingService.Mode.parse(transcodeMode, TranscodingService.getDefaultMode());
+            TranscodingService.transcodeVideoAsync(video.id, fullInputPath, outputDir, mode);
         }
 
         return Response.ok(JsonSerializer.videoToJson(video)).build();
@@ -358,7 +445,7 @@ public class VideoRestService {
                     .build();
         }
 
-        VideoDAO.Video updatedVideo = VideoDAO.getVideoById(id);
+        VideoDAO.Video updatedVideo = video.withViews(video.views + 1);
         return Response.ok(JsonSerializer.videoToJson(updatedVideo)).build();
     }
 
@@ -429,9 +516,6 @@ public class VideoRestService {
         }
 
         try {
-            // Read manifest file
-            String manifestContent = java.nio.file.Files.readString(manifestFile.toPath());
-
             // Get base URL for segments
             String scheme = request.getScheme();
             String serverName = request.getServerName();
@@ -444,14 +528,22 @@ public class VideoRestService {
             }
             baseUrl += contextPath + "/resources/video/segment/" + id + "/";
 
-            // Insert BaseURL into manifest after <Period> tag
-            String modifiedManifest = manifestContent.replaceFirst(
-                "(<Period[^>]*>)",
-                "$1\n    <BaseURL>" + baseUrl + "</BaseURL>"
-            );
+            // Manifest with BaseURL inserted after the <Period> tag, rewritten once per manifest version
+            ManifestCache.Manifest manifest = ManifestCache.get(id, baseUrl, manifestFile);
+
+            String ifNoneMatch = request.getHeader("If-None-Match");
+            if (ifNoneMatch != null && SegmentStreamer.matchesEtag(ifNoneMatch, manifest.etag)) {
+                return Response.notModified()
+                        .header("ETag", manifest.etag)
+                        .header("Cache-Control", "no-cache")
+                        .header("Access-Control-Allow-Origin", "*")
+                        .build();
+            }
 
-            return Response.ok(modifiedManifest)
+            return Response.ok(manifest.bytes)
                     .type("application/dash+xml")
+                    .header("ETag", manifest.etag)
+                    .header("Cache-Control", "no-cache")
                     .header("Access-Control-Allow-Origin", "*")
                     .build();
 
@@ -467,6 +559,10 @@ public class VideoRestService {
     public Response getSegment(@PathParam("id") int id,
                               @PathParam("filename") String filename,
                               @Context HttpServletRequest request) {
+        if (filename == null || filename.contains("..") || filename.contains("/") || filename.contains("\\")) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+
         VideoDAO.Video video = VideoDAO.getVideoById(id);
         if (video == null || video.processedPath == null) {
             return Response.status(Response.Status.NOT_FOUND).build();
@@ -475,15 +571,15 @@ public class VideoRestService {
         String segmentPath = video.processedPath + "/" + filename;
         java.io.File segmentFile = new java.io.File(segmentPath);
 
-        if (!segmentFile.exists()) {
+        if (!segmentFile.isFile()) {
             return Response.status(Response.Status.NOT_FOUND).build();
         }
 
         String mimeType = filename.endsWith(".m4s") ? "video/iso.segment" : "application/octet-stream";
 
-        return Response.ok(segmentFile)
-                .type(mimeType)
-                .header("Access-Control-Allow-Origin", "*")
-                .build();
+        // Segments are rewritten while renditions are still being added; only a READY video is final
+        boolean immutable = "READY".equals(video.status);
+
+        return SegmentStreamer.serve(segmentFile, mimeType, immutable, request);
     }
 }
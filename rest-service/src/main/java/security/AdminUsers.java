@@ -0,0 +1,26 @@
+package security;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Users allowed to see other users' data and service internals. There are no
+ * roles in the users table, so admins are listed in ADMIN_USERS (comma-separated
+ * usernames); with it unset nobody is an admin.
+ */
+public class AdminUsers {
+
+    private static final Set<String> ADMINS =
+        System.getenv("ADMIN_USERS") != null ?
+        Arrays.stream(System.getenv("ADMIN_USERS").split(","))
+            .map(String::trim)
+            .filter(name -> !name.isEmpty())
+            .collect(Collectors.toUnmodifiableSet()) :
+        Collections.emptySet();
+
+    public static boolean isAdmin(String username) {
+        return username != null && ADMINS.contains(username);
+    }
+}
@@ -10,7 +10,8 @@ import util.JsonSerializer;
 
 import java.io.IOException;
 
-@WebFilter(urlPatterns = {"/resources/*"})
+// asyncSupported is required for the Server-Sent Events stream
+@WebFilter(urlPatterns = {"/resources/*"}, asyncSupported = true)
 public class JwtFilter implements Filter {
 
     private static final String[] EXCLUDED_PATHS = {
@@ -24,7 +25,8 @@ public class JwtFilter implements Filter {
         "/resources/video/searchUploader/",
         "/resources/video/searchQuery/",
         "/resources/video/status/",
-        "/resources/video/thumbnail/"
+        "/resources/video/thumbnail/",
+        "/resources/events"
     };
 
     @Override
@@ -0,0 +1,292 @@
+package service;
+
+import database.ChatHistoryDAO;
+import database.CourseDAO;
+import util.JsonReader;
+
+import java.sql.Timestamp;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded LRU cache of chat answers keyed by course, requested language and a
+ * fingerprint of the question, so rephrasings that differ only in case, accents,
+ * punctuation or spacing reuse one RAG + LLM generation. A course's entries are
+ * dropped when it is reprocessed or deleted, and can be warmed from chat_history.
+ */
+public class AnswerCache {
+
+    private static final int MAX_ENTRIES =
+        System.getenv("ANSWER_CACHE_MAX_ENTRIES") != null ?
+        Integer.parseInt(System.getenv("ANSWER_CACHE_MAX_ENTRIES")) : 1000;
+
+    private static final long TTL_MS =
+        System.getenv("ANSWER_CACHE_TTL_MS") != null ?
+        Long.parseLong(System.getenv("ANSWER_CACHE_TTL_MS")) : 24 * 3600 * 1000L;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+    private static final AtomicLong warmed = new AtomicLong();
+    private static final AtomicLong generated = new AtomicLong();
+    private static final AtomicLong generationMillis = new AtomicLong();
+    private static final AtomicLong savedMillis = new AtomicLong();
+
+    // Bumped on every invalidation so an answer generated against old embeddings is not cached
+    private static final AtomicLong epoch = new AtomicLong();
+
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > MAX_ENTRIES) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private static class Entry {
+        final int courseId;
+        final String response;
+        // How long the answer took to generate; 0 if it was warmed from history
+        final long latencyMillis;
+        final long expiresAt;
+
+        Entry(int courseId, String response, long latencyMillis, long expiresAt) {
+            this.courseId = courseId;
+            this.response = response;
+            this.latencyMillis = latencyMillis;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * @return the cached /api/chat response, or null
+     */
+    public static String get(int courseId, String language, String question) {
+        String key = key(courseId, language, question);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+                hits.incrementAndGet();
+                savedMillis.addAndGet(entry.latencyMillis > 0 ? entry.latencyMillis : getAvgGenerationMillis());
+                return entry.response;
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Epoch to pass to put() for an answer generated from now on.
+     */
+    public static long currentEpoch() {
+        return epoch.get();
+    }
+
+    /**
+     * Cache a freshly generated answer.
+     *
+     * @param latencyMillis time the Python service took to produce it
+     */
+    public static void put(int courseId, String language, String question, String response,
+                           long latencyMillis, long loadEpoch) {
+        generated.incrementAndGet();
+        generationMillis.addAndGet(latencyMillis);
+        store(courseId, key(courseId, language, question), response, latencyMillis, loadEpoch);
+    }
+
+    /**
+     * @return false if the answer was not kept because the course was invalidated since loadEpoch
+     */
+    private static boolean store(int courseId, String key, String response, long latencyMillis, long loadEpoch) {
+        if (response == null || MAX_ENTRIES <= 0) {
+            return false;
+        }
+        synchronized (entries) {
+            if (epoch.get() != loadEpoch) {
+                return false;
+            }
+            entries.put(key, new Entry(courseId, response, latencyMillis, System.currentTimeMillis() + TTL_MS));
+            return true;
+        }
+    }
+
+    /**
+     * Load a course's most recent answers from chat_history. Entries already in
+     * the cache are kept, since they are at least as fresh.
+     *
+     * @return number of answers added
+     */
+    public static int warm(int courseId, int limit) {
+        // Read before the processing time: if the course finishes processing after
+        // this, its invalidation changes the epoch and nothing loaded here is kept
+        long loadEpoch = epoch.get();
+        // Only answers given since the course last finished processing match its current embeddings
+        Timestamp processedAt = CourseDAO.getProcessedAt(courseId);
+        if (processedAt == null) {
+            return 0;
+        }
+        List<ChatHistoryDAO.Entry> history = new ArrayList<>();
+        Long before = null;
+        while (history.size() < limit) {
+            ChatHistoryDAO.Page page = ChatHistoryDAO.getHistory(courseId, null, before, processedAt,
+                    Math.min(ChatHistoryDAO.MAX_PAGE_SIZE, limit - history.size()));
+            history.addAll(page.entries);
+            if (page.nextBeforeId == null) {
+                break;
+            }
+            before = page.nextBeforeId;
+        }
+
+        int added = 0;
+        // Newest first, so the first answer seen for a question wins
+        for (ChatHistoryDAO.Entry exchange : history) {
+            if (exchange.answer == null || exchange.question == null) {
+                continue;
+            }
+            String response = toResponse(exchange);
+            List<String> keys = new ArrayList<>();
+            keys.add(key(courseId, exchange.answerLang, exchange.question));
+            if (exchange.answerLang != null && exchange.answerLang.equals(exchange.questionLang)) {
+                // Also what a request without an explicit language would have got
+                keys.add(key(courseId, null, exchange.question));
+            }
+            for (String key : keys) {
+                boolean present;
+                synchronized (entries) {
+                    present = entries.containsKey(key);
+                }
+                if (!present && store(courseId, key, response, 0, loadEpoch)) {
+                    added++;
+                }
+            }
+        }
+        warmed.addAndGet(added);
+        return added;
+    }
+
+    private static String toResponse(ChatHistoryDAO.Entry exchange) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("success", Boolean.TRUE);
+        response.put("question", exchange.question);
+        response.put("question_lang", exchange.questionLang);
+        response.put("answer", exchange.answer);
+        Object sources;
+        try {
+            sources = exchange.sources != null ? JsonReader.parse(exchange.sources) : new ArrayList<>();
+        } catch (IllegalArgumentException e) {
+            sources = new ArrayList<>();
+        }
+        response.put("sources", sources);
+        List<Object> langs = new ArrayList<>();
+        if (exchange.retrievedLangs != null && !exchange.retrievedLangs.isEmpty()) {
+            for (String lang : exchange.retrievedLangs.split(",")) {
+                langs.add(lang);
+            }
+        }
+        response.put("retrieved_langs", langs);
+        return JsonReader.toJson(response);
+    }
+
+    /**
+     * Lower case, no accents, punctuation or repeated spaces: "What's the exam
+     * about?" and "whats the exam about" share one entry.
+     */
+    static String fingerprint(String question) {
+        String text = Normalizer.normalize(question, Normalizer.Form.NFD);
+        text = MARKS.matcher(text).replaceAll("");
+        text = text.replace("'", "").replace("\u2019", "");
+        text = NON_WORD.matcher(text.toLowerCase(Locale.ROOT)).replaceAll(" ");
+        return text.trim();
+    }
+
+    private static String key(int courseId, String language, String question) {
+        return courseId + "|" + (language != null ? language : "auto") + "|" + fingerprint(question);
+    }
+
+    /**
+     * Mark a /api/chat response as served from the cache or not.
+     */
+    public static String markCached(String response, boolean cached) {
+        String trimmed = response.trim();
+        if (!trimmed.startsWith("{")) {
+            return response;
+        }
+        String body = trimmed.substring(1).trim();
+        return "{\"cached\":" + cached + (body.startsWith("}") ? "" : ",") + body;
+    }
+
+    public static void invalidateCourse(int courseId) {
+        synchronized (entries) {
+            epoch.incrementAndGet();
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().courseId == courseId) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public static int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public static int getMaxEntries() {
+        return MAX_ENTRIES;
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static long getEvictions() {
+        return evictions.get();
+    }
+
+    public static long getWarmed() {
+        return warmed.get();
+    }
+
+    public static double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total > 0 ? (double) h / total : 0.0;
+    }
+
+    /**
+     * Average time the Python service took to generate an answer.
+     */
+    public static long getAvgGenerationMillis() {
+        long count = generated.get();
+        return count > 0 ? generationMillis.get() / count : 0;
+    }
+
+    /**
+     * Generation time avoided by hits; warmed entries count the average generation time.
+     */
+    public static long getSavedMillis() {
+        return savedMillis.get();
+    }
+}
@@ -0,0 +1,74 @@
+package service;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps the number of concurrent calls of one kind, so a slow dependency can tie
+ * up at most maxConcurrent threads. Callers either fail fast or wait up to
+ * maxWaitMillis for a slot (a negative value waits indefinitely).
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final long maxWaitMillis;
+    private final Semaphore permits;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    public Bulkhead(String name, int maxConcurrent, long maxWaitMillis) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaitMillis = maxWaitMillis;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    public boolean tryAcquire() throws InterruptedException {
+        boolean acquired;
+        if (maxWaitMillis < 0) {
+            permits.acquire();
+            acquired = true;
+        } else if (maxWaitMillis == 0) {
+            acquired = permits.tryAcquire();
+        } else {
+            acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        }
+        if (acquired) {
+            accepted.incrementAndGet();
+        } else {
+            rejections.incrementAndGet();
+        }
+        return acquired;
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getActive() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public int getWaiting() {
+        return permits.getQueueLength();
+    }
+
+    public long getAccepted() {
+        return accepted.get();
+    }
+
+    public long getRejections() {
+        return rejections.get();
+    }
+}
@@ -0,0 +1,206 @@
+package service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Segment-parallel encoding for long inputs.
+ * The source video is cut at keyframes into fixed-length pieces (stream copy, no
+ * re-encode), each piece is encoded on its own ffmpeg process, and the encoded
+ * pieces are joined with the concat demuxer. Audio is encoded once per rendition
+ * from the original file during the join, so there are no gaps at chunk borders.
+ */
+class ChunkedEncoder {
+
+    static final int CHUNK_SECONDS =
+        System.getenv("TRANSCODE_CHUNK_SECONDS") != null ?
+        Integer.parseInt(System.getenv("TRANSCODE_CHUNK_SECONDS")) : 60;
+
+    // Shorter inputs are not worth the split/concat overhead
+    static final int MIN_DURATION_SECONDS =
+        System.getenv("TRANSCODE_CHUNK_MIN_SECONDS") != null ?
+        Integer.parseInt(System.getenv("TRANSCODE_CHUNK_MIN_SECONDS")) : 600;
+
+    private static final int PARALLELISM =
+        System.getenv("TRANSCODE_CHUNK_PARALLELISM") != null ?
+        Integer.parseInt(System.getenv("TRANSCODE_CHUNK_PARALLELISM")) :
+        Runtime.getRuntime().availableProcessors();
+
+    // x264 threads per chunk process, so parallel chunks do not oversubscribe the CPU
+    private static final int THREADS_PER_CHUNK =
+        Math.max(1, Runtime.getRuntime().availableProcessors() / PARALLELISM);
+
+    // Shared by all running jobs, so the total number of encoder processes stays bounded.
+    // Plain threads rather than a ForkJoinPool: each one blocks on an ffmpeg process.
+    private static final ExecutorService pool = Executors.newFixedThreadPool(PARALLELISM, r -> {
+        Thread t = new Thread(r, "transcode-chunk");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Encoding settings of one output rendition.
+     */
+    static class Rendition {
+        final String name;
+        final String scale;
+        final String videoBitrate;
+        final String audioBitrate;
+
+        Rendition(String name, String scale, String videoBitrate, String audioBitrate) {
+            this.name = name;
+            this.scale = scale;
+            this.videoBitrate = videoBitrate;
+            this.audioBitrate = audioBitrate;
+        }
+    }
+
+    static final Rendition R360 = new Rendition("360p", "640:360", "800k", "96k");
+    static final Rendition R720 = new Rendition("720p", "1280:720", "2500k", "128k");
+    static final Rendition R1080 = new Rendition("1080p", "1920:1080", "5000k", "192k");
+
+    static boolean isWorthChunking(Integer durationSeconds) {
+        return durationSeconds != null && durationSeconds >= MIN_DURATION_SECONDS
+                && durationSeconds > CHUNK_SECONDS;
+    }
+
+    /**
+     * Cut the video stream of the input into CHUNK_SECONDS pieces. The segment muxer
+     * only cuts on keyframes, so pieces can be slightly longer than CHUNK_SECONDS.
+     *
+     * @return the pieces in playback order, or null if the split failed
+     */
+    static List<File> split(String inputPath, File workDir, TranscodingService.JobStats stats) {
+        String[] command = {
+            TranscodingService.FFMPEG_PATH, "-benchmark", "-y",
+            "-i", inputPath,
+            "-map", "0:v:0",
+            "-an",
+            "-c", "copy",
+            "-f", "segment",
+            "-segment_time", String.valueOf(CHUNK_SECONDS),
+            "-reset_timestamps", "1",
+            workDir.getPath() + File.separator + "src_%05d.mkv"
+        };
+        if (!TranscodingService.executeFFmpegCommand(command, stats)) {
+            return null;
+        }
+
+        File[] pieces = workDir.listFiles((dir, name) -> name.startsWith("src_") && name.endsWith(".mkv"));
+        if (pieces == null || pieces.length == 0) {
+            return null;
+        }
+        Arrays.sort(pieces);
+        return Arrays.asList(pieces);
+    }
+
+    /**
+     * Encode every piece for one rendition in parallel, then join them with the audio
+     * of the original input into outputPath.
+     */
+    static boolean encodeRendition(List<File> pieces, String inputPath, boolean hasAudio, File workDir,
+                                   Rendition rendition, String outputPath, TranscodingService.JobStats stats) {
+        List<File> encoded = new ArrayList<>();
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (File piece : pieces) {
+            File output = new File(workDir, rendition.name + "_" + piece.getName().replace(".mkv", ".mp4"));
+            encoded.add(output);
+            tasks.add(() -> encodePiece(piece, output, rendition, stats));
+        }
+
+        boolean allEncoded = true;
+        try {
+            for (Future<Boolean> result : pool.invokeAll(tasks)) {
+                allEncoded &= result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            allEncoded = false;
+        } catch (ExecutionException e) {
+            System.err.println("Error encoding chunk: " + e.getCause());
+            allEncoded = false;
+        }
+        if (!allEncoded) {
+            System.err.println("Chunked encoding failed for rendition " + rendition.name);
+            return false;
+        }
+
+        File list = new File(workDir, rendition.name + "_concat.txt");
+        StringBuilder entries = new StringBuilder();
+        for (File file : encoded) {
+            entries.append("file '").append(file.getAbsolutePath().replace("'", "'\\''")).append("'\n");
+        }
+        try {
+            Files.writeString(list.toPath(), entries.toString(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("Error writing concat list: " + e.getMessage());
+            return false;
+        }
+
+        List<String> command = new ArrayList<>();
+        command.add(TranscodingService.FFMPEG_PATH);
+        command.add("-benchmark");
+        command.add("-y");
+        command.add("-f");
+        command.add("concat");
+        command.add("-safe");
+        command.add("0");
+        command.add("-i");
+        command.add(list.getPath());
+        if (hasAudio) {
+            command.add("-i");
+            command.add(inputPath);
+        }
+        command.add("-map");
+        command.add("0:v:0");
+        command.add("-c:v");
+        command.add("copy");
+        if (hasAudio) {
+            command.add("-map");
+            command.add("1:a:0");
+            command.add("-c:a");
+            command.add("aac");
+            command.add("-b:a");
+            command.add(rendition.audioBitrate);
+        }
+        command.add(outputPath);
+
+        return TranscodingService.executeFFmpegCommand(command.toArray(new String[0]), stats);
+    }
+
+    static void deleteWorkDir(File workDir) {
+        File[] files = workDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        workDir.delete();
+    }
+
+    private static boolean encodePiece(File piece, File output, Rendition rendition,
+                                       TranscodingService.JobStats stats) {
+        String[] command = {
+            TranscodingService.FFMPEG_PATH, "-benchmark", "-progress", "pipe:1", "-nostats", "-y",
+            "-i", piece.getPath(),
+            "-vf", "scale=" + rendition.scale,
+            "-c:v", "libx264",
+            "-b:v", rendition.videoBitrate,
+            "-preset", "fast",
+            "-threads", String.valueOf(THREADS_PER_CHUNK),
+            "-an",
+            output.getPath()
+        };
+        return TranscodingService.executeFFmpegCommand(command, stats);
+    }
+}
@@ -0,0 +1,146 @@
+package service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Consecutive-failure circuit breaker. After failureThreshold failures in a row
+ * the circuit opens and calls are rejected without touching the remote service.
+ * Once openMillis have passed, a single probe call is let through (half-open):
+ * its success closes the circuit, its failure opens it again.
+ *
+ * Every state change starts a new generation, and tryAcquire hands out the
+ * current one as the call's permit. Outcomes reported with a permit from an
+ * older generation are counted but do not change the state, so a slow call
+ * started before the circuit opened cannot close it, and only the probe
+ * itself settles the half-open state.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    // Returned by tryAcquire when the call is rejected
+    public static final long REJECTED = -1;
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private long generation;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+    private final AtomicLong openCount = new AtomicLong();
+
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * @return the permit to report the call's outcome with, or REJECTED; with a
+     *         permit the caller must then report onSuccess, onFailure or release
+     */
+    public synchronized long tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return generation;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt >= openMillis) {
+                    transition(State.HALF_OPEN);
+                    probeInFlight = true;
+                    System.out.println("Circuit " + name + " half-open, sending probe");
+                    return generation;
+                }
+                break;
+            case HALF_OPEN:
+                if (!probeInFlight) {
+                    probeInFlight = true;
+                    return generation;
+                }
+                break;
+        }
+        rejections.incrementAndGet();
+        return REJECTED;
+    }
+
+    public synchronized void onSuccess(long permit) {
+        successes.incrementAndGet();
+        if (permit != generation) {
+            return;
+        }
+        consecutiveFailures = 0;
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+            transition(State.CLOSED);
+            System.out.println("Circuit " + name + " closed");
+        }
+    }
+
+    public synchronized void onFailure(long permit) {
+        failures.incrementAndGet();
+        if (permit != generation) {
+            return;
+        }
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            probeInFlight = false;
+            transition(State.OPEN);
+            openedAt = System.currentTimeMillis();
+            openCount.incrementAndGet();
+            System.err.println("Circuit " + name + " opened after " + consecutiveFailures + " consecutive failures");
+        }
+    }
+
+    /**
+     * Give back an acquired call whose outcome says nothing about the remote
+     * service (interrupted, or failed on our side).
+     */
+    public synchronized void release(long permit) {
+        if (permit == generation && state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    private void transition(State next) {
+        state = next;
+        generation++;
+    }
+
+    /**
+     * Seconds until a probe will be allowed, at least 1.
+     */
+    public synchronized long getRetryAfterSeconds() {
+        long remaining = state == State.OPEN ? openMillis - (System.currentTimeMillis() - openedAt) : 0;
+        return Math.max(1, (remaining + 999) / 1000);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getSuccesses() {
+        return successes.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    public long getOpenCount() {
+        return openCount.get();
+    }
+}
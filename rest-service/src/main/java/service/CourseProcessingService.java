@@ -1,82 +1,374 @@
 package service;
 
+import database.CourseChunkDAO;
+import database.CourseContentDAO;
 import database.CourseDAO;
 import database.CourseNotesDAO;
 import database.TranscriptDAO;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
+import util.JsonReader;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * Service to process courses: video->audio->transcription->embeddings->notes
  */
 public class CourseProcessingService {
 
-    private static final String PYTHON_SERVICE_URL =
-        System.getenv("PYTHON_SERVICE_URL") != null ?
-        System.getenv("PYTHON_SERVICE_URL") : "http://localhost:5001";
+    private static final int PIPELINE_THREADS =
+        System.getenv("COURSE_PIPELINE_THREADS") != null ?
+        Integer.parseInt(System.getenv("COURSE_PIPELINE_THREADS")) : 4;
+
+    // Stages block on ffmpeg and HTTP calls, so they get their own pool rather than the common ForkJoinPool
+    private static final AtomicInteger threadNumber = new AtomicInteger();
+    private static final ExecutorService executor = Executors.newFixedThreadPool(PIPELINE_THREADS, r -> {
+        Thread t = new Thread(r, "course-pipeline-" + threadNumber.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Shared by all courses, so it also caps the load put on the notes (LLM) endpoint
+    private static final int NOTES_MAX_CONCURRENCY =
+        System.getenv("NOTES_MAX_CONCURRENCY") != null ?
+        Integer.parseInt(System.getenv("NOTES_MAX_CONCURRENCY")) : 3;
+
+    private static final int NOTES_TIMEOUT_MILLIS =
+        System.getenv("NOTES_TIMEOUT_SECONDS") != null ?
+        Integer.parseInt(System.getenv("NOTES_TIMEOUT_SECONDS")) * 1000 : 300000;
+
+    private static final Semaphore notesPermits = new Semaphore(NOTES_MAX_CONCURRENCY);
+
+    // Waits for notes permits so pipeline threads never do; it only starts calls, which run asynchronously
+    private static final ExecutorService notesLimiter = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "notes-limiter");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Chunk size for embedding, in chars, and how much of a chunk's end the next one repeats
+    private static final int CHUNK_TARGET_SIZE =
+        System.getenv("CHUNK_TARGET_SIZE") != null ?
+        Integer.parseInt(System.getenv("CHUNK_TARGET_SIZE")) : 500;
+
+    private static final int CHUNK_OVERLAP =
+        System.getenv("CHUNK_OVERLAP") != null ?
+        Integer.parseInt(System.getenv("CHUNK_OVERLAP")) : 100;
+
+    private static final String PAGE_BREAK = "\f";
+
+    private static final TextChunker chunker = new TextChunker(CHUNK_TARGET_SIZE, CHUNK_OVERLAP, Locale.ROOT);
+
+    // Pipe extracted audio straight into the STT upload instead of writing an MP3 first
+    private static final boolean STREAM_AUDIO =
+        !"false".equalsIgnoreCase(System.getenv("STT_STREAM_AUDIO"));
+
+    // Responses meaning the server (or a proxy in front of it) will not take a chunked body
+    private static final Set<Integer> CHUNKED_REJECTED_CODES = Set.of(400, 411, 413, 415, 501, 505);
+
+    // Stage timings of the most recent run per course
+    private static final Map<Integer, StageTimings> lastTimings = new ConcurrentHashMap<>();
 
     /**
      * Process course asynchronously: extract audio, transcribe, create embeddings
      */
     public static void processCourseAsync(int courseId, String videoPath,
                                          String pdfPath, String language) {
-        CompletableFuture.runAsync(() -> {
-            try {
-                processCourse(courseId, videoPath, pdfPath, language);
-            } catch (Exception e) {
-                System.err.println("Error processing course " + courseId + ": " + e.getMessage());
-                e.printStackTrace();
-                CourseDAO.updateCourseStatus(courseId, "ERROR");
+        startPipeline(courseId, videoPath, pdfPath, language).whenComplete((result, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                System.err.println("Error processing course " + courseId + ": " + cause.getMessage());
+                cause.printStackTrace();
+                updateStatus(courseId, "ERROR");
             }
         });
     }
 
+    public static StageTimings getTimings(int courseId) {
+        return lastTimings.get(courseId);
+    }
+
+    /**
+     * Update the course status and notify event subscribers.
+     */
+    private static void updateStatus(int courseId, String status) {
+        CourseDAO.updateCourseStatus(courseId, status);
+        StatusEvents.publishCourseStatus(courseId, status);
+    }
+
     /**
-     * Main course processing pipeline
+     * Main course processing pipeline, run on the calling thread.
      */
     public static void processCourse(int courseId, String videoPath,
                                     String pdfPath, String language) throws Exception {
+        try {
+            startPipeline(courseId, videoPath, pdfPath, language).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Start the processing pipeline as a stage graph on the pipeline executor:
+     *
+     *   audio -> transcribe -> transcript-embed --+
+     *   pdf-extract -> pdf-embed -----------------+-> notes
+     *
+     * PDF extraction and embedding overlap with audio extraction and STT. No stage
+     * blocks a pool thread waiting for another stage. With STT_STREAM_AUDIO (the
+     * default) audio and transcribe are a single stage.
+     */
+    private static CompletableFuture<Void> startPipeline(int courseId, String videoPath,
+                                                         String pdfPath, String language) {
 
         System.out.println("=== Processing Course " + courseId + " ===");
-        CourseDAO.updateCourseStatus(courseId, "PROCESSING");
+        updateStatus(courseId, "PROCESSING");
+        SearchCache.invalidateCourse(courseId);
+        AnswerCache.invalidateCourse(courseId);
+        TranscriptIndex.invalidateCourse(courseId);
+
+        boolean hasPdf = pdfPath != null && !pdfPath.isEmpty();
+        StageTimings timings = new StageTimings();
+        if (STREAM_AUDIO) {
+            // Audio extraction happens inside the upload
+            timings.declare("transcribe");
+        } else {
+            timings.declare("audio");
+            timings.declare("transcribe", "audio");
+        }
+        timings.declare("transcript-embed", "transcribe");
+        if (hasPdf) {
+            timings.declare("pdf-extract");
+            timings.declare("pdf-embed", "pdf-extract");
+            timings.declare("notes", "transcript-embed", "pdf-embed");
+        } else {
+            timings.declare("notes", "transcript-embed");
+        }
+        lastTimings.put(courseId, timings);
+
+        CompletableFuture<TranscriptParser.ParsedTranscript> transcribed;
+        if (STREAM_AUDIO) {
+            transcribed = CompletableFuture.supplyAsync(stage(timings, "transcribe", () -> {
+                TranscriptParser.ParsedTranscript transcript = transcribeVideoStreaming(videoPath, language, courseId);
+                System.out.println("✓ Audio transcribed");
+                return transcript;
+            }), executor);
+        } else {
+            transcribed = CompletableFuture
+                .supplyAsync(stage(timings, "audio", () -> {
+                    String audioPath = extractAudio(videoPath, courseId);
+                    System.out.println("✓ Audio extracted: " + audioPath);
+                    return audioPath;
+                }), executor)
+                .thenApplyAsync(audioPath -> stage(timings, "transcribe", () -> {
+                    TranscriptParser.ParsedTranscript transcript = transcribeAudio(audioPath, language, courseId);
+                    System.out.println("✓ Audio transcribed");
+                    return transcript;
+                }).get(), executor);
+        }
 
-        // Step 1: Extract audio from video
-        String audioPath = extractAudio(videoPath, courseId);
-        System.out.println("✓ Audio extracted: " + audioPath);
+        CompletableFuture<Void> untrackedDropped = CompletableFuture.runAsync(() -> {
+            try {
+                dropUntrackedEmbeddings(courseId);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+
+        CompletableFuture<Integer> transcriptEmbedded = transcribed
+            .thenCombine(untrackedDropped, (transcript, ignored) -> transcript)
+            .thenApplyAsync(transcript -> stage(timings, "transcript-embed", () -> {
+                List<TextChunker.Chunk> chunks = chunkTranscript(transcript);
+                return embedChunks(courseId, chunks, "transcript");
+            }).get(), executor);
+
+        CompletableFuture<Integer> pdfEmbedded;
+        if (hasPdf) {
+            pdfEmbedded = CompletableFuture
+                .supplyAsync(stage(timings, "pdf-extract", () -> {
+                    List<TextChunker.Chunk> chunks = extractPdfChunks(courseId, pdfPath);
+                    System.out.println("✓ PDF text extracted");
+                    return chunks;
+                }), executor)
+                .thenCombine(untrackedDropped, (chunks, ignored) -> chunks)
+                .thenApplyAsync(chunks -> stage(timings, "pdf-embed", () ->
+                    embedChunks(courseId, chunks, "pdf")).get(), executor);
+        } else {
+            // Drops the vectors of a PDF an earlier run embedded, if any
+            pdfEmbedded = untrackedDropped.thenApplyAsync(ignored ->
+                stage(timings, "pdf-embed", () -> embedChunks(courseId, new ArrayList<>(), "pdf")).get(), executor);
+        }
 
-        // Step 2: Transcribe audio
-        String transcriptJson = transcribeAudio(audioPath, language, courseId);
-        System.out.println("✓ Audio transcribed");
+        return transcriptEmbedded
+            .thenCombine(pdfEmbedded, Integer::sum)
+            .thenComposeAsync(embedded -> timings.runAsync("notes", () -> {
+                List<TextChunker.Chunk> placeholder = new ArrayList<>();
+                if (embedded == 0) {
+                    // Never leave a course without a collection to query
+                    System.out.println("Warning: No chunks created from transcript or PDF. Adding placeholder.");
+                    String text = "No content available for this course.";
+                    placeholder.add(new TextChunker.Chunk(0, "placeholder", text, 0, text.length(),
+                            null, null, null, null));
+                }
+                // With real content, this removes a placeholder left by an earlier run
+                embedChunks(courseId, placeholder, "placeholder");
+                return generateAllNotes(courseId)
+                    .thenRun(() -> System.out.println("✓ Notes generated in EN/ES/CA"));
+            }), executor)
+            .whenComplete((result, error) -> {
+                // READY records the processing time before the invalidation, so a
+                // concurrent AnswerCache.warm either sees the new time or is discarded
+                if (error == null) {
+                    updateStatus(courseId, "READY");
+                }
+                // Embeddings written during the run make earlier results stale
+                SearchCache.invalidateCourse(courseId);
+                AnswerCache.invalidateCourse(courseId);
+                TranscriptIndex.invalidateCourse(courseId);
+                timings.finish();
+                System.out.println("Course " + courseId + " stage timings (" + timings.getTotalMillis() +
+                        " ms total):\n" + timings);
+                if (error == null) {
+                    System.out.println("=== Course " + courseId + " processing complete ===");
+                }
+            })
+            .thenApply(result -> null);
+    }
 
-        // Step 3: Extract PDF text (if provided)
-        String pdfText = null;
-        if (pdfPath != null && !pdfPath.isEmpty()) {
-            pdfText = extractPdfText(pdfPath);
-            System.out.println("✓ PDF text extracted");
+    /**
+     * Wrap a stage so it can run inside a CompletableFuture, recording its timing.
+     */
+    private static <T> Supplier<T> stage(StageTimings timings, String name, StageTimings.StageTask<T> task) {
+        return () -> {
+            try {
+                return timings.run(name, task);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        };
+    }
+
+    /**
+     * Bring one source's vectors in line with its current chunks. Each vector is
+     * keyed by a hash of its chunk's text, compared against the ids stored in
+     * course_chunks: only chunks with new text are embedded, chunks whose text
+     * merely moved (e.g. after a sentence was inserted earlier in the PDF) get
+     * their offsets, times and pages updated without being re-encoded, and
+     * vectors of text the source no longer has are deleted. Reprocessing an
+     * unchanged course embeds nothing; an empty list removes the source's vectors.
+     *
+     * @return number of chunks the source now has
+     */
+    private static int embedChunks(int courseId, List<TextChunker.Chunk> chunks, String source) throws Exception {
+        Map<String, String> stored = CourseChunkDAO.getChunks(courseId, source);
+        boolean reembedAll = false;
+        if (!stored.isEmpty() && countEmbeddings(courseId, source) < stored.size()) {
+            // The vector store lost chunks (e.g. it was reset), so the stored ids cannot be trusted
+            System.out.println("Vector store is missing " + source + " chunks of course " + courseId +
+                    ", re-embedding all of them");
+            reembedAll = true;
         }
 
-        // Step 4: Create text chunks
-        List<String> chunks = createChunks(transcriptJson, pdfText);
-        System.out.println("✓ Created " + chunks.size() + " text chunks");
+        Map<String, String> current = new LinkedHashMap<>();
+        Map<String, Integer> occurrences = new HashMap<>();
+        List<String> embedJson = new ArrayList<>();
+        List<String> moveJson = new ArrayList<>();
+        for (TextChunker.Chunk chunk : chunks) {
+            String textHash = sha256(chunk.text).substring(0, 32);
+            // Repeated text (e.g. a slide footer) keeps one vector per occurrence
+            int occurrence = occurrences.merge(textHash, 1, Integer::sum) - 1;
+            String id = source + "_" + textHash + (occurrence > 0 ? "_" + occurrence : "");
+            String metadata = chunkMetadataJson(chunk, source);
+            String metadataHash = sha256(metadata);
+            current.put(id, metadataHash);
+
+            String storedHash = stored.get(id);
+            if (reembedAll || storedHash == null) {
+                embedJson.add(chunkJson(id, chunk.text, metadata));
+            } else if (!storedHash.equals(metadataHash)) {
+                moveJson.add(chunkJson(id, null, metadata));
+            }
+        }
+        List<String> removedIds = new ArrayList<>();
+        for (String id : stored.keySet()) {
+            if (!current.containsKey(id)) {
+                removedIds.add(id);
+            }
+        }
 
-        // Step 5: Generate embeddings and store in vector DB
-        createEmbeddings(courseId, chunks);
-        System.out.println("✓ Embeddings created and stored");
+        if (!embedJson.isEmpty()) {
+            createEmbeddings(courseId, embedJson);
+        }
+        if (!moveJson.isEmpty()) {
+            updateEmbeddingMetadata(courseId, moveJson);
+        }
+        if (!removedIds.isEmpty()) {
+            deleteEmbeddings(courseId, removedIds);
+        }
+        if (!CourseChunkDAO.saveChunks(courseId, source, current)) {
+            // Harmless: the next run sees stale ids and upserts those chunks again
+            System.err.println("Could not save " + source + " chunks for course " + courseId);
+        }
 
-        // Step 6: Generate notes in all three languages
-        generateAllNotes(courseId);
-        System.out.println("✓ Notes generated in EN/ES/CA");
+        if (!chunks.isEmpty() || !removedIds.isEmpty()) {
+            int unchanged = chunks.size() - embedJson.size() - moveJson.size();
+            System.out.println("✓ Embedded " + embedJson.size() + " of " + chunks.size() + " " + source +
+                    " chunks (" + moveJson.size() + " moved, " + unchanged + " unchanged, " +
+                    removedIds.size() + " removed)");
+        }
+        return chunks.size();
+    }
 
-        CourseDAO.updateCourseStatus(courseId, "READY");
-        System.out.println("=== Course " + courseId + " processing complete ===");
+    /**
+     * Courses embedded before course_chunks was kept have vectors under ids this
+     * service does not know about, which would never be replaced or deleted and
+     * would show up twice next to the new ones. With nothing recorded for the
+     * course, its collection is dropped before anything is embedded.
+     */
+    private static void dropUntrackedEmbeddings(int courseId) throws Exception {
+        if (!CourseChunkDAO.hasChunks(courseId)) {
+            PythonServiceClient.postJson("/api/embedding/reset", String.format("{\"course_id\":%d}", courseId));
+        }
+    }
+
+    private static int countEmbeddings(int courseId, String source) throws Exception {
+        String response = PythonServiceClient.get("/api/embedding/count?course_id=" + courseId + "&source=" + source);
+        Object count = JsonReader.parseObject(response).get("count");
+        return count instanceof Number ? ((Number) count).intValue() : 0;
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 
     /**
@@ -124,342 +416,403 @@ public class CourseProcessingService {
     /**
      * Transcribe audio using Python STT service
      */
-    private static String transcribeAudio(String audioPath, String language,
-                                         int courseId) throws Exception {
+    private static TranscriptParser.ParsedTranscript transcribeAudio(String audioPath, String language,
+                                                                     int courseId) throws Exception {
 
         File audioFile = new File(audioPath);
         if (!audioFile.exists()) {
             throw new FileNotFoundException("Audio file not found: " + audioPath);
         }
 
-        String boundary = "----Boundary" + System.currentTimeMillis();
-        URL url = new URL(PYTHON_SERVICE_URL + "/api/stt/transcribe?language=" + language);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("POST");
-        conn.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
-        conn.setDoOutput(true);
-
-        try (OutputStream os = conn.getOutputStream();
-             FileInputStream fis = new FileInputStream(audioFile)) {
-
-            PrintWriter writer = new PrintWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), true);
-
-            writer.append("--").append(boundary).append("\r\n");
-            writer.append("Content-Disposition: form-data; name=\"audio_file\"; filename=\"")
-                  .append(audioFile.getName()).append("\"\r\n");
-            writer.append("Content-Type: audio/mpeg\r\n\r\n");
-            writer.flush();
-
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = fis.read(buffer)) != -1) {
-                os.write(buffer, 0, bytesRead);
-            }
-            os.flush();
-
-            writer.append("\r\n--").append(boundary).append("--\r\n");
-            writer.flush();
-        }
-
-        int responseCode = conn.getResponseCode();
-        if (responseCode != 200) {
-            throw new Exception("STT service returned error: " + responseCode);
-        }
-
-        StringBuilder response = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                response.append(line);
-            }
-        }
-
-        String jsonResponse = response.toString();
-
-        // Save transcript to database (simplified - you can parse JSON for details)
-        TranscriptDAO.insertTranscript(courseId, "Transcript text", jsonResponse, language, null);
-
-        return jsonResponse;
+        String jsonResponse = PythonServiceClient.postMultipartFile(
+                "/api/stt/transcribe?language=" + language,
+                "audio_file", audioFile.getName(), "audio/mpeg", audioFile.toPath());
+        return saveTranscript(jsonResponse, courseId);
     }
 
     /**
-     * Extract text from PDF using Apache PDFBox
+     * Parse the transcript returned by the STT service and store its text,
+     * language distribution and segments.
      */
-    private static String extractPdfText(String pdfPath) throws Exception {
-        try (PDDocument document = PDDocument.load(new File(pdfPath))) {
-            PDFTextStripper stripper = new PDFTextStripper();
-            return stripper.getText(document);
+    private static TranscriptParser.ParsedTranscript saveTranscript(String jsonResponse, int courseId)
+            throws IOException {
+        TranscriptParser.ParsedTranscript transcript = TranscriptParser.parse(jsonResponse);
+        if (!TranscriptDAO.saveTranscript(courseId, transcript.text, transcript.language,
+                transcript.languageDistributionJson(), transcript.segments)) {
+            // Embedding works from the parsed transcript, so the run can go on
+            System.err.println("Could not save transcript for course " + courseId);
         }
+        System.out.println("Transcript: " + transcript.segments.size() + " segments, " +
+                Math.round(transcript.duration) + " s, languages " + transcript.languageDistributionJson());
+        return transcript;
     }
 
     /**
-     * Create text chunks for embedding
+     * Pipe ffmpeg's MP3 output straight into a chunked multipart upload to the STT
+     * service, so no audio file is written. Falls back to extractAudio and
+     * transcribeAudio if the service does not accept a chunked request body.
      */
-    private static List<String> createChunks(String transcriptJson, String pdfText) {
-        List<String> chunks = new ArrayList<>();
-
-        // Extract text from transcript JSON
-        if (transcriptJson != null && !transcriptJson.isEmpty()) {
-            String transcriptText = extractTextFromTranscript(transcriptJson);
-            if (transcriptText != null && !transcriptText.isEmpty()) {
-                chunks.addAll(chunkText(transcriptText, "transcript"));
+    private static TranscriptParser.ParsedTranscript transcribeVideoStreaming(String videoPath, String language,
+                                                                              int courseId) throws Exception {
+        Process ffmpeg = new ProcessBuilder(
+            "ffmpeg",
+            "-i", videoPath,
+            "-vn",
+            "-acodec", "libmp3lame",
+            "-ar", "16000",
+            "-f", "mp3",
+            "pipe:1"
+        ).start();
+        StringBuilder ffmpegLog = drainInBackground(ffmpeg.getErrorStream());
+
+        AtomicInteger ffmpegExit = new AtomicInteger();
+        int rejectedCode = -1;
+        String jsonResponse = null;
+        try {
+            jsonResponse = PythonServiceClient.postMultipartStream(
+                    "/api/stt/transcribe?language=" + language,
+                    "audio_file", "course_" + courseId + ".mp3", "audio/mpeg",
+                    () -> new FilterInputStream(ffmpeg.getInputStream()) {
+                        @Override
+                        public int read(byte[] b, int off, int len) throws IOException {
+                            int n = super.read(b, off, len);
+                            if (n == -1) {
+                                checkExit();
+                            }
+                            return n;
+                        }
+
+                        @Override
+                        public int read() throws IOException {
+                            int n = super.read();
+                            if (n == -1) {
+                                checkExit();
+                            }
+                            return n;
+                        }
+
+                        // Failing here aborts the request before the closing boundary is sent
+                        private void checkExit() throws IOException {
+                            try {
+                                int exitCode = ffmpeg.waitFor();
+                                if (exitCode != 0) {
+                                    ffmpegExit.set(exitCode);
+                                    throw new IOException("FFmpeg failed with exit code: " + exitCode);
+                                }
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new InterruptedIOException();
+                            }
+                        }
+                    });
+        } catch (PythonServiceClient.ServiceException e) {
+            if (!CHUNKED_REJECTED_CODES.contains(e.statusCode)) {
+                throw new Exception("STT service returned error: " + e.statusCode);
             }
+            rejectedCode = e.statusCode;
+        } catch (PythonServiceClient.UnavailableException e) {
+            throw e;
+        } catch (IOException e) {
+            if (ffmpegExit.get() != 0) {
+                System.err.println("FFmpeg output: " + ffmpegLog);
+                throw new Exception("FFmpeg failed with exit code: " + ffmpegExit.get());
+            }
+            // The service may have answered (and closed) before reading the body
+            System.err.println("Streaming upload interrupted: " + e.getMessage());
+        } finally {
+            ffmpeg.destroy();
         }
-
-        // Simple chunking - split by sentences/paragraphs (max 500 chars)
-        if (pdfText != null && !pdfText.isEmpty()) {
-            chunks.addAll(chunkText(pdfText, "pdf"));
+        if (jsonResponse != null) {
+            return saveTranscript(jsonResponse, courseId);
         }
 
-        // If no chunks created, add a placeholder to avoid empty list error
-        if (chunks.isEmpty()) {
-            System.out.println("Warning: No chunks created from transcript or PDF. Adding placeholder.");
-            chunks.add("No content available for this course.");
+        System.out.println("STT service did not accept a streamed upload (" + rejectedCode +
+                "), falling back to an audio file");
+        String audioPath = extractAudio(videoPath, courseId);
+        try {
+            return transcribeAudio(audioPath, language, courseId);
+        } finally {
+            new File(audioPath).delete();
         }
+    }
 
-        return chunks;
+    /**
+     * Read a process stream on a background thread so the process never blocks on
+     * a full pipe. Keeps only the last few KB for error messages.
+     */
+    private static StringBuilder drainInBackground(InputStream stream) {
+        StringBuilder tail = new StringBuilder();
+        Thread drainer = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    synchronized (tail) {
+                        tail.append(line).append("\n");
+                        if (tail.length() > 8192) {
+                            tail.delete(0, tail.length() - 4096);
+                        }
+                    }
+                }
+            } catch (IOException ignored) {
+            }
+        }, "ffmpeg-stderr");
+        drainer.setDaemon(true);
+        drainer.start();
+        return tail;
     }
 
     /**
-     * Extract text from Whisper transcript JSON
-     * Expected format: {"success": true, "text": "...", "segments": [...]}
+     * Extract a PDF's text page by page, chunking it as pages arrive, and save it
+     * to course_contents with pages separated by a form feed. The full text goes
+     * through a temp file rather than the heap; chunk offsets index into it.
      */
-    private static String extractTextFromTranscript(String transcriptJson) {
+    private static List<TextChunker.Chunk> extractPdfChunks(int courseId, String pdfPath) throws Exception {
+        List<TextChunker.Chunk> chunks = new ArrayList<>();
+        TextChunker.PageIndex pages = new TextChunker.PageIndex();
+        TextChunker.Feed feed = chunker.feed("pdf", null, pages, chunks::add);
+
+        File textDir = new File("/tmp/vidstream/text");
+        if (!textDir.exists()) {
+            textDir.mkdirs();
+        }
+        File textFile = File.createTempFile("course_" + courseId + "_", ".txt", textDir);
         try {
-            // Look for "text" field in JSON
-            // Format: "text":"...actual text..."
-            int textKeyIndex = transcriptJson.indexOf("\"text\"");
-            if (textKeyIndex == -1) {
-                System.out.println("Warning: 'text' field not found in transcript JSON");
-                return null;
+            int pageCount;
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(textFile), StandardCharsets.UTF_8))) {
+                pageCount = PdfTextExtractor.extract(pdfPath, (pageNumber, text) -> {
+                    if (pageNumber > 1) {
+                        feed.append(PAGE_BREAK);
+                        writer.write(PAGE_BREAK);
+                    }
+                    pages.add(feed.length(), pageNumber);
+                    feed.append(text);
+                    writer.write(text);
+                    // A slide title or bullet without a full stop does not run into the next page
+                    feed.endSection();
+                });
             }
-            
-            // Find the colon after "text"
-            int colonIndex = transcriptJson.indexOf(":", textKeyIndex);
-            if (colonIndex == -1) {
-                System.out.println("Warning: Could not find colon after 'text' field");
-                return null;
-            }
-            
-            // Skip whitespace after colon
-            int valueStart = colonIndex + 1;
-            while (valueStart < transcriptJson.length() && 
-                   Character.isWhitespace(transcriptJson.charAt(valueStart))) {
-                valueStart++;
-            }
-            
-            // Find the opening quote
-            if (valueStart >= transcriptJson.length() || 
-                transcriptJson.charAt(valueStart) != '"') {
-                System.out.println("Warning: Text value does not start with quote");
-                return null;
-            }
-            
-            // Find the closing quote (handle escaped quotes)
-            int quoteStart = valueStart + 1;
-            int quoteEnd = quoteStart;
-            while (quoteEnd < transcriptJson.length()) {
-                char c = transcriptJson.charAt(quoteEnd);
-                if (c == '"' && transcriptJson.charAt(quoteEnd - 1) != '\\') {
-                    break;
+            feed.finish();
+            System.out.println("Extracted " + pageCount + " PDF pages into " + chunks.size() + " chunks");
+
+            try (Reader reader = new InputStreamReader(new FileInputStream(textFile), StandardCharsets.UTF_8)) {
+                if (!CourseContentDAO.saveContent(courseId, "pdf", new File(pdfPath).getName(), reader, feed.length())) {
+                    System.err.println("Could not save extracted PDF text for course " + courseId);
                 }
-                quoteEnd++;
             }
-            
-            if (quoteEnd >= transcriptJson.length()) {
-                System.out.println("Warning: Could not find closing quote for text value");
-                return null;
-            }
-            
-            String text = transcriptJson.substring(quoteStart, quoteEnd);
-            // Unescape JSON
-            text = text.replace("\\n", "\n")
-                      .replace("\\r", "\r")
-                      .replace("\\t", "\t")
-                      .replace("\\\"", "\"")
-                      .replace("\\\\", "\\");
-            
-            if (text.isEmpty()) {
-                System.out.println("Warning: Extracted text is empty");
-                return null;
-            }
-            
-            return text;
-        } catch (Exception e) {
-            System.err.println("Error extracting text from transcript: " + e.getMessage());
-            e.printStackTrace();
-            return null;
+        } finally {
+            textFile.delete();
         }
+        return chunks;
     }
 
-    private static List<String> chunkText(String text, String source) {
-        List<String> chunks = new ArrayList<>();
-        String[] sentences = text.split("\\. ");
-
-        StringBuilder currentChunk = new StringBuilder();
-        for (String sentence : sentences) {
-            if (currentChunk.length() + sentence.length() > 500 && currentChunk.length() > 0) {
-                chunks.add(currentChunk.toString());
-                currentChunk = new StringBuilder();
+    /**
+     * Chunk a transcript. With Whisper segments, the text is rebuilt from them so
+     * every chunk can carry the start and end time of the speech it covers.
+     */
+    private static List<TextChunker.Chunk> chunkTranscript(TranscriptParser.ParsedTranscript transcript)
+            throws IOException {
+        List<TextChunker.Chunk> chunks = new ArrayList<>();
+        if (!transcript.segments.isEmpty()) {
+            TextChunker.Timeline timeline = new TextChunker.Timeline();
+            TextChunker.Feed feed = chunker.feed("transcript", timeline, null, chunks::add);
+            for (TranscriptDAO.Segment segment : transcript.segments) {
+                if (feed.length() > 0) {
+                    feed.append(" ");
+                }
+                timeline.add(feed.length(), segment.startTime, segment.endTime);
+                feed.append(segment.text);
             }
-            currentChunk.append(sentence).append(". ");
-        }
-
-        if (currentChunk.length() > 0) {
-            chunks.add(currentChunk.toString());
+            feed.finish();
+        } else if (transcript.text != null && !transcript.text.isEmpty()) {
+            chunker.chunk(new StringReader(transcript.text), "transcript", null, chunks::add);
         }
-
         return chunks;
     }
 
     /**
      * Create embeddings via Python service
+     *
+     * @param chunks chunks as built by chunkJson
      */
     private static void createEmbeddings(int courseId, List<String> chunks) throws Exception {
-        StringBuilder jsonChunks = new StringBuilder("[");
-
-        for (int i = 0; i < chunks.size(); i++) {
-            jsonChunks.append("{\"text\":\"")
-                     .append(escapeJson(chunks.get(i)))
-                     .append("\",\"metadata\":{\"lang\":\"en\",\"chunk_id\":")
-                     .append(i)
-                     .append("}}");
-            if (i < chunks.size() - 1) {
-                jsonChunks.append(",");
-            }
-        }
-        jsonChunks.append("]");
+        String requestBody = String.format(
+            "{\"course_id\":%d,\"chunks\":[%s]}",
+            courseId, String.join(",", chunks)
+        );
 
+        PythonServiceClient.postJson("/api/embedding/create", requestBody);
+    }
+
+    /**
+     * Replace the metadata of stored chunks without re-encoding them.
+     *
+     * @param chunks chunks as built by chunkJson, without text
+     */
+    private static void updateEmbeddingMetadata(int courseId, List<String> chunks) throws Exception {
         String requestBody = String.format(
-            "{\"course_id\":%d,\"chunks\":%s}",
-            courseId, jsonChunks
+            "{\"course_id\":%d,\"chunks\":[%s]}",
+            courseId, String.join(",", chunks)
         );
 
-        callPythonService("/api/embedding/create", requestBody);
+        PythonServiceClient.postJson("/api/embedding/metadata", requestBody);
     }
 
     /**
-     * Generate notes in all three languages and save to database
+     * One chunk as sent to /api/embedding/create (or, without text, to
+     * /api/embedding/metadata) under its vector id.
      */
-    private static void generateAllNotes(int courseId) throws Exception {
-        String notesEn = null;
-        String notesEs = null;
-        String notesCa = null;
-        
-        for (String lang : new String[]{"en", "es", "ca"}) {
-            String requestBody = String.format(
-                "{\"course_id\":%d,\"language\":\"%s\",\"include_sources\":true}",
-                courseId, lang
-            );
-            String pythonResponse = callPythonService("/api/rag/generate_notes", requestBody);
-            
-            // Extract notes from response
-            String notes = extractNotesFromResponse(pythonResponse);
-            if (notes != null) {
-                switch (lang) {
-                    case "en" -> notesEn = notes;
-                    case "es" -> notesEs = notes;
-                    case "ca" -> notesCa = notes;
-                }
-            }
-        }
-        
-        // Save all notes to database
-        CourseNotesDAO.CourseNotes existingNotes = CourseNotesDAO.getNotesByCourseId(courseId);
-        if (existingNotes == null) {
-            CourseNotesDAO.insertNotes(courseId, notesEn, notesEs, notesCa);
-        } else {
-            if (notesEn != null) CourseNotesDAO.updateNotes(courseId, "en", notesEn);
-            if (notesEs != null) CourseNotesDAO.updateNotes(courseId, "es", notesEs);
-            if (notesCa != null) CourseNotesDAO.updateNotes(courseId, "ca", notesCa);
+    private static String chunkJson(String id, String text, String metadataJson) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"id\":\"").append(id).append("\"");
+        if (text != null) {
+            json.append(",\"text\":").append(JsonReader.toJson(text));
         }
+        json.append(",\"metadata\":").append(metadataJson).append("}");
+        return json.toString();
     }
-    
-    private static String extractNotesFromResponse(String jsonResponse) {
-        try {
-            // Simple JSON parsing to extract "notes" field
-            int notesStart = jsonResponse.indexOf("\"notes\":\"");
-            if (notesStart == -1) {
-                return null;
-            }
-            
-            notesStart += 9; // Skip past "notes":"
-            int notesEnd = notesStart;
-            boolean escaped = false;
-            
-            while (notesEnd < jsonResponse.length()) {
-                char c = jsonResponse.charAt(notesEnd);
-                if (escaped) {
-                    escaped = false;
-                    notesEnd++;
-                    continue;
-                }
-                if (c == '\\') {
-                    escaped = true;
-                    notesEnd++;
-                    continue;
-                }
-                if (c == '"') {
-                    break;
-                }
-                notesEnd++;
-            }
-            
-            if (notesEnd >= jsonResponse.length()) {
-                return null;
-            }
-            
-            String notes = jsonResponse.substring(notesStart, notesEnd);
-            // Unescape JSON string
-            notes = notes.replace("\\\"", "\"")
-                        .replace("\\n", "\n")
-                        .replace("\\r", "\r")
-                        .replace("\\t", "\t")
-                        .replace("\\\\", "\\");
-            
-            return notes;
-        } catch (Exception e) {
-            System.err.println("Error extracting notes from response: " + e.getMessage());
-            return null;
+
+    /**
+     * Metadata stored with a chunk's vector: its source, position and, where
+     * known, its times and pages.
+     */
+    private static String chunkMetadataJson(TextChunker.Chunk chunk, String source) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"lang\":\"en\",\"source\":\"")
+            .append(source)
+            .append("\",\"chunk_id\":")
+            .append(chunk.ordinal)
+            .append(",\"start_offset\":")
+            .append(chunk.startOffset)
+            .append(",\"end_offset\":")
+            .append(chunk.endOffset);
+        if (chunk.startTime != null && chunk.endTime != null) {
+            json.append(",\"start_time\":").append(chunk.startTime)
+                .append(",\"end_time\":").append(chunk.endTime);
+        }
+        if (chunk.startPage != null && chunk.endPage != null) {
+            json.append(",\"start_page\":").append(chunk.startPage)
+                .append(",\"end_page\":").append(chunk.endPage);
         }
+        json.append("}");
+        return json.toString();
     }
 
-    private static String callPythonService(String endpoint, String jsonBody) throws Exception {
-        URL url = new URL(PYTHON_SERVICE_URL + endpoint);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("POST");
-        conn.setRequestProperty("Content-Type", "application/json");
-        conn.setDoOutput(true);
-
-        try (OutputStream os = conn.getOutputStream()) {
-            byte[] input = jsonBody.getBytes(StandardCharsets.UTF_8);
-            os.write(input, 0, input.length);
+    /**
+     * Delete chunks from the course's vector collection by id
+     */
+    private static void deleteEmbeddings(int courseId, List<String> ids) throws Exception {
+        StringBuilder jsonIds = new StringBuilder("[");
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) {
+                jsonIds.append(",");
+            }
+            jsonIds.append("\"").append(ids.get(i)).append("\"");
         }
+        jsonIds.append("]");
 
-        int responseCode = conn.getResponseCode();
-        if (responseCode != 200) {
-            throw new Exception("Python service returned error: " + responseCode);
-        }
+        PythonServiceClient.postJson("/api/embedding/delete",
+            String.format("{\"course_id\":%d,\"ids\":%s}", courseId, jsonIds));
+    }
 
-        StringBuilder response = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                response.append(line);
-            }
+    /**
+     * Generate notes in all three languages concurrently and save them in one write.
+     * A language that fails or times out is logged and skipped; the stage only fails
+     * if no language succeeded. Nothing blocks a pipeline thread while the calls run.
+     */
+    private static CompletableFuture<Void> generateAllNotes(int courseId) {
+        String[] languages = {"en", "es", "ca"};
+        Map<String, String> notes = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> settled = new ArrayList<>();
+        for (String lang : languages) {
+            settled.add(generateNotes(courseId, lang).handle((result, error) -> {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                if (cause instanceof TimeoutException) {
+                    System.err.println("Notes generation timed out for course " + courseId + " (" + lang + ")");
+                } else if (cause != null) {
+                    System.err.println("Notes generation failed for course " + courseId + " (" + lang + "): " +
+                            cause.getMessage());
+                } else if (result == null) {
+                    System.err.println("No notes in response for course " + courseId + " (" + lang + ")");
+                } else {
+                    notes.put(lang, result);
+                }
+                return null;
+            }));
         }
 
-        return response.toString();
+        return CompletableFuture.allOf(settled.toArray(new CompletableFuture[0])).thenRunAsync(() -> {
+            if (notes.isEmpty()) {
+                throw new CompletionException(new Exception("Notes generation failed for all languages"));
+            }
+            if (!CourseNotesDAO.upsertNotes(courseId, notes.get("en"), notes.get("es"), notes.get("ca"))) {
+                throw new CompletionException(new Exception("Could not save generated notes"));
+            }
+            if (notes.size() < languages.length) {
+                System.out.println("Warning: notes generated for " + notes.keySet() + " only");
+            }
+        }, executor);
     }
 
-    private static String escapeJson(String str) {
-        if (str == null) return "";
-        return str.replace("\\", "\\\\")
-                 .replace("\"", "\\\"")
-                 .replace("\n", "\\n")
-                 .replace("\r", "\\r")
-                 .replace("\t", "\\t");
+    /**
+     * Generate notes in one language once a notes permit is free. The call gets
+     * NOTES_TIMEOUT_MILLIS from when it is sent; on timeout the HTTP exchange is
+     * cancelled, which gives back its permit and its slot in the notes bulkhead.
+     *
+     * @return the notes, or null if the response has none
+     */
+    private static CompletableFuture<String> generateNotes(int courseId, String lang) {
+        String requestBody = String.format(
+            "{\"course_id\":%d,\"language\":\"%s\",\"include_sources\":true}",
+            courseId, lang
+        );
+        CompletableFuture<String> notes = new CompletableFuture<>();
+        notesLimiter.execute(() -> {
+            try {
+                notesPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                notes.completeExceptionally(e);
+                return;
+            }
+            CompletableFuture<String> call;
+            try {
+                call = PythonServiceClient.postJsonAsync("/api/rag/generate_notes", requestBody, NOTES_TIMEOUT_MILLIS);
+            } catch (RuntimeException e) {
+                notesPermits.release();
+                notes.completeExceptionally(e);
+                return;
+            }
+            call.whenComplete((response, error) -> {
+                notesPermits.release();
+                if (error != null) {
+                    notes.completeExceptionally(error);
+                } else {
+                    notes.complete(extractNotes(response));
+                }
+            });
+            notes.orTimeout(NOTES_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).whenComplete((result, error) -> {
+                if (error != null) {
+                    call.cancel(true);
+                }
+            });
+        });
+        return notes;
+    }
+    
+    /**
+     * The "notes" field of a /api/rag/generate_notes response.
+     *
+     * @return the notes, or null if the response has none or is not valid JSON
+     */
+    public static String extractNotes(String jsonResponse) {
+        try {
+            Object notes = JsonReader.parseObject(jsonResponse).get("notes");
+            return notes instanceof String ? (String) notes : null;
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error extracting notes from response: " + e.getMessage());
+            return null;
+        }
     }
 }
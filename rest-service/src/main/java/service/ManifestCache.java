@@ -0,0 +1,119 @@
+package service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Cache of DASH manifests already rewritten with their &lt;BaseURL&gt;, keyed by
+ * video id and base URL. TranscodingService invalidates a video's entries
+ * whenever it regenerates manifest.mpd.
+ */
+public class ManifestCache {
+
+    private static final int MAX_ENTRIES =
+        System.getenv("MANIFEST_CACHE_MAX_ENTRIES") != null ?
+        Integer.parseInt(System.getenv("MANIFEST_CACHE_MAX_ENTRIES")) : 500;
+
+    private static final Pattern PERIOD_TAG = Pattern.compile("(<Period[^>]*>)");
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private static final LinkedHashMap<String, Manifest> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Manifest> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * A rewritten manifest ready to be sent as-is.
+     */
+    public static class Manifest {
+        public final int videoId;
+        public final byte[] bytes;
+        public final String etag;
+        final long sourceModified;
+        final long sourceLength;
+
+        Manifest(int videoId, byte[] bytes, String etag, long sourceModified, long sourceLength) {
+            this.videoId = videoId;
+            this.bytes = bytes;
+            this.etag = etag;
+            this.sourceModified = sourceModified;
+            this.sourceLength = sourceLength;
+        }
+    }
+
+    /**
+     * Return the manifest for this video rewritten for baseUrl, reading and
+     * rewriting it from disk only if there is no up-to-date cached copy.
+     */
+    public static Manifest get(int videoId, String baseUrl, File manifestFile) throws IOException {
+        String key = videoId + "|" + baseUrl;
+        long modified = manifestFile.lastModified();
+        long length = manifestFile.length();
+
+        synchronized (entries) {
+            Manifest cached = entries.get(key);
+            // The file check also catches manifests rewritten outside TranscodingService
+            if (cached != null && cached.sourceModified == modified && cached.sourceLength == length) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+
+        String content = Files.readString(manifestFile.toPath());
+        String rewritten = PERIOD_TAG.matcher(content).replaceFirst(
+            "$1\n    <BaseURL>" + Matcher.quoteReplacement(baseUrl) + "</BaseURL>");
+        byte[] bytes = rewritten.getBytes(StandardCharsets.UTF_8);
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        String etag = "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(bytes.length) + "\"";
+
+        Manifest manifest = new Manifest(videoId, bytes, etag, modified, length);
+        synchronized (entries) {
+            entries.put(key, manifest);
+        }
+        return manifest;
+    }
+
+    /**
+     * Drop every cached variant of a video's manifest.
+     */
+    public static void invalidate(int videoId) {
+        synchronized (entries) {
+            Iterator<Manifest> it = entries.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().videoId == videoId) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public static int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,127 @@
+package service;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Page-parallel PDF text extraction.
+ * The page range is split into fixed-size slices, each stripped on a shared
+ * bounded pool with its own PDDocument (PDFBox documents are not thread-safe).
+ * Documents are opened with a capped main-memory budget and spill to a scratch
+ * file beyond it. Pages are handed to the caller in order as soon as their slice
+ * is done, and only a few slices are in flight at a time, so a large deck never
+ * has to be held in memory at once.
+ */
+class PdfTextExtractor {
+
+    private static final int PAGES_PER_TASK =
+        System.getenv("PDF_PAGES_PER_TASK") != null ?
+        Integer.parseInt(System.getenv("PDF_PAGES_PER_TASK")) : 16;
+
+    private static final int THREADS =
+        System.getenv("PDF_EXTRACT_THREADS") != null ?
+        Integer.parseInt(System.getenv("PDF_EXTRACT_THREADS")) :
+        Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    // Heap each open document may use before PDFBox moves buffers to a scratch file
+    private static final long MAX_MAIN_MEMORY_BYTES =
+        (System.getenv("PDF_MAX_MAIN_MEMORY_MB") != null ?
+        Long.parseLong(System.getenv("PDF_MAX_MAIN_MEMORY_MB")) : 16) * 1024 * 1024;
+
+    // Slices extracted ahead of the one being consumed
+    private static final int MAX_IN_FLIGHT = THREADS * 2;
+
+    private static final AtomicInteger threadNumber = new AtomicInteger();
+    private static final ExecutorService pool = Executors.newFixedThreadPool(THREADS, r -> {
+        Thread t = new Thread(r, "pdf-extract-" + threadNumber.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    interface PageHandler {
+        void page(int pageNumber, String text) throws IOException;
+    }
+
+    /**
+     * Extract the text of every page, calling handler once per page in page order
+     * (pages are numbered from 1) on the calling thread.
+     *
+     * @return number of pages
+     */
+    static int extract(String pdfPath, PageHandler handler) throws IOException, InterruptedException {
+        File file = new File(pdfPath);
+        int pageCount;
+        try (PDDocument document = load(file)) {
+            pageCount = document.getNumberOfPages();
+        }
+
+        Deque<Future<List<String>>> inFlight = new ArrayDeque<>();
+        int nextPage = 1;
+        int page = 1;
+        try {
+            while (page <= pageCount) {
+                while (nextPage <= pageCount && inFlight.size() < MAX_IN_FLIGHT) {
+                    int first = nextPage;
+                    int last = Math.min(pageCount, first + PAGES_PER_TASK - 1);
+                    inFlight.addLast(pool.submit(() -> extractPages(file, first, last)));
+                    nextPage = last + 1;
+                }
+
+                List<String> pages = getSlice(inFlight.removeFirst());
+                for (String text : pages) {
+                    handler.page(page++, text);
+                }
+            }
+        } finally {
+            for (Future<List<String>> slice : inFlight) {
+                slice.cancel(true);
+            }
+        }
+        return pageCount;
+    }
+
+    private static List<String> extractPages(File file, int firstPage, int lastPage) throws IOException {
+        List<String> pages = new ArrayList<>(lastPage - firstPage + 1);
+        try (PDDocument document = load(file)) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            for (int page = firstPage; page <= lastPage; page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                pages.add(stripper.getText(document));
+            }
+        }
+        return pages;
+    }
+
+    private static PDDocument load(File file) throws IOException {
+        return PDDocument.load(file, MemoryUsageSetting.setupMixed(MAX_MAIN_MEMORY_BYTES));
+    }
+
+    private static List<String> getSlice(Future<List<String>> slice) throws IOException, InterruptedException {
+        try {
+            return slice.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("PDF extraction failed", cause);
+        }
+    }
+}
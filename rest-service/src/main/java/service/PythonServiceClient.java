@@ -0,0 +1,721 @@
+package service;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Shared HTTP client for the Python RAG/STT service.
+ * One java.net.http.HttpClient keeps a pool of keep-alive connections for all
+ * callers; every request has a connect and a response timeout, and bodies are
+ * read as a whole through byte buffers.
+ *
+ * Calls are grouped into routes (chat, search, notes, stt, other). Each route has
+ * a bulkhead limiting its concurrent calls and a circuit breaker, so a stalled
+ * model behind one endpoint cannot take every request thread with it; rejected
+ * calls fail at once with an UnavailableException.
+ */
+public class PythonServiceClient {
+
+    private static final String BASE_URL =
+        System.getenv("PYTHON_SERVICE_URL") != null ?
+        System.getenv("PYTHON_SERVICE_URL") : "http://localhost:5001";
+
+    private static final int CONNECT_TIMEOUT_MILLIS =
+        System.getenv("PYTHON_CONNECT_TIMEOUT_MS") != null ?
+        Integer.parseInt(System.getenv("PYTHON_CONNECT_TIMEOUT_MS")) : 5000;
+
+    // Time allowed for the response; LLM-backed endpoints can take minutes
+    private static final int READ_TIMEOUT_MILLIS =
+        System.getenv("PYTHON_READ_TIMEOUT_MS") != null ?
+        Integer.parseInt(System.getenv("PYTHON_READ_TIMEOUT_MS")) : 120000;
+
+    // Time allowed for an upload to be transcribed; long lectures take a while on CPU
+    private static final int STT_TIMEOUT_MILLIS =
+        System.getenv("PYTHON_STT_TIMEOUT_MS") != null ?
+        Integer.parseInt(System.getenv("PYTHON_STT_TIMEOUT_MS")) : 1800000;
+
+    // uvicorn speaks HTTP/1.1 only; HTTP_2 is worth enabling behind an h2-capable proxy
+    private static final HttpClient.Version VERSION =
+        "HTTP_2".equalsIgnoreCase(System.getenv("PYTHON_HTTP_VERSION")) ?
+        HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1;
+
+    private static final int BREAKER_FAILURES =
+        System.getenv("PYTHON_BREAKER_FAILURES") != null ?
+        Integer.parseInt(System.getenv("PYTHON_BREAKER_FAILURES")) : 5;
+
+    private static final long BREAKER_OPEN_MILLIS =
+        System.getenv("PYTHON_BREAKER_OPEN_SECONDS") != null ?
+        Long.parseLong(System.getenv("PYTHON_BREAKER_OPEN_SECONDS")) * 1000 : 30000;
+
+    // Longest gap allowed between lines of a streamed response once it has started
+    private static final int STREAM_IDLE_TIMEOUT_MILLIS =
+        System.getenv("PYTHON_STREAM_IDLE_TIMEOUT_MS") != null ?
+        Integer.parseInt(System.getenv("PYTHON_STREAM_IDLE_TIMEOUT_MS")) : 60000;
+
+    private static final long WATCHDOG_PERIOD_MILLIS = Math.max(50, Math.min(1000, STREAM_IDLE_TIMEOUT_MILLIS / 4));
+
+    private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "python-stream-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Chunk size of streamed uploads; the source is read until a chunk is full
+    private static final int UPLOAD_BUFFER_SIZE =
+        (System.getenv("PYTHON_UPLOAD_BUFFER_KB") != null ?
+        Integer.parseInt(System.getenv("PYTHON_UPLOAD_BUFFER_KB")) : 256) * 1024;
+
+    private static final HttpClient client;
+
+    private static final Map<String, Route> routes = new LinkedHashMap<>();
+
+    // Interactive routes fail fast when full; pipeline routes wait for a slot, but
+    // no longer than a call holding it may take, so a hung service fails the caller
+    private static final Route CHAT = addRoute("chat", 8, 0);
+    private static final Route SEARCH = addRoute("search", 16, 0);
+    private static final Route NOTES = addRoute("notes", 4, 30000);
+    private static final Route STT = addRoute("stt", 2, STT_TIMEOUT_MILLIS);
+    private static final Route OTHER = addRoute("other", 8, READ_TIMEOUT_MILLIS);
+
+    static {
+        // The JDK client pools connections itself; these properties size the pool
+        if (System.getenv("PYTHON_HTTP_POOL_SIZE") != null
+                && System.getProperty("jdk.httpclient.connectionPoolSize") == null) {
+            System.setProperty("jdk.httpclient.connectionPoolSize", System.getenv("PYTHON_HTTP_POOL_SIZE"));
+        }
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout", "60");
+        }
+        client = HttpClient.newBuilder()
+                .version(VERSION)
+                .connectTimeout(Duration.ofMillis(CONNECT_TIMEOUT_MILLIS))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    /**
+     * Bulkhead and circuit breaker for one group of endpoints.
+     */
+    public static class Route {
+        public final String name;
+        public final Bulkhead bulkhead;
+        public final CircuitBreaker breaker;
+
+        Route(String name, Bulkhead bulkhead, CircuitBreaker breaker) {
+            this.name = name;
+            this.bulkhead = bulkhead;
+            this.breaker = breaker;
+        }
+    }
+
+    /**
+     * Call rejected locally because its route is saturated or its circuit is open.
+     */
+    public static class UnavailableException extends IOException {
+        public final String route;
+        public final long retryAfterSeconds;
+
+        public UnavailableException(String route, String reason, long retryAfterSeconds) {
+            super("Python service unavailable (" + route + "): " + reason);
+            this.route = route;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+    }
+
+    /**
+     * Receives the lines of a streamed response.
+     */
+    public interface LineHandler {
+        /**
+         * @return false to stop reading and cancel the request
+         */
+        boolean onLine(String line);
+    }
+
+    /**
+     * Non-2xx answer from the Python service.
+     */
+    public static class ServiceException extends IOException {
+        public final int statusCode;
+        public final String body;
+
+        public ServiceException(int statusCode, String body) {
+            super("Python service returned error: " + statusCode);
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+    }
+
+    public static String postJson(String endpoint, String jsonBody) throws IOException, InterruptedException {
+        return postJson(endpoint, jsonBody, READ_TIMEOUT_MILLIS);
+    }
+
+    public static String postJson(String endpoint, String jsonBody, int timeoutMillis)
+            throws IOException, InterruptedException {
+        return send(jsonRequest(endpoint, jsonBody, timeoutMillis), routeFor(endpoint), null);
+    }
+
+    public static CompletableFuture<String> postJsonAsync(String endpoint, String jsonBody) {
+        return postJsonAsync(endpoint, jsonBody, READ_TIMEOUT_MILLIS);
+    }
+
+    public static CompletableFuture<String> postJsonAsync(String endpoint, String jsonBody, int timeoutMillis) {
+        return sendAsync(jsonRequest(endpoint, jsonBody, timeoutMillis), routeFor(endpoint));
+    }
+
+    /**
+     * POST a JSON body and hand each line of the response to handler as it arrives.
+     * The response timeout applies until the headers arrive; after that the stream
+     * is abandoned if no line arrives for STREAM_IDLE_TIMEOUT_MILLIS. The returned
+     * future completes when the response ends or the handler stops it; a failure to
+     * send or an idle stream completes it exceptionally.
+     */
+    public static CompletableFuture<Void> postJsonLines(String endpoint, String jsonBody, LineHandler handler)
+            throws IOException, InterruptedException {
+        return postJsonLines(endpoint, jsonBody, handler, () -> true);
+    }
+
+    /**
+     * @param open checked periodically while the stream runs; once it returns false
+     *             the request is cancelled and the returned future completes normally
+     */
+    public static CompletableFuture<Void> postJsonLines(String endpoint, String jsonBody, LineHandler handler,
+                                                        BooleanSupplier open)
+            throws IOException, InterruptedException {
+        Route route = routeFor(endpoint);
+        HttpRequest request = jsonRequest(endpoint, jsonBody, READ_TIMEOUT_MILLIS);
+        long permit = acquire(route);
+
+        LineStream stream = new LineStream(route, permit, handler, open);
+        try {
+            stream.response = client.sendAsync(request,
+                    info -> info.statusCode() >= 200 && info.statusCode() < 300
+                            ? HttpResponse.BodySubscribers.fromLineSubscriber(stream)
+                            : HttpResponse.BodySubscribers.discarding());
+        } catch (RuntimeException e) {
+            // Not sent, so the permit goes back without an outcome
+            stream.finish(0, null, e);
+            throw e;
+        }
+        stream.response.whenComplete((response, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            int status = response != null ? response.statusCode() : 0;
+            if (cause != null) {
+                stream.finish(status, cause instanceof IOException ? cause : null, cause);
+            } else if (status < 200 || status >= 300) {
+                stream.finish(status, null, new ServiceException(status, null));
+            } else {
+                stream.finish(status, null, null);
+            }
+        });
+        stream.watch = watchdog.scheduleWithFixedDelay(stream::check,
+                WATCHDOG_PERIOD_MILLIS, WATCHDOG_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        if (stream.done.isDone()) {
+            // Settled before the check was scheduled
+            stream.watch.cancel(false);
+        }
+        return stream.done;
+    }
+
+    /**
+     * One streamed response: passes lines to the handler and settles the route
+     * exactly once, whether the response ends, the handler stops it, the caller
+     * goes away or the stream stalls.
+     */
+    private static class LineStream implements Flow.Subscriber<String> {
+        private final Route route;
+        private final long permit;
+        private final LineHandler handler;
+        private final BooleanSupplier open;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final AtomicBoolean finished = new AtomicBoolean();
+        volatile CompletableFuture<HttpResponse<Void>> response;
+        volatile ScheduledFuture<?> watch;
+        private volatile Flow.Subscription subscription;
+        private volatile boolean cancelled;
+        private volatile long lastLineNanos;
+
+        LineStream(Route route, long permit, LineHandler handler, BooleanSupplier open) {
+            this.route = route;
+            this.permit = permit;
+            this.handler = handler;
+            this.open = open;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            lastLineNanos = System.nanoTime();
+            this.subscription = subscription;
+            if (cancelled) {
+                subscription.cancel();
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (cancelled) {
+                return;
+            }
+            lastLineNanos = System.nanoTime();
+            boolean more;
+            try {
+                more = line.isEmpty() || handler.onLine(line);
+            } catch (RuntimeException e) {
+                more = false;
+            }
+            if (more) {
+                subscription.request(1);
+            } else {
+                // Stopped by the handler: the exchange is abandoned, so settle here
+                cancel();
+                finish(0, null, null);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // Reported through the response future
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        /**
+         * Run on the watchdog: stop streams whose caller went away or whose body stalled.
+         */
+        void check() {
+            if (finished.get()) {
+                return;
+            }
+            boolean callerOpen;
+            try {
+                callerOpen = open.getAsBoolean();
+            } catch (RuntimeException e) {
+                callerOpen = false;
+            }
+            if (!callerOpen) {
+                cancel();
+                finish(0, null, null);
+            } else if (subscription != null
+                    && System.nanoTime() - lastLineNanos > STREAM_IDLE_TIMEOUT_MILLIS * 1_000_000L) {
+                cancel();
+                IOException stalled = new HttpTimeoutException(
+                        "No data from Python service for " + STREAM_IDLE_TIMEOUT_MILLIS + " ms");
+                finish(0, stalled, stalled);
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            } else if (response != null) {
+                // Still waiting for the headers
+                response.cancel(true);
+            }
+        }
+
+        /**
+         * @param error   counted against the route's breaker when not null
+         * @param failure completes the returned future exceptionally when not null
+         */
+        void finish(int status, Throwable error, Throwable failure) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            ScheduledFuture<?> current = watch;
+            if (current != null) {
+                current.cancel(false);
+            }
+            complete(route, permit, status, error);
+            if (failure != null) {
+                done.completeExceptionally(failure);
+            } else {
+                done.complete(null);
+            }
+        }
+    }
+
+    /**
+     * @param pathAndQuery path plus an already encoded query string
+     */
+    public static String get(String pathAndQuery) throws IOException, InterruptedException {
+        return send(getRequest(pathAndQuery, READ_TIMEOUT_MILLIS), routeFor(pathAndQuery), null);
+    }
+
+    public static CompletableFuture<String> getAsync(String pathAndQuery) {
+        return sendAsync(getRequest(pathAndQuery, READ_TIMEOUT_MILLIS), routeFor(pathAndQuery));
+    }
+
+    /**
+     * Upload a file as the single part of a multipart/form-data body.
+     */
+    public static String postMultipartFile(String endpoint, String fieldName, String fileName,
+                                           String contentType, Path file) throws IOException, InterruptedException {
+        String boundary = newBoundary();
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.concat(
+                HttpRequest.BodyPublishers.ofByteArray(partHeader(boundary, fieldName, fileName, contentType)),
+                HttpRequest.BodyPublishers.ofFile(file),
+                HttpRequest.BodyPublishers.ofByteArray(partTrailer(boundary)));
+        return send(multipartRequest(endpoint, boundary, body), routeFor(endpoint), null);
+    }
+
+    /**
+     * Upload a stream of unknown length as the single part of a multipart/form-data
+     * body, sent with chunked transfer encoding in chunks of UPLOAD_BUFFER_SIZE.
+     * If reading the stream throws, the request is aborted before the closing
+     * boundary is sent.
+     */
+    public static String postMultipartStream(String endpoint, String fieldName, String fileName,
+                                             String contentType, Supplier<InputStream> stream)
+            throws IOException, InterruptedException {
+        String boundary = newBoundary();
+        byte[] header = partHeader(boundary, fieldName, fileName, contentType);
+        byte[] trailer = partTrailer(boundary);
+        // A failing source is our problem, not the service's, and must not count against the breaker
+        AtomicBoolean sourceFailed = new AtomicBoolean();
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.fromPublisher(new StreamPublisher(() ->
+                new SequenceInputStream(Collections.enumeration(List.of(
+                        new ByteArrayInputStream(header),
+                        new FilterInputStream(stream.get()) {
+                            @Override
+                            public int read() throws IOException {
+                                try {
+                                    return super.read();
+                                } catch (IOException e) {
+                                    sourceFailed.set(true);
+                                    throw e;
+                                }
+                            }
+
+                            @Override
+                            public int read(byte[] b, int off, int len) throws IOException {
+                                try {
+                                    return super.read(b, off, len);
+                                } catch (IOException e) {
+                                    sourceFailed.set(true);
+                                    throw e;
+                                }
+                            }
+                        },
+                        new ByteArrayInputStream(trailer))))));
+        return send(multipartRequest(endpoint, boundary, body), routeFor(endpoint), sourceFailed);
+    }
+
+    /**
+     * Request body read from a stream in UPLOAD_BUFFER_SIZE chunks.
+     * BodyPublishers.ofInputStream hands the client small JDK-sized buffers; this
+     * fills each buffer before sending it, so a long upload goes out in few large
+     * chunks. As with ofInputStream, the stream is read on the thread that asks
+     * for data.
+     */
+    private static class StreamPublisher implements Flow.Publisher<ByteBuffer> {
+        private final Supplier<InputStream> source;
+
+        StreamPublisher(Supplier<InputStream> source) {
+            this.source = source;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            InputStream in;
+            try {
+                in = source.get();
+            } catch (RuntimeException e) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                });
+                subscriber.onError(e);
+                return;
+            }
+            subscriber.onSubscribe(new StreamSubscription(in, subscriber));
+        }
+    }
+
+    private static class StreamSubscription implements Flow.Subscription {
+        private final InputStream in;
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        // Only one thread reads at a time; a request() from inside onNext just adds demand
+        private final AtomicBoolean emitting = new AtomicBoolean();
+        private volatile boolean done;
+
+        StreamSubscription(InputStream in, Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.in = in;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("non-positive request: " + n));
+                return;
+            }
+            demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            emit();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+            closeQuietly();
+        }
+
+        private void emit() {
+            while (emitting.compareAndSet(false, true)) {
+                try {
+                    while (!done && demand.get() > 0) {
+                        byte[] buffer = new byte[UPLOAD_BUFFER_SIZE];
+                        int filled = 0;
+                        int n = 0;
+                        while (filled < buffer.length && (n = in.read(buffer, filled, buffer.length - filled)) != -1) {
+                            filled += n;
+                        }
+                        if (filled > 0 && !done) {
+                            demand.decrementAndGet();
+                            subscriber.onNext(ByteBuffer.wrap(buffer, 0, filled));
+                        }
+                        if (n == -1 && !done) {
+                            done = true;
+                            closeQuietly();
+                            subscriber.onComplete();
+                        }
+                    }
+                } catch (IOException e) {
+                    if (!done) {
+                        done = true;
+                        closeQuietly();
+                        subscriber.onError(e);
+                    }
+                } finally {
+                    emitting.set(false);
+                }
+                // Demand added by another thread while this one held the flag
+                if (done || demand.get() == 0) {
+                    return;
+                }
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static HttpRequest jsonRequest(String endpoint, String jsonBody, int timeoutMillis) {
+        return HttpRequest.newBuilder(URI.create(BASE_URL + endpoint))
+                .timeout(Duration.ofMillis(timeoutMillis))
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(jsonBody, StandardCharsets.UTF_8))
+                .build();
+    }
+
+    private static HttpRequest getRequest(String pathAndQuery, int timeoutMillis) {
+        return HttpRequest.newBuilder(URI.create(BASE_URL + pathAndQuery))
+                .timeout(Duration.ofMillis(timeoutMillis))
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+    }
+
+    private static HttpRequest multipartRequest(String endpoint, String boundary, HttpRequest.BodyPublisher body) {
+        // Uploads only go to STT, whose timeout covers sending the file and transcribing it
+        return HttpRequest.newBuilder(URI.create(BASE_URL + endpoint))
+                .timeout(Duration.ofMillis(STT_TIMEOUT_MILLIS))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .header("Accept", "application/json")
+                .POST(body)
+                .build();
+    }
+
+    private static String send(HttpRequest request, Route route, AtomicBoolean sourceFailed)
+            throws IOException, InterruptedException {
+        long permit = acquire(route);
+        HttpResponse<String> response;
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            complete(route, permit, 0, sourceFailed != null && sourceFailed.get() ? null : e);
+            throw e;
+        } catch (InterruptedException | RuntimeException e) {
+            complete(route, permit, 0, null);
+            throw e;
+        }
+        complete(route, permit, response.statusCode(), null);
+        return checkStatus(response);
+    }
+
+    private static CompletableFuture<String> sendAsync(HttpRequest request, Route route) {
+        long permit;
+        try {
+            permit = acquire(route);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<HttpResponse<String>> response;
+        try {
+            response = client.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            // Not sent, so the permit goes back without an outcome
+            complete(route, permit, 0, null);
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<String> body = response
+                .whenComplete((result, error) -> {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    complete(route, permit, result != null ? result.statusCode() : 0,
+                            cause instanceof IOException ? cause : null);
+                })
+                .thenApply(result -> {
+                    try {
+                        return checkStatus(result);
+                    } catch (ServiceException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+        // Cancelling the returned future aborts the exchange, which frees its bulkhead slot
+        body.whenComplete((result, error) -> {
+            if (body.isCancelled()) {
+                response.cancel(true);
+            }
+        });
+        return body;
+    }
+
+    /**
+     * @return the breaker permit to pass to complete()
+     */
+    private static long acquire(Route route) throws UnavailableException, InterruptedException {
+        if (!route.bulkhead.tryAcquire()) {
+            throw new UnavailableException(route.name, "too many concurrent calls", 1);
+        }
+        long permit = route.breaker.tryAcquire();
+        if (permit == CircuitBreaker.REJECTED) {
+            route.bulkhead.release();
+            throw new UnavailableException(route.name, "circuit open", route.breaker.getRetryAfterSeconds());
+        }
+        return permit;
+    }
+
+    /**
+     * Record the outcome of an acquired call. Connection errors, timeouts and 5xx
+     * answers count as failures; a call that never got an answer for reasons of
+     * our own (status 0, no error) is released without an outcome.
+     */
+    private static void complete(Route route, long permit, int status, Throwable error) {
+        route.bulkhead.release();
+        if (error != null || status >= 500) {
+            route.breaker.onFailure(permit);
+        } else if (status > 0) {
+            route.breaker.onSuccess(permit);
+        } else {
+            route.breaker.release(permit);
+        }
+    }
+
+    private static Route routeFor(String endpoint) {
+        if (endpoint.startsWith("/api/chat")) {
+            return CHAT;
+        } else if (endpoint.startsWith("/api/embedding/search")) {
+            return SEARCH;
+        } else if (endpoint.startsWith("/api/rag/generate_notes")) {
+            return NOTES;
+        } else if (endpoint.startsWith("/api/stt")) {
+            return STT;
+        }
+        return OTHER;
+    }
+
+    /**
+     * Limits come from PYTHON_BULKHEAD_<NAME> and PYTHON_BULKHEAD_<NAME>_WAIT_MS.
+     */
+    private static Route addRoute(String name, int defaultMaxConcurrent, long defaultMaxWaitMillis) {
+        String key = "PYTHON_BULKHEAD_" + name.toUpperCase();
+        int maxConcurrent = System.getenv(key) != null ?
+            Integer.parseInt(System.getenv(key)) : defaultMaxConcurrent;
+        long maxWaitMillis = System.getenv(key + "_WAIT_MS") != null ?
+            Long.parseLong(System.getenv(key + "_WAIT_MS")) : defaultMaxWaitMillis;
+        Route route = new Route(name, new Bulkhead(name, maxConcurrent, maxWaitMillis),
+                new CircuitBreaker("python-" + name, BREAKER_FAILURES, BREAKER_OPEN_MILLIS));
+        routes.put(name, route);
+        return route;
+    }
+
+    public static Collection<Route> getRoutes() {
+        return Collections.unmodifiableCollection(routes.values());
+    }
+
+    private static String checkStatus(HttpResponse<String> response) throws ServiceException {
+        int status = response.statusCode();
+        if (status < 200 || status >= 300) {
+            throw new ServiceException(status, response.body());
+        }
+        return response.body();
+    }
+
+    private static String newBoundary() {
+        return "----Boundary" + System.nanoTime();
+    }
+
+    private static byte[] partHeader(String boundary, String fieldName, String fileName, String contentType) {
+        return ("--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"" + fieldName + "\"; filename=\"" + fileName + "\"\r\n" +
+                "Content-Type: " + contentType + "\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] partTrailer(String boundary) {
+        return ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static String getBaseUrl() {
+        return BASE_URL;
+    }
+}
@@ -0,0 +1,179 @@
+package service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of semantic search responses keyed by course, normalized
+ * query, result count and language filter. Entries expire after a TTL and a
+ * course's entries are dropped when it is reprocessed or deleted.
+ * Concurrent misses for the same key share one upstream call.
+ */
+public class SearchCache {
+
+    private static final int MAX_ENTRIES =
+        System.getenv("SEARCH_CACHE_MAX_ENTRIES") != null ?
+        Integer.parseInt(System.getenv("SEARCH_CACHE_MAX_ENTRIES")) : 2000;
+
+    private static final long TTL_MS =
+        System.getenv("SEARCH_CACHE_TTL_MS") != null ?
+        Long.parseLong(System.getenv("SEARCH_CACHE_TTL_MS")) : 300000;
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong coalesced = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+
+    // Bumped on every invalidation so a load that raced with reprocessing is not cached
+    private static final AtomicLong epoch = new AtomicLong();
+
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > MAX_ENTRIES) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private static final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private static class Entry {
+        final int courseId;
+        final String response;
+        final long expiresAt;
+
+        Entry(int courseId, String response, long expiresAt) {
+            this.courseId = courseId;
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Return the cached response for this search, or run loader to fetch it. If an
+     * identical search is already being fetched, wait for that one instead.
+     * Failures are passed to every waiting caller and never cached.
+     */
+    public static String get(int courseId, String query, int nResults, String languageFilter,
+                             Callable<String> loader) throws Exception {
+        String key = key(courseId, query, nResults, languageFilter);
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+                hits.incrementAndGet();
+                return entry.response;
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+        }
+
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+
+        misses.incrementAndGet();
+        long loadEpoch = epoch.get();
+        try {
+            String response = loader.call();
+            put(key, courseId, response, loadEpoch);
+            call.complete(response);
+            return response;
+        } catch (Throwable e) {
+            // Errors too, or the callers waiting on this search would block forever
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    private static void put(String key, int courseId, String response, long loadEpoch) {
+        if (response == null || MAX_ENTRIES <= 0) {
+            return;
+        }
+        synchronized (entries) {
+            if (epoch.get() != loadEpoch) {
+                return;
+            }
+            entries.put(key, new Entry(courseId, response, System.currentTimeMillis() + TTL_MS));
+        }
+    }
+
+    /**
+     * Case and whitespace differences do not change what a student is asking.
+     */
+    static String normalize(String query) {
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static String key(int courseId, String query, int nResults, String languageFilter) {
+        return courseId + "|" + nResults + "|" + (languageFilter != null ? languageFilter : "") +
+                "|" + normalize(query);
+    }
+
+    public static void invalidateCourse(int courseId) {
+        synchronized (entries) {
+            epoch.incrementAndGet();
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().courseId == courseId) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public static int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public static int getMaxEntries() {
+        return MAX_ENTRIES;
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public static long getEvictions() {
+        return evictions.get();
+    }
+
+    public static double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get() + coalesced.get();
+        return total > 0 ? (double) h / total : 0.0;
+    }
+}
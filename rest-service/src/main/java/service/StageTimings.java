@@ -0,0 +1,178 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Start/end times of the stages of one processing run, relative to the start of
+ * the run. Stages declare which stages they wait for, so the critical path (the
+ * chain of stages that determined the total time) can be reconstructed.
+ */
+public class StageTimings {
+
+    /**
+     * Body of a stage.
+     */
+    public interface StageTask<T> {
+        T run() throws Exception;
+    }
+
+    public static class Stage {
+        public final String name;
+        public final List<String> dependsOn;
+        public volatile long startMillis = -1;
+        public volatile long endMillis = -1;
+        public volatile boolean failed;
+
+        Stage(String name, List<String> dependsOn) {
+            this.name = name;
+            this.dependsOn = dependsOn;
+        }
+
+        public long getDurationMillis() {
+            return startMillis >= 0 && endMillis >= 0 ? endMillis - startMillis : -1;
+        }
+    }
+
+    private final long startedAt = System.currentTimeMillis();
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+    private volatile long finishedAt = -1;
+
+    /**
+     * Declare a stage and the stages whose output it needs.
+     */
+    public synchronized void declare(String name, String... dependsOn) {
+        stages.put(name, new Stage(name, Collections.unmodifiableList(Arrays.asList(dependsOn))));
+    }
+
+    /**
+     * Run a declared stage on the calling thread, recording when it started and ended.
+     */
+    public <T> T run(String name, StageTask<T> task) throws Exception {
+        Stage stage = getStage(name);
+        stage.startMillis = System.currentTimeMillis() - startedAt;
+        try {
+            return task.run();
+        } catch (Exception e) {
+            stage.failed = true;
+            throw e;
+        } finally {
+            stage.endMillis = System.currentTimeMillis() - startedAt;
+        }
+    }
+
+    /**
+     * Start a declared stage whose work completes asynchronously. The stage ends
+     * when the returned future completes, not when task returns.
+     */
+    public <T> CompletableFuture<T> runAsync(String name, StageTask<CompletableFuture<T>> task) {
+        Stage stage = getStage(name);
+        stage.startMillis = System.currentTimeMillis() - startedAt;
+        CompletableFuture<T> result;
+        try {
+            result = task.run();
+        } catch (Exception e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        return result.whenComplete((value, error) -> {
+            if (error != null) {
+                stage.failed = true;
+            }
+            stage.endMillis = System.currentTimeMillis() - startedAt;
+        });
+    }
+
+    public void finish() {
+        finishedAt = System.currentTimeMillis() - startedAt;
+    }
+
+    public long getTotalMillis() {
+        return finishedAt >= 0 ? finishedAt : System.currentTimeMillis() - startedAt;
+    }
+
+    private synchronized Stage getStage(String name) {
+        Stage stage = stages.get(name);
+        if (stage == null) {
+            stage = new Stage(name, Collections.emptyList());
+            stages.put(name, stage);
+        }
+        return stage;
+    }
+
+    public synchronized List<Stage> getStages() {
+        return new ArrayList<>(stages.values());
+    }
+
+    /**
+     * Walk back from the stage that ended last, always through the dependency that
+     * ended last, since that is the one the stage was waiting for.
+     */
+    public synchronized List<String> getCriticalPath() {
+        Stage current = null;
+        for (Stage stage : stages.values()) {
+            if (stage.endMillis >= 0 && (current == null || stage.endMillis > current.endMillis)) {
+                current = stage;
+            }
+        }
+
+        List<String> path = new ArrayList<>();
+        while (current != null) {
+            path.add(0, current.name);
+            Stage latest = null;
+            for (String dependency : current.dependsOn) {
+                Stage candidate = stages.get(dependency);
+                if (candidate != null && candidate.endMillis >= 0
+                        && (latest == null || candidate.endMillis > latest.endMillis)) {
+                    latest = candidate;
+                }
+            }
+            current = latest;
+        }
+        return path;
+    }
+
+    public synchronized String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"totalMillis\":").append(getTotalMillis());
+        json.append(",\"finished\":").append(finishedAt >= 0);
+        json.append(",\"stages\":[");
+        boolean first = true;
+        for (Stage stage : stages.values()) {
+            if (!first) {
+                json.append(",");
+            }
+            first = false;
+            json.append(String.format(Locale.ROOT,
+                    "{\"name\":\"%s\",\"startMillis\":%d,\"endMillis\":%d,\"durationMillis\":%d,\"failed\":%b}",
+                    stage.name, stage.startMillis, stage.endMillis, stage.getDurationMillis(), stage.failed));
+        }
+        json.append("],\"criticalPath\":[");
+        List<String> path = getCriticalPath();
+        for (int i = 0; i < path.size(); i++) {
+            if (i > 0) {
+                json.append(",");
+            }
+            json.append("\"").append(path.get(i)).append("\"");
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder summary = new StringBuilder();
+        for (Stage stage : stages.values()) {
+            summary.append(String.format(Locale.ROOT, "  %-20s %7d ms -> %7d ms (%d ms)%s%n",
+                    stage.name, stage.startMillis, stage.endMillis, stage.getDurationMillis(),
+                    stage.failed ? " FAILED" : ""));
+        }
+        summary.append("  critical path: ").append(String.join(" -> ", getCriticalPath()));
+        return summary.toString();
+    }
+}
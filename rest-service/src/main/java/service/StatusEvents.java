@@ -0,0 +1,366 @@
+package service;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes video and course status changes to Server-Sent Events subscribers.
+ * Publishing only appends to each matching subscriber's bounded buffer; a small
+ * dispatcher pool writes the buffers out, so transcoding and course workers never
+ * wait on a client socket. Writes are not waited for: the next event of a client
+ * follows from the completion of its previous write. A client whose write takes
+ * longer than SEND_TIMEOUT_MS, or whose buffer overflows with status changes, is
+ * disconnected (EventSource reconnects on its own). An idle subscriber holds no
+ * thread, just its sink and an empty buffer.
+ */
+public class StatusEvents {
+
+    public static final String VIDEO_STATUS = "video-status";
+    public static final String VIDEO_PROGRESS = "video-progress";
+    public static final String COURSE_STATUS = "course-status";
+
+    private static final int CLIENT_BUFFER_SIZE =
+        System.getenv("SSE_CLIENT_BUFFER_SIZE") != null ?
+        Integer.parseInt(System.getenv("SSE_CLIENT_BUFFER_SIZE")) : 32;
+
+    private static final int DISPATCH_THREADS =
+        System.getenv("SSE_DISPATCH_THREADS") != null ?
+        Integer.parseInt(System.getenv("SSE_DISPATCH_THREADS")) : 2;
+
+    private static final long SEND_TIMEOUT_MS =
+        System.getenv("SSE_SEND_TIMEOUT_MS") != null ?
+        Long.parseLong(System.getenv("SSE_SEND_TIMEOUT_MS")) : 10000;
+
+    // Keeps proxies from closing idle streams and detects clients that went away
+    private static final long HEARTBEAT_INTERVAL_MS = 25000;
+
+    private static final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private static final AtomicLong publishedEvents = new AtomicLong();
+    private static final AtomicLong droppedEvents = new AtomicLong();
+    private static final AtomicLong slowClients = new AtomicLong();
+
+    private static final AtomicInteger threadNumber = new AtomicInteger();
+    private static final ExecutorService dispatcher = Executors.newFixedThreadPool(DISPATCH_THREADS, r -> {
+        Thread t = new Thread(r, "sse-dispatch-" + threadNumber.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sse-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // A comment line, ignored by EventSource clients
+    private static final Event PING = new Event(null, 0, "ping");
+
+    static {
+        heartbeat.scheduleWithFixedDelay(StatusEvents::sendHeartbeat,
+                HEARTBEAT_INTERVAL_MS, HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        long checkInterval = Math.max(100, SEND_TIMEOUT_MS / 4);
+        heartbeat.scheduleWithFixedDelay(StatusEvents::dropStalledClients,
+                checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private static class Event {
+        final String name;
+        final int id;
+        final String data;
+
+        Event(String name, int id, String data) {
+            this.name = name;
+            this.id = id;
+            this.data = data;
+        }
+    }
+
+    private static class Subscriber {
+        final SseEventSink sink;
+        final Sse sse;
+        final Set<Integer> videoIds;
+        final Set<Integer> courseIds;
+        final boolean allVideos;
+        final boolean courses;
+        final ArrayDeque<Event> buffer = new ArrayDeque<>();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        // System.nanoTime() when the write in progress started, 0 when none is
+        volatile long sendStartedNanos;
+        // Set once a status change had to be dropped: the client can no longer catch up
+        volatile boolean overflowed;
+
+        Subscriber(SseEventSink sink, Sse sse, Set<Integer> videoIds, Set<Integer> courseIds,
+                   boolean allVideos, boolean courses) {
+            this.sink = sink;
+            this.sse = sse;
+            this.videoIds = videoIds;
+            this.courseIds = courseIds;
+            this.allVideos = allVideos;
+            this.courses = courses;
+        }
+
+        boolean wants(Event event) {
+            if (event.name == null) {
+                return true;
+            }
+            if (event.name.equals(COURSE_STATUS)) {
+                return courses && (courseIds.isEmpty() || courseIds.contains(event.id));
+            }
+            return allVideos || videoIds.contains(event.id);
+        }
+
+        /**
+         * Add an event, making room when the buffer is full. A newer progress tick
+         * replaces an older one for the same video; otherwise the oldest progress
+         * tick goes first and status changes are only dropped as a last resort,
+         * which marks the subscriber as overflowed.
+         */
+        synchronized void offer(Event event) {
+            if (VIDEO_PROGRESS.equals(event.name)) {
+                Iterator<Event> it = buffer.iterator();
+                while (it.hasNext()) {
+                    Event queued = it.next();
+                    if (VIDEO_PROGRESS.equals(queued.name) && queued.id == event.id) {
+                        it.remove();
+                        droppedEvents.incrementAndGet();
+                        break;
+                    }
+                }
+            }
+            if (buffer.size() >= CLIENT_BUFFER_SIZE) {
+                Iterator<Event> it = buffer.iterator();
+                boolean removed = false;
+                while (it.hasNext()) {
+                    Event queued = it.next();
+                    if (queued.name == null || VIDEO_PROGRESS.equals(queued.name)) {
+                        it.remove();
+                        removed = true;
+                        break;
+                    }
+                }
+                if (!removed) {
+                    buffer.pollFirst();
+                    overflowed = true;
+                }
+                droppedEvents.incrementAndGet();
+            }
+            buffer.addLast(event);
+        }
+
+        synchronized Event poll() {
+            return buffer.pollFirst();
+        }
+
+        synchronized boolean isEmpty() {
+            return buffer.isEmpty();
+        }
+    }
+
+    /**
+     * Register a client. Empty videoIds with allVideos=false means no video events;
+     * empty courseIds with courses=true means every course.
+     */
+    public static void subscribe(SseEventSink sink, Sse sse, Set<Integer> videoIds, boolean allVideos,
+                                 Set<Integer> courseIds, boolean courses) {
+        Subscriber subscriber = new Subscriber(sink, sse, videoIds, courseIds, allVideos, courses);
+        subscribers.add(subscriber);
+        // Tell the client the stream is open and how long to wait before reconnecting
+        subscriber.offer(new Event(null, 0, "connected"));
+        schedule(subscriber);
+    }
+
+    public static void publishVideoStatus(int videoId, String status) {
+        publish(new Event(VIDEO_STATUS, videoId,
+                String.format("{\"id\":%d,\"status\":\"%s\"}", videoId, status)));
+    }
+
+    public static void publishVideoProgress(int videoId, String progressJson) {
+        publish(new Event(VIDEO_PROGRESS, videoId,
+                String.format("{\"id\":%d,\"progress\":%s}", videoId, progressJson)));
+    }
+
+    public static void publishCourseStatus(int courseId, String status) {
+        publish(new Event(COURSE_STATUS, courseId,
+                String.format("{\"id\":%d,\"status\":\"%s\"}", courseId, status)));
+    }
+
+    private static void publish(Event event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        publishedEvents.incrementAndGet();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.wants(event)) {
+                subscriber.offer(event);
+                if (subscriber.overflowed) {
+                    slowClients.incrementAndGet();
+                    remove(subscriber);
+                } else {
+                    schedule(subscriber);
+                }
+            }
+        }
+    }
+
+    private static void schedule(Subscriber subscriber) {
+        if (subscriber.scheduled.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(() -> drain(subscriber));
+            } catch (Exception e) {
+                subscriber.scheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Write out a subscriber's buffer. Only one drain per subscriber runs at a time,
+     * which keeps its events in order. A write that does not complete at once is
+     * not waited for: the drain continues on the dispatcher when it completes.
+     */
+    private static void drain(Subscriber subscriber) {
+        Event event;
+        while ((event = subscriber.poll()) != null) {
+            if (subscriber.sink.isClosed()) {
+                stopDrain(subscriber, true);
+                return;
+            }
+            CompletableFuture<?> sent;
+            subscriber.sendStartedNanos = System.nanoTime();
+            try {
+                sent = subscriber.sink.send(toOutbound(subscriber, event)).toCompletableFuture();
+            } catch (Exception e) {
+                sent = CompletableFuture.failedFuture(e);
+            }
+            if (!sent.isDone()) {
+                sent.orTimeout(SEND_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                    .whenComplete((result, error) -> {
+                        subscriber.sendStartedNanos = 0;
+                        if (error != null) {
+                            if (error instanceof TimeoutException) {
+                                slowClients.incrementAndGet();
+                            }
+                            stopDrain(subscriber, true);
+                            return;
+                        }
+                        try {
+                            dispatcher.execute(() -> drain(subscriber));
+                        } catch (Exception e) {
+                            stopDrain(subscriber, false);
+                        }
+                    });
+                return;
+            }
+            subscriber.sendStartedNanos = 0;
+            if (sent.isCompletedExceptionally()) {
+                // Client disconnected
+                stopDrain(subscriber, true);
+                return;
+            }
+        }
+        subscriber.scheduled.set(false);
+        // An event may have arrived between the last poll and clearing the flag
+        if (!subscriber.isEmpty()) {
+            schedule(subscriber);
+        }
+    }
+
+    private static void stopDrain(Subscriber subscriber, boolean disconnect) {
+        if (disconnect) {
+            remove(subscriber);
+        }
+        subscriber.scheduled.set(false);
+    }
+
+    private static OutboundSseEvent toOutbound(Subscriber subscriber, Event event) {
+        if (event.name == null) {
+            OutboundSseEvent.Builder comment = subscriber.sse.newEventBuilder().comment(event.data);
+            return "connected".equals(event.data) ? comment.reconnectDelay(3000).build() : comment.build();
+        }
+        return subscriber.sse.newEventBuilder()
+                .name(event.name)
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(String.class, event.data)
+                .build();
+    }
+
+    /**
+     * Disconnect clients whose current write has taken longer than SEND_TIMEOUT_MS.
+     * Closing the sink also fails a write that is blocked on the socket, which
+     * frees the dispatcher thread.
+     */
+    private static void dropStalledClients() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long started = subscriber.sendStartedNanos;
+            if (started != 0 && now - started > SEND_TIMEOUT_MS * 1_000_000L) {
+                slowClients.incrementAndGet();
+                remove(subscriber);
+            }
+        }
+    }
+
+    private static void sendHeartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.sink.isClosed()) {
+                remove(subscriber);
+            } else if (subscriber.isEmpty()) {
+                // Goes through the buffer so only the dispatcher ever writes to a sink
+                subscriber.offer(PING);
+                schedule(subscriber);
+            }
+        }
+    }
+
+    private static void remove(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            try {
+                subscriber.sink.close();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    public static void shutdown() {
+        heartbeat.shutdown();
+        for (Subscriber subscriber : subscribers) {
+            remove(subscriber);
+        }
+        dispatcher.shutdown();
+    }
+
+    public static int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public static long getPublishedEvents() {
+        return publishedEvents.get();
+    }
+
+    public static long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * Clients disconnected because they could not keep up.
+     */
+    public static long getSlowClients() {
+        return slowClients.get();
+    }
+}
@@ -0,0 +1,340 @@
+package service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.text.BreakIterator;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Splits text into chunks for embedding on sentence boundaries.
+ * Text is read from a Reader, or pushed piece by piece into a Feed, and sentences
+ * are found with a BreakIterator over the unconsumed part only, so memory stays
+ * bounded by a few chunk sizes however long the input is. A chunk holds whole sentences up to the
+ * target size and starts with up to overlap chars of the previous chunk's last
+ * sentences; a sentence longer than the target is cut at word boundaries.
+ */
+class TextChunker {
+
+    private static final int READ_SIZE = 8192;
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    public static class Chunk {
+        public final int ordinal;
+        public final String source;
+        public final String text;
+        // Char offsets of the chunk in the input, end exclusive
+        public final long startOffset;
+        public final long endOffset;
+        // Seconds into the recording, or null without a timeline
+        public final Double startTime;
+        public final Double endTime;
+        // Document pages, or null without a page index
+        public final Integer startPage;
+        public final Integer endPage;
+
+        Chunk(int ordinal, String source, String text, long startOffset, long endOffset,
+              Double startTime, Double endTime, Integer startPage, Integer endPage) {
+            this.ordinal = ordinal;
+            this.source = source;
+            this.text = text;
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.startPage = startPage;
+            this.endPage = endPage;
+        }
+    }
+
+    /**
+     * Maps char offsets of a transcript to the times of the segments they came from.
+     * Add segments in order, with the offset where each one's text starts.
+     */
+    public static class Timeline {
+        private long[] offsets = new long[64];
+        private double[] starts = new double[64];
+        private double[] ends = new double[64];
+        private int size;
+
+        public void add(long offset, double start, double end) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            offsets[size] = offset;
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+        }
+
+        Double startAt(long offset) {
+            int segment = segmentAt(offset);
+            return segment >= 0 ? starts[segment] : null;
+        }
+
+        Double endAt(long offset) {
+            int segment = segmentAt(offset);
+            return segment >= 0 ? ends[segment] : null;
+        }
+
+        // Last segment starting at or before offset
+        private int segmentAt(long offset) {
+            if (size == 0) {
+                return -1;
+            }
+            int index = Arrays.binarySearch(offsets, 0, size, offset);
+            return index >= 0 ? index : Math.max(0, -index - 2);
+        }
+    }
+
+    /**
+     * Maps char offsets of a document to page numbers. Add pages in order, with
+     * the offset where each one's text starts.
+     */
+    public static class PageIndex {
+        private long[] offsets = new long[64];
+        private int[] pages = new int[64];
+        private int size;
+
+        public void add(long offset, int page) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                pages = Arrays.copyOf(pages, size * 2);
+            }
+            offsets[size] = offset;
+            pages[size] = page;
+            size++;
+        }
+
+        Integer pageAt(long offset) {
+            if (size == 0) {
+                return null;
+            }
+            int index = Arrays.binarySearch(offsets, 0, size, offset);
+            return pages[index >= 0 ? index : Math.max(0, -index - 2)];
+        }
+    }
+
+    private static class Sentence {
+        final String text;
+        final long start;
+        final long end;
+
+        Sentence(String text, long start, long end) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private final int targetSize;
+    private final int overlap;
+    private final Locale locale;
+
+    TextChunker(int targetSize, int overlap, Locale locale) {
+        if (targetSize <= 0) {
+            throw new IllegalArgumentException("Chunk target size must be positive");
+        }
+        this.targetSize = targetSize;
+        // Overlap must leave room for new text in every chunk
+        this.overlap = Math.max(0, Math.min(overlap, targetSize / 2));
+        this.locale = locale;
+    }
+
+    /**
+     * Chunk everything the reader returns, passing each chunk to sink in order.
+     *
+     * @param timeline segment times for the text, or null
+     * @return number of chunks produced
+     */
+    int chunk(Reader reader, String source, Timeline timeline, Consumer<Chunk> sink) throws IOException {
+        Feed feed = feed(source, timeline, null, sink);
+        char[] block = new char[READ_SIZE];
+        int read;
+        while ((read = reader.read(block)) >= 0) {
+            feed.append(CharBuffer.wrap(block, 0, read));
+        }
+        return feed.finish();
+    }
+
+    /**
+     * Start chunking text that arrives in pieces, such as the pages of a document.
+     *
+     * @param timeline segment times for the text, or null
+     * @param pages    page numbers for the text, or null
+     */
+    Feed feed(String source, Timeline timeline, PageIndex pages, Consumer<Chunk> sink) {
+        return new Feed(source, timeline, pages, sink);
+    }
+
+    class Feed {
+        private final String source;
+        private final Timeline timeline;
+        private final PageIndex pages;
+        private final Consumer<Chunk> sink;
+        private final BreakIterator sentences = BreakIterator.getSentenceInstance(locale);
+        // Never hold more than this much unconsumed text, even without sentence breaks
+        private final int maxBuffer = Math.max(READ_SIZE, targetSize * 4);
+        private final StringBuilder buffer = new StringBuilder();
+        private long bufferStart;
+        private final Deque<Sentence> pending = new ArrayDeque<>();
+        private int pendingLength;
+        // True once pending holds text not yet emitted in a chunk, not just overlap
+        private boolean fresh;
+        private int ordinal;
+
+        private Feed(String source, Timeline timeline, PageIndex pages, Consumer<Chunk> sink) {
+            this.source = source;
+            this.timeline = timeline;
+            this.pages = pages;
+            this.sink = sink;
+        }
+
+        /**
+         * @return offset the next appended char will have
+         */
+        long length() {
+            return bufferStart + buffer.length();
+        }
+
+        void append(CharSequence text) {
+            buffer.append(text);
+            if (buffer.length() >= READ_SIZE) {
+                split(false);
+            }
+        }
+
+        /**
+         * End the current sentence here, e.g. at the end of a page, even without punctuation.
+         */
+        void endSection() {
+            split(true);
+        }
+
+        /**
+         * Chunk what is left.
+         *
+         * @return number of chunks produced
+         */
+        int finish() {
+            split(true);
+            if (fresh) {
+                emit();
+            }
+            pending.clear();
+            pendingLength = 0;
+            return ordinal;
+        }
+
+        private void split(boolean all) {
+            String text = buffer.toString();
+            sentences.setText(text);
+            int start = sentences.first();
+            int end = sentences.next();
+            // The last sentence in the buffer may go on in the next piece, so it waits unless told otherwise
+            while (end != BreakIterator.DONE && (all || end < text.length())) {
+                add(text.substring(start, end), bufferStart + start);
+                start = end;
+                end = sentences.next();
+            }
+
+            int consumed = start;
+            if (!all && consumed == 0 && text.length() >= maxBuffer) {
+                // No sentence break in sight: cut at the last space so the buffer stays bounded
+                int cut = text.lastIndexOf(' ', maxBuffer - 1);
+                consumed = cut > 0 ? cut + 1 : maxBuffer;
+                add(text.substring(0, consumed), bufferStart);
+            }
+            buffer.delete(0, consumed);
+            bufferStart += consumed;
+        }
+
+        private void add(String raw, long offset) {
+            String text = WHITESPACE.matcher(raw).replaceAll(" ").trim();
+            if (text.isEmpty()) {
+                return;
+            }
+            long end = offset + raw.length();
+            if (text.length() <= targetSize) {
+                append(new Sentence(text, offset, end));
+                return;
+            }
+            // Offsets of the pieces are approximate once whitespace was collapsed
+            int from = 0;
+            while (from < text.length()) {
+                int to = Math.min(text.length(), from + targetSize);
+                if (to < text.length()) {
+                    int space = text.lastIndexOf(' ', to);
+                    if (space > from) {
+                        to = space;
+                    }
+                }
+                long pieceStart = Math.min(end, offset + from);
+                long pieceEnd = to >= text.length() ? end : Math.min(end, offset + to);
+                append(new Sentence(text.substring(from, to).trim(), pieceStart, pieceEnd));
+                from = to;
+            }
+        }
+
+        private void append(Sentence sentence) {
+            if (sentence.text.isEmpty()) {
+                return;
+            }
+            if (fresh && pendingLength + 1 + sentence.text.length() > targetSize) {
+                emit();
+                carryOverlap(sentence.text.length());
+            }
+            pending.addLast(sentence);
+            pendingLength += (pendingLength > 0 ? 1 : 0) + sentence.text.length();
+            fresh = true;
+        }
+
+        private void emit() {
+            StringBuilder text = new StringBuilder(pendingLength);
+            for (Sentence sentence : pending) {
+                if (text.length() > 0) {
+                    text.append(' ');
+                }
+                text.append(sentence.text);
+            }
+            long start = pending.getFirst().start;
+            long end = pending.getLast().end;
+            Double startTime = timeline != null ? timeline.startAt(start) : null;
+            Double endTime = timeline != null ? timeline.endAt(Math.max(start, end - 1)) : null;
+            Integer startPage = pages != null ? pages.pageAt(start) : null;
+            Integer endPage = pages != null ? pages.pageAt(Math.max(start, end - 1)) : null;
+            sink.accept(new Chunk(ordinal++, source, text.toString(), start, end, startTime, endTime,
+                    startPage, endPage));
+            fresh = false;
+        }
+
+        // Keep the trailing sentences that fit in the overlap as the start of the next chunk
+        private void carryOverlap(int nextLength) {
+            int limit = Math.min(overlap, targetSize - nextLength - 1);
+            List<Sentence> tail = new ArrayList<>();
+            int length = 0;
+            while (!pending.isEmpty()) {
+                Sentence last = pending.pollLast();
+                int added = last.text.length() + (length > 0 ? 1 : 0);
+                if (length + added > limit) {
+                    break;
+                }
+                tail.add(0, last);
+                length += added;
+            }
+            pending.clear();
+            pending.addAll(tail);
+            pendingLength = length;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package service;
+
+import database.TranscodingJobDAO;
+import database.VideoDAO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs transcoding jobs from the transcoding_jobs table.
+ * A fixed set of worker threads claims jobs by priority; jobs survive redeploys
+ * because the queue lives in the database. Jobs running at shutdown() are stopped
+ * and re-queued, and jobs left PROCESSING by a crash are re-queued on start(),
+ * up to MAX_ATTEMPTS claims per job.
+ */
+public class TranscodingScheduler {
+
+    private static final int MAX_CONCURRENT =
+        System.getenv("TRANSCODE_MAX_CONCURRENT") != null ?
+        Integer.parseInt(System.getenv("TRANSCODE_MAX_CONCURRENT")) :
+        Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    private static final long POLL_INTERVAL_MS = 5000;
+
+    // Claims of one job before it is given up on; a claim only ends without a
+    // result when the server dies mid-job, which a bad input can cause every time
+    private static final int MAX_ATTEMPTS =
+        System.getenv("TRANSCODE_MAX_ATTEMPTS") != null ?
+        Integer.parseInt(System.getenv("TRANSCODE_MAX_ATTEMPTS")) : 3;
+
+    // Time shutdown() waits for workers after killing their ffmpeg processes
+    private static final long SHUTDOWN_WAIT_MS = 10000;
+
+    // Higher priority is claimed first
+    public static final int PRIORITY_NORMAL = 0;
+    public static final int PRIORITY_SHORT_VIDEO = 10;
+    public static final int PRIORITY_RETRY = 20;
+
+    private static final int SHORT_VIDEO_SECONDS =
+        System.getenv("TRANSCODE_SHORT_VIDEO_SECONDS") != null ?
+        Integer.parseInt(System.getenv("TRANSCODE_SHORT_VIDEO_SECONDS")) : 600;
+
+    private static final Semaphore wakeups = new Semaphore(0);
+    private static final Map<Integer, TranscodingJobDAO.Job> runningJobs = new ConcurrentHashMap<>();
+
+    private static ExecutorService workers;
+    // Probes durations of queued videos so short ones can move up the queue
+    private static ExecutorService prober;
+    private static volatile boolean running = false;
+
+    /**
+     * Start the workers, first re-queuing any job left PROCESSING by a previous run.
+     */
+    public static synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        TranscodingService.resumeProcesses();
+
+        for (int videoId : TranscodingJobDAO.failExhausted(MAX_ATTEMPTS)) {
+            System.err.println("Giving up on transcoding video " + videoId + " after " + MAX_ATTEMPTS + " attempts");
+            VideoDAO.updateStatus(videoId, "ERROR");
+            StatusEvents.publishVideoStatus(videoId, "ERROR");
+        }
+        int resumed = TranscodingJobDAO.requeueInterrupted(PRIORITY_RETRY);
+        if (resumed > 0) {
+            System.out.println("Re-queued " + resumed + " interrupted transcoding job(s)");
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(MAX_CONCURRENT, r -> {
+            Thread t = new Thread(r, "transcode-worker-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < MAX_CONCURRENT; i++) {
+            workers.submit(TranscodingScheduler::workerLoop);
+        }
+        prober = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "transcode-probe");
+            t.setDaemon(true);
+            return t;
+        });
+        System.out.println("Transcoding scheduler started with " + MAX_CONCURRENT + " worker(s)");
+    }
+
+    /**
+     * Stop claiming new jobs and stop the running ones: their ffmpeg processes are
+     * killed and the jobs go back in the queue, so a redeployment in the same JVM
+     * does not encode them twice. Waits up to SHUTDOWN_WAIT_MS for the workers;
+     * a job whose worker has not returned by then is still PROCESSING and is
+     * re-queued by the next start().
+     */
+    public static synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        TranscodingService.stopProcesses();
+        wakeups.release(MAX_CONCURRENT);
+        prober.shutdownNow();
+        workers.shutdownNow();
+        try {
+            if (!workers.awaitTermination(SHUTDOWN_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                System.err.println("Transcoding workers still running after " + SHUTDOWN_WAIT_MS + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Persist a job and wake an idle worker.
+     *
+     * @return the job id, or -1 if it could not be stored
+     */
+    public static int enqueue(int videoId, String inputPath, String outputDir,
+                              TranscodingService.Mode mode, int priority) {
+        int jobId = TranscodingJobDAO.enqueue(videoId, inputPath, outputDir, mode.name(), priority);
+        if (jobId > 0) {
+            start();
+            wakeups.release();
+        }
+        return jobId;
+    }
+
+    /**
+     * Find the duration of a queued video with ffprobe in the background, store
+     * it, and raise the job's priority if the video is short and still queued.
+     */
+    static synchronized void probeDuration(int jobId, int videoId, String inputPath, boolean retry) {
+        if (!running) {
+            return;
+        }
+        prober.execute(() -> {
+            Integer duration = TranscodingService.extractDuration(inputPath);
+            if (duration == null) {
+                return;
+            }
+            VideoDAO.updateDuration(videoId, duration);
+            int priority = priorityFor(duration, retry);
+            if (priority != priorityFor(null, retry) && TranscodingJobDAO.updateQueuedPriority(jobId, priority)) {
+                System.out.println("Transcoding job " + jobId + " re-prioritized to " + priority +
+                        " (" + duration + "s video)");
+            }
+        });
+    }
+
+    /**
+     * Priority for a new job: retries and short videos go first.
+     */
+    public static int priorityFor(Integer durationSeconds, boolean retry) {
+        int priority = PRIORITY_NORMAL;
+        if (retry) {
+            priority += PRIORITY_RETRY;
+        }
+        if (durationSeconds != null && durationSeconds <= SHORT_VIDEO_SECONDS) {
+            priority += PRIORITY_SHORT_VIDEO;
+        }
+        return priority;
+    }
+
+    public static int getMaxConcurrent() {
+        return MAX_CONCURRENT;
+    }
+
+    /**
+     * Jobs currently executing in this JVM.
+     */
+    public static List<TranscodingJobDAO.Job> getRunningJobs() {
+        return new ArrayList<>(runningJobs.values());
+    }
+
+    private static void workerLoop() {
+        while (running) {
+            TranscodingJobDAO.Job job = TranscodingJobDAO.claimNext();
+            if (job == null) {
+                try {
+                    wakeups.tryAcquire(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+
+            runningJobs.put(job.id, job);
+            boolean success = false;
+            try {
+                System.out.println("Worker " + Thread.currentThread().getName() + " claimed transcoding job " +
+                        job.id + " (video " + job.videoId + ", priority " + job.priority + ", attempt " + job.attempts + ")");
+                TranscodingService.Mode mode = TranscodingService.Mode.parse(job.mode, TranscodingService.getDefaultMode());
+                success = TranscodingService.runJob(job.videoId, job.inputPath, job.outputDir, mode);
+            } catch (Exception e) {
+                System.err.println("Transcoding job " + job.id + " failed: " + e.getMessage());
+                e.printStackTrace();
+            } finally {
+                runningJobs.remove(job.id);
+                if (!success && TranscodingService.isStopping()) {
+                    // Cut short by shutdown(), not a failure of the job
+                    TranscodingJobDAO.requeueJob(job.id, job.attempts, PRIORITY_RETRY);
+                } else {
+                    TranscodingJobDAO.finishJob(job.id, job.attempts, success ? "DONE" : "FAILED");
+                }
+            }
+        }
+    }
+}
@@ -1,97 +1,545 @@
 package service;
 
+import database.TranscodingJobDAO;
 import database.VideoDAO;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStreamReader;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class TranscodingService {
 
-    private static final ExecutorService executor = Executors.newFixedThreadPool(2);
-    private static final String FFMPEG_PATH = "ffmpeg";
+    static final String FFMPEG_PATH = "ffmpeg";
 
-    public static void transcodeVideoAsync(int videoId, String inputPath, String outputDir) {
-        executor.submit(() -> {
+    // Printed by "ffmpeg -benchmark" when the process finishes
+    private static final Pattern BENCH_LINE = Pattern.compile("bench: utime=([0-9.]+)s stime=([0-9.]+)s");
+
+    private static final long PROGRESS_PUBLISH_INTERVAL_MS = 1000;
+
+    // key=value lines written by "-progress pipe:1"; some values are padded, e.g. "speed= 1.5x"
+    private static final Pattern PROGRESS_LINE = Pattern.compile("^(\\w+)=\\s*(.*)$");
+
+    /**
+     * How the renditions of a job are produced.
+     * PROGRESSIVE encodes 360p, 720p and 1080p one after another, so the video is
+     * playable (PARTIAL_READY) after the first pass. SINGLE_PASS decodes the source
+     * once, scales it to all renditions in one filter graph and writes DASH directly.
+     * CHUNKED cuts long inputs into pieces and encodes the pieces of each rendition
+     * in parallel; short inputs fall back to PROGRESSIVE.
+     */
+    public enum Mode {
+        PROGRESSIVE,
+        SINGLE_PASS,
+        CHUNKED;
+
+        public static Mode parse(String value, Mode fallback) {
+            if (value == null || value.trim().isEmpty()) {
+                return fallback;
+            }
             try {
-                System.out.println("Starting transcoding for video ID: " + videoId);
-                VideoDAO.updateStatus(videoId, "PROCESSING");
-
-                File inputFile = new File(inputPath);
-                if (!inputFile.exists()) {
-                    System.err.println("Input file not found: " + inputPath);
-                    VideoDAO.updateStatus(videoId, "ERROR");
-                    return;
-                }
+                return Mode.valueOf(value.trim().toUpperCase().replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                return fallback;
+            }
+        }
+    }
 
-                File outputDirectory = new File(outputDir);
-                if (!outputDirectory.exists()) {
-                    outputDirectory.mkdirs();
-                }
+    private static final Mode DEFAULT_MODE = Mode.parse(System.getenv("TRANSCODE_MODE"), Mode.PROGRESSIVE);
 
-                String baseFilename = inputFile.getName().replaceFirst("[.][^.]+$", "");
-                String dashOutputPath = outputDir + File.separator + "manifest.mpd";
+    // ffmpeg processes running for jobs in this JVM, so shutdown can stop them
+    private static final Set<Process> processes = ConcurrentHashMap.newKeySet();
+    private static volatile boolean stopping = false;
 
-                // Extract real duration from video
-                Integer realDuration = extractDuration(inputPath);
-                if (realDuration != null) {
-                    VideoDAO.updateDuration(videoId, realDuration);
-                    System.out.println("Video duration detected: " + realDuration + " seconds");
-                }
+    // Timing of the most recent job per video, used to compare modes
+    private static final Map<Integer, JobStats> lastJobStats = new ConcurrentHashMap<>();
 
-                // Generate thumbnail
-                generateThumbnail(inputPath, outputDir, videoId);
+    /**
+     * Wall-clock time of a job, CPU time consumed by its ffmpeg processes and live
+     * encode progress parsed from "ffmpeg -progress".
+     */
+    public static class JobStats {
+        public final int videoId;
+        public final Mode mode;
+        private final long startedAt = System.currentTimeMillis();
+        private final AtomicLong cpuMillis = new AtomicLong();
+        private volatile long wallMillis = -1;
+
+        private volatile Integer durationSeconds;
+        private volatile String stage;
+        private volatile int stageIndex;
+        private volatile int stageCount = 1;
+        private volatile long stageStartedAt;
+        // Media time and frames encoded in the current stage, summed over all its ffmpeg processes
+        private final AtomicLong stageEncodedMicros = new AtomicLong();
+        private final AtomicLong stageFrames = new AtomicLong();
+
+        private volatile long lastPublishedAt;
+
+        JobStats(int videoId, Mode mode) {
+            this.videoId = videoId;
+            this.mode = mode;
+        }
 
-                // Progressive transcoding: 360p first for quick playback
-                boolean q360 = transcode360p(inputPath, outputDir, baseFilename);
+        void addCpuMillis(long millis) {
+            cpuMillis.addAndGet(millis);
+        }
 
-                if (q360) {
-                    // Generate initial manifest with 360p only
-                    boolean dash360 = generatePartialDashManifest(outputDir, baseFilename, dashOutputPath, "360p");
-                    if (dash360) {
-                        VideoDAO.updateProcessedPath(videoId, "/tmp/vidstream/videos/processed/" + videoId);
-                        VideoDAO.updateStatus(videoId, "PARTIAL_READY");
-                        System.out.println("360p transcoding completed for video ID: " + videoId + " - Video is playable");
-                    }
+        void finish() {
+            wallMillis = System.currentTimeMillis() - startedAt;
+        }
 
-                    // Continue with 720p
-                    boolean q720 = transcode720p(inputPath, outputDir, baseFilename);
-                    if (q720) {
-                        generatePartialDashManifest(outputDir, baseFilename, dashOutputPath, "360p,720p");
-                        System.out.println("720p transcoding completed for video ID: " + videoId);
-                    }
+        void setDurationSeconds(Integer durationSeconds) {
+            this.durationSeconds = durationSeconds;
+        }
 
-                    // Finally 1080p
-                    boolean q1080 = transcode1080p(inputPath, outputDir, baseFilename);
-                    if (q1080) {
-                        // Generate final manifest with all qualities
-                        boolean dashSuccess = generateDashManifest(outputDir, baseFilename, dashOutputPath);
-                        if (dashSuccess) {
-                            VideoDAO.updateStatus(videoId, "READY");
-                            System.out.println("Full transcoding completed for video ID: " + videoId);
-                        }
-                    } else {
-                        // 1080p failed but 360p+720p available
-                        VideoDAO.updateStatus(videoId, "READY");
-                        System.out.println("Transcoding completed (360p+720p) for video ID: " + videoId);
-                    }
-                } else {
-                    VideoDAO.updateStatus(videoId, "ERROR");
-                    System.err.println("360p transcoding failed for video ID: " + videoId);
+        /**
+         * Start stage index (0-based) of count, each of which encodes the whole input once.
+         */
+        void beginStage(String name, int index, int count) {
+            stageEncodedMicros.set(0);
+            stageFrames.set(0);
+            stageStartedAt = System.currentTimeMillis();
+            stageIndex = index;
+            stageCount = count;
+            stage = name;
+        }
+
+        void addProgress(long encodedMicros, long frames) {
+            stageEncodedMicros.addAndGet(encodedMicros);
+            stageFrames.addAndGet(frames);
+        }
+
+        /**
+         * Push the current progress to event subscribers, at most once per PROGRESS_PUBLISH_INTERVAL_MS.
+         */
+        void publishProgress() {
+            long now = System.currentTimeMillis();
+            if (now - lastPublishedAt < PROGRESS_PUBLISH_INTERVAL_MS) {
+                return;
+            }
+            lastPublishedAt = now;
+            StatusEvents.publishVideoProgress(videoId, progressToJson());
+        }
+
+        public boolean isFinished() {
+            return wallMillis >= 0;
+        }
+
+        public long getWallMillis() {
+            return isFinished() ? wallMillis : System.currentTimeMillis() - startedAt;
+        }
+
+        public long getCpuMillis() {
+            return cpuMillis.get();
+        }
+
+        /**
+         * Rendition(s) currently being encoded, or null before the first encode starts.
+         */
+        public String getStage() {
+            return stage;
+        }
+
+        /**
+         * Overall completion in percent, or null while the input duration is unknown.
+         */
+        public Double getPercent() {
+            Integer duration = durationSeconds;
+            if (duration == null || duration <= 0 || stage == null) {
+                return null;
+            }
+            double stageFraction = Math.min(1.0, stageEncodedMicros.get() / (duration * 1_000_000.0));
+            return Math.min(100.0, (stageIndex + stageFraction) * 100.0 / stageCount);
+        }
+
+        /**
+         * Encoded media seconds per wall-clock second in the current stage (1.0 = realtime).
+         */
+        public Double getSpeed() {
+            double elapsed = (System.currentTimeMillis() - stageStartedAt) / 1000.0;
+            if (stage == null || elapsed <= 0) {
+                return null;
+            }
+            return stageEncodedMicros.get() / 1_000_000.0 / elapsed;
+        }
+
+        public Double getFps() {
+            double elapsed = (System.currentTimeMillis() - stageStartedAt) / 1000.0;
+            if (stage == null || elapsed <= 0) {
+                return null;
+            }
+            return stageFrames.get() / elapsed;
+        }
+
+        /**
+         * Progress of the running stage as JSON, or "null" when nothing is encoding.
+         */
+        public String progressToJson() {
+            if (isFinished() || stage == null) {
+                return "null";
+            }
+            Long eta = getEtaSeconds();
+            return String.format(Locale.ROOT,
+                    "{\"percent\":%s,\"rendition\":\"%s\",\"speed\":%s,\"fps\":%s,\"etaSeconds\":%s}",
+                    formatDecimal(getPercent()), stage, formatDecimal(getSpeed()), formatDecimal(getFps()),
+                    eta != null ? eta : "null");
+        }
+
+        private static String formatDecimal(Double value) {
+            return value == null ? "null" : String.format(Locale.ROOT, "%.1f", value);
+        }
+
+        /**
+         * Estimated seconds left for the remaining stages at the current speed.
+         */
+        public Long getEtaSeconds() {
+            Integer duration = durationSeconds;
+            Double speed = getSpeed();
+            if (duration == null || speed == null || speed <= 0) {
+                return null;
+            }
+            double remainingMedia = (double) duration * (stageCount - stageIndex)
+                    - stageEncodedMicros.get() / 1_000_000.0;
+            return Math.max(0, Math.round(remainingMedia / speed));
+        }
+    }
+
+    /**
+     * Update the video status and notify event subscribers.
+     */
+    private static void updateStatus(int videoId, String status) {
+        if (stopping && "ERROR".equals(status)) {
+            // The job was cut short by stopProcesses() and goes back in the queue
+            return;
+        }
+        VideoDAO.updateStatus(videoId, status);
+        StatusEvents.publishVideoStatus(videoId, status);
+    }
+
+    public static Mode getDefaultMode() {
+        return DEFAULT_MODE;
+    }
+
+    public static JobStats getJobStats(int videoId) {
+        return lastJobStats.get(videoId);
+    }
+
+    public static void transcodeVideoAsync(int videoId, String inputPath, String outputDir) {
+        transcodeVideoAsync(videoId, inputPath, outputDir, DEFAULT_MODE);
+    }
+
+    /**
+     * Queue a transcoding job. Videos that were queued before (retries) and short
+     * videos are given a higher priority so they do not wait behind long uploads;
+     * a video of unknown duration is queued at once and re-prioritized once probed.
+     */
+    public static void transcodeVideoAsync(int videoId, String inputPath, String outputDir, Mode mode) {
+        boolean retry = TranscodingJobDAO.hasJobsForVideo(videoId);
+
+        Integer duration = null;
+        VideoDAO.Video video = VideoDAO.getVideoById(videoId);
+        if (video != null) {
+            duration = video.duration;
+        }
+
+        int priority = TranscodingScheduler.priorityFor(duration, retry);
+        int jobId = TranscodingScheduler.enqueue(videoId, inputPath, outputDir, mode, priority);
+        if (jobId > 0) {
+            System.out.println("Queued transcoding job " + jobId + " for video ID: " + videoId +
+                    " (priority " + priority + ")");
+            if (duration == null) {
+                // ffprobe runs in the background, not on the request thread
+                TranscodingScheduler.probeDuration(jobId, videoId, inputPath, retry);
+            }
+        } else {
+            System.err.println("Could not queue transcoding for video ID: " + videoId);
+            updateStatus(videoId, "ERROR");
+        }
+    }
+
+    /**
+     * Run a job on the calling thread.
+     *
+     * @return true if the video reached READY
+     */
+    static boolean runJob(int videoId, String inputPath, String outputDir, Mode mode) {
+        JobStats stats = new JobStats(videoId, mode);
+        lastJobStats.put(videoId, stats);
+        boolean ready = false;
+
+        try {
+            System.out.println("Starting " + mode + " transcoding for video ID: " + videoId);
+            updateStatus(videoId, "PROCESSING");
+
+            File inputFile = new File(inputPath);
+            if (!inputFile.exists()) {
+                System.err.println("Input file not found: " + inputPath);
+                updateStatus(videoId, "ERROR");
+                return false;
+            }
+
+            File outputDirectory = new File(outputDir);
+            if (!outputDirectory.exists()) {
+                outputDirectory.mkdirs();
+            }
+
+            String baseFilename = inputFile.getName().replaceFirst("[.][^.]+$", "");
+            String dashOutputPath = outputDir + File.separator + "manifest.mpd";
+
+            // Extract real duration from video
+            Integer realDuration = extractDuration(inputPath);
+            stats.setDurationSeconds(realDuration);
+            if (realDuration != null) {
+                VideoDAO.updateDuration(videoId, realDuration);
+                System.out.println("Video duration detected: " + realDuration + " seconds");
+            }
+
+            // Generate thumbnail
+            generateThumbnail(inputPath, outputDir, videoId);
+
+            boolean attempted = false;
+            if (mode == Mode.SINGLE_PASS) {
+                attempted = true;
+                ready = transcodeSinglePass(videoId, inputPath, dashOutputPath, stats);
+            } else if (mode == Mode.CHUNKED && ChunkedEncoder.isWorthChunking(realDuration)) {
+                attempted = true;
+                ready = transcodeChunked(videoId, inputPath, outputDir, baseFilename, dashOutputPath, stats);
+            }
+            if (attempted && !ready) {
+                System.err.println(mode + " transcoding failed for video ID: " + videoId +
+                        ", falling back to progressive mode");
+            }
+            if (!ready) {
+                ready = transcodeProgressive(videoId, inputPath, outputDir, baseFilename, dashOutputPath, stats);
+            }
+
+        } catch (Exception e) {
+            System.err.println("Error during transcoding: " + e.getMessage());
+            e.printStackTrace();
+            updateStatus(videoId, "ERROR");
+        } finally {
+            stats.finish();
+            System.out.println(String.format("Transcoding job for video ID %d (%s): %.1fs wall, %.1fs ffmpeg CPU",
+                    videoId, mode, stats.getWallMillis() / 1000.0, stats.getCpuMillis() / 1000.0));
+        }
+        return ready;
+    }
+
+    private static boolean transcodeProgressive(int videoId, String inputPath, String outputDir,
+                                             String baseFilename, String dashOutputPath, JobStats stats) {
+        // Progressive transcoding: 360p first for quick playback
+        stats.beginStage("360p", 0, 3);
+        boolean q360 = transcode360p(inputPath, outputDir, baseFilename, stats);
+
+        if (q360) {
+            // Generate initial manifest with 360p only
+            boolean dash360 = generatePartialDashManifest(outputDir, baseFilename, dashOutputPath, "360p", stats);
+            ManifestCache.invalidate(videoId);
+            if (dash360) {
+                VideoDAO.updateProcessedPath(videoId, "/tmp/vidstream/videos/processed/" + videoId);
+                updateStatus(videoId, "PARTIAL_READY");
+                System.out.println("360p transcoding completed for video ID: " + videoId + " - Video is playable");
+            }
+
+            // Continue with 720p
+            stats.beginStage("720p", 1, 3);
+            boolean q720 = transcode720p(inputPath, outputDir, baseFilename, stats);
+            if (q720) {
+                generatePartialDashManifest(outputDir, baseFilename, dashOutputPath, "360p,720p", stats);
+                ManifestCache.invalidate(videoId);
+                System.out.println("720p transcoding completed for video ID: " + videoId);
+            }
+
+            // Finally 1080p
+            stats.beginStage("1080p", 2, 3);
+            boolean q1080 = transcode1080p(inputPath, outputDir, baseFilename, stats);
+            if (q1080) {
+                // Generate final manifest with all qualities that were produced
+                boolean dashSuccess = generateManifestWith1080p(outputDir, baseFilename, dashOutputPath, q720, stats);
+                ManifestCache.invalidate(videoId);
+                if (dashSuccess) {
+                    updateStatus(videoId, "READY");
+                    System.out.println("Transcoding completed (" + (q720 ? "360p+720p+1080p" : "360p+1080p") +
+                            ") for video ID: " + videoId);
+                    return true;
                 }
+                return false;
+            } else {
+                // 1080p failed but 360p (and 720p if it succeeded) available
+                updateStatus(videoId, "READY");
+                System.out.println("Transcoding completed (360p+720p) for video ID: " + videoId);
+                return true;
+            }
+        } else {
+            updateStatus(videoId, "ERROR");
+            System.err.println("360p transcoding failed for video ID: " + videoId);
+            return false;
+        }
+    }
+
+    /**
+     * Same stages and status transitions as transcodeProgressive, but each rendition
+     * is encoded as parallel chunks. Returns false without touching the status if
+     * 360p could not be produced, so the caller can fall back to progressive mode.
+     */
+    private static boolean transcodeChunked(int videoId, String inputPath, String outputDir,
+                                            String baseFilename, String dashOutputPath, JobStats stats) {
+        File workDir = new File(outputDir, "chunks");
+        workDir.mkdirs();
+
+        try {
+            List<File> pieces = ChunkedEncoder.split(inputPath, workDir, stats);
+            if (pieces == null) {
+                System.err.println("Could not split input into chunks for video ID: " + videoId);
+                return false;
+            }
+            System.out.println("Split video ID " + videoId + " into " + pieces.size() + " chunks of ~" +
+                    ChunkedEncoder.CHUNK_SECONDS + "s");
+
+            boolean hasAudio = hasAudioStream(inputPath);
+            String prefix = outputDir + File.separator + baseFilename + "_";
+
+            stats.beginStage("360p", 0, 3);
+            if (!ChunkedEncoder.encodeRendition(pieces, inputPath, hasAudio, workDir,
+                    ChunkedEncoder.R360, prefix + "360p.mp4", stats)) {
+                return false;
+            }
+            boolean dash360 = generatePartialDashManifest(outputDir, baseFilename, dashOutputPath, "360p", stats);
+            ManifestCache.invalidate(videoId);
+            if (dash360) {
+                VideoDAO.updateProcessedPath(videoId, "/tmp/vidstream/videos/processed/" + videoId);
+                updateStatus(videoId, "PARTIAL_READY");
+                System.out.println("360p chunked transcoding completed for video ID: " + videoId + " - Video is playable");
+            }
+
+            stats.beginStage("720p", 1, 3);
+            boolean q720 = ChunkedEncoder.encodeRendition(pieces, inputPath, hasAudio, workDir,
+                    ChunkedEncoder.R720, prefix + "720p.mp4", stats);
+            boolean dash720 = false;
+            if (q720) {
+                dash720 = generatePartialDashManifest(outputDir, baseFilename, dashOutputPath, "360p,720p", stats);
+                ManifestCache.invalidate(videoId);
+                System.out.println("720p chunked transcoding completed for video ID: " + videoId);
+            }
+
+            // Like progressive mode, 1080p is still tried when 720p failed
+            stats.beginStage("1080p", 2, 3);
+            boolean q1080 = ChunkedEncoder.encodeRendition(pieces, inputPath, hasAudio, workDir,
+                    ChunkedEncoder.R1080, prefix + "1080p.mp4", stats);
+            boolean dashSuccess = q1080
+                    ? generateManifestWith1080p(outputDir, baseFilename, dashOutputPath, q720, stats)
+                    : q720 ? dash720 : dash360;
+            ManifestCache.invalidate(videoId);
+            if (dashSuccess) {
+                VideoDAO.updateProcessedPath(videoId, "/tmp/vidstream/videos/processed/" + videoId);
+                updateStatus(videoId, "READY");
+                System.out.println("Chunked transcoding completed (360p" + (q720 ? "+720p" : "") + (q1080 ? "+1080p" : "") +
+                        ") for video ID: " + videoId);
+            }
+            return dashSuccess;
+        } finally {
+            ChunkedEncoder.deleteWorkDir(workDir);
+        }
+    }
 
-            } catch (Exception e) {
-                System.err.println("Error during transcoding: " + e.getMessage());
-                e.printStackTrace();
-                VideoDAO.updateStatus(videoId, "ERROR");
+    /**
+     * Decode the source once and write all renditions plus the DASH manifest from a
+     * single ffmpeg process. There is no intermediate 360p-only stage, so the video
+     * goes straight from PROCESSING to READY.
+     */
+    private static boolean transcodeSinglePass(int videoId, String inputPath, String dashOutputPath,
+                                               JobStats stats) {
+        boolean hasAudio = hasAudioStream(inputPath);
+
+        java.util.List<String> command = new java.util.ArrayList<>();
+        command.add(FFMPEG_PATH);
+        command.add("-benchmark");
+        command.add("-progress");
+        command.add("pipe:1");
+        command.add("-nostats");
+        command.add("-y");
+        command.add("-i");
+        command.add(inputPath);
+
+        // One decode, split into three scaled branches
+        command.add("-filter_complex");
+        command.add("[0:v]split=3[s0][s1][s2];" +
+                "[s0]scale=640:360[v360];" +
+                "[s1]scale=1280:720[v720];" +
+                "[s2]scale=1920:1080[v1080]");
+        command.add("-map");
+        command.add("[v360]");
+        command.add("-map");
+        command.add("[v720]");
+        command.add("-map");
+        command.add("[v1080]");
+
+        // Same audio bitrate ladder as the progressive renditions
+        if (hasAudio) {
+            for (int i = 0; i < 3; i++) {
+                command.add("-map");
+                command.add("0:a:0");
             }
-        });
+        }
+
+        command.add("-c:v");
+        command.add("libx264");
+        command.add("-preset");
+        command.add("fast");
+        command.add("-b:v:0");
+        command.add("800k");
+        command.add("-b:v:1");
+        command.add("2500k");
+        command.add("-b:v:2");
+        command.add("5000k");
+        // Keyframe on every segment boundary so renditions can be switched cleanly
+        command.add("-force_key_frames");
+        command.add("expr:gte(t,n_forced*4)");
+
+        if (hasAudio) {
+            command.add("-c:a");
+            command.add("aac");
+            command.add("-b:a:0");
+            command.add("96k");
+            command.add("-b:a:1");
+            command.add("128k");
+            command.add("-b:a:2");
+            command.add("192k");
+        }
+
+        command.add("-f");
+        command.add("dash");
+        command.add("-seg_duration");
+        command.add("4");
+        command.add("-use_template");
+        command.add("1");
+        command.add("-use_timeline");
+        command.add("1");
+        command.add("-adaptation_sets");
+        command.add(hasAudio ? "id=0,streams=v id=1,streams=a" : "id=0,streams=v");
+        command.add(dashOutputPath);
+
+        stats.beginStage("360p+720p+1080p", 0, 1);
+        boolean success = executeFFmpegCommand(command.toArray(new String[0]), stats);
+        ManifestCache.invalidate(videoId);
+        if (success) {
+            VideoDAO.updateProcessedPath(videoId, "/tmp/vidstream/videos/processed/" + videoId);
+            updateStatus(videoId, "READY");
+            System.out.println("Single-pass transcoding completed for video ID: " + videoId);
+        }
+        return success;
     }
 
     private static boolean generatePartialDashManifest(String outputDir, String baseFilename,
-                                                       String dashOutputPath, String qualities) {
+                                                       String dashOutputPath, String qualities, JobStats stats) {
         // Generate DASH manifest with only available qualities
         // qualities format: "360p" or "360p,720p" or "360p,720p,1080p"
         String[] qualityList = qualities.split(",");
@@ -108,6 +556,7 @@ public class TranscodingService {
             // Build FFmpeg command for partial manifest
             java.util.List<String> command = new java.util.ArrayList<>();
             command.add(FFMPEG_PATH);
+            command.add("-benchmark");
 
             for (String input : inputs) {
                 command.add("-i");
@@ -166,7 +615,7 @@ public class TranscodingService {
             command.add(dashOutputPath);
             command.add("-y");
 
-            return executeFFmpegCommand(command.toArray(new String[0]));
+            return executeFFmpegCommand(command.toArray(new String[0]), stats);
         } catch (Exception e) {
             System.err.println("Error generating partial DASH manifest: " + e.getMessage());
             e.printStackTrace();
@@ -174,10 +623,11 @@ public class TranscodingService {
         }
     }
 
-    private static boolean transcode360p(String inputPath, String outputDir, String baseFilename) {
+    private static boolean transcode360p(String inputPath, String outputDir, String baseFilename,
+                                         JobStats stats) {
         String outputPath = outputDir + File.separator + baseFilename + "_360p.mp4";
         String[] command = {
-            FFMPEG_PATH, "-i", inputPath,
+            FFMPEG_PATH, "-benchmark", "-progress", "pipe:1", "-nostats", "-i", inputPath,
             "-vf", "scale=640:360",
             "-c:v", "libx264",
             "-b:v", "800k",
@@ -187,13 +637,14 @@ public class TranscodingService {
             outputPath,
             "-y"
         };
-        return executeFFmpegCommand(command);
+        return executeFFmpegCommand(command, stats);
     }
 
-    private static boolean transcode720p(String inputPath, String outputDir, String baseFilename) {
+    private static boolean transcode720p(String inputPath, String outputDir, String baseFilename,
+                                         JobStats stats) {
         String outputPath = outputDir + File.separator + baseFilename + "_720p.mp4";
         String[] command = {
-            FFMPEG_PATH, "-i", inputPath,
+            FFMPEG_PATH, "-benchmark", "-progress", "pipe:1", "-nostats", "-i", inputPath,
             "-vf", "scale=1280:720",
             "-c:v", "libx264",
             "-b:v", "2500k",
@@ -203,13 +654,14 @@ public class TranscodingService {
             outputPath,
             "-y"
         };
-        return executeFFmpegCommand(command);
+        return executeFFmpegCommand(command, stats);
     }
 
-    private static boolean transcode1080p(String inputPath, String outputDir, String baseFilename) {
+    private static boolean transcode1080p(String inputPath, String outputDir, String baseFilename,
+                                         JobStats stats) {
         String outputPath = outputDir + File.separator + baseFilename + "_1080p.mp4";
         String[] command = {
-            FFMPEG_PATH, "-i", inputPath,
+            FFMPEG_PATH, "-benchmark", "-progress", "pipe:1", "-nostats", "-i", inputPath,
             "-vf", "scale=1920:1080",
             "-c:v", "libx264",
             "-b:v", "5000k",
@@ -219,10 +671,22 @@ public class TranscodingService {
             outputPath,
             "-y"
         };
-        return executeFFmpegCommand(command);
+        return executeFFmpegCommand(command, stats);
+    }
+
+    /**
+     * Final manifest once 1080p is done: all three renditions, or 360p and 1080p
+     * when 720p could not be produced.
+     */
+    private static boolean generateManifestWith1080p(String outputDir, String baseFilename, String manifestPath,
+                                                     boolean has720p, JobStats stats) {
+        return has720p
+                ? generateDashManifest(outputDir, baseFilename, manifestPath, stats)
+                : generatePartialDashManifest(outputDir, baseFilename, manifestPath, "360p,1080p", stats);
     }
 
-    private static boolean generateDashManifest(String outputDir, String baseFilename, String manifestPath) {
+    private static boolean generateDashManifest(String outputDir, String baseFilename, String manifestPath,
+                                                JobStats stats) {
         String input360 = outputDir + File.separator + baseFilename + "_360p.mp4";
         String input720 = outputDir + File.separator + baseFilename + "_720p.mp4";
         String input1080 = outputDir + File.separator + baseFilename + "_1080p.mp4";
@@ -232,6 +696,7 @@ public class TranscodingService {
 
         java.util.List<String> command = new java.util.ArrayList<>();
         command.add(FFMPEG_PATH);
+        command.add("-benchmark");
         command.add("-i");
         command.add(input360);
         command.add("-i");
@@ -280,7 +745,7 @@ public class TranscodingService {
         command.add(manifestPath);
         command.add("-y");
 
-        return executeFFmpegCommand(command.toArray(new String[0]));
+        return executeFFmpegCommand(command.toArray(new String[0]), stats);
     }
     
     private static boolean hasAudioStream(String videoPath) {
@@ -303,16 +768,67 @@ public class TranscodingService {
     }
 
     private static boolean executeFFmpegCommand(String[] command) {
+        return executeFFmpegCommand(command, null);
+    }
+
+    /**
+     * Run ffmpeg, echoing its output. When stats is given and the command was run with
+     * -benchmark, the user+system CPU time reported by ffmpeg is added to it.
+     */
+    static boolean executeFFmpegCommand(String[] command, JobStats stats) {
+        if (stopping) {
+            return false;
+        }
         ProcessBuilder pb = new ProcessBuilder(command);
         pb.redirectErrorStream(true);
 
+        Process process = null;
         try {
-            Process process = pb.start();
+            process = pb.start();
+            processes.add(process);
+            if (stopping) {
+                // stopProcesses() ran while this one was starting
+                process.destroyForcibly();
+            }
 
             BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
             String line;
+            long lastOutMicros = 0;
+            long lastFrame = 0;
+            boolean microsKeySeen = false;
             while ((line = reader.readLine()) != null) {
+                Matcher progress = PROGRESS_LINE.matcher(line);
+                if (progress.matches()) {
+                    // Report deltas so parallel processes of one stage add up
+                    String key = progress.group(1);
+                    long value = parseProgressValue(progress.group(2));
+                    if (stats != null && value >= 0) {
+                        // Older ffmpeg only writes out_time_ms, which is also in microseconds
+                        if (key.equals("out_time_us") || (key.equals("out_time_ms") && !microsKeySeen)) {
+                            microsKeySeen |= key.equals("out_time_us");
+                            if (value > lastOutMicros) {
+                                stats.addProgress(value - lastOutMicros, 0);
+                                lastOutMicros = value;
+                            }
+                        } else if (key.equals("frame") && value > lastFrame) {
+                            stats.addProgress(0, value - lastFrame);
+                            lastFrame = value;
+                        }
+                    }
+                    if (stats != null && key.equals("progress")) {
+                        // Last key of each progress block
+                        stats.publishProgress();
+                    }
+                    continue;
+                }
                 System.out.println("[FFmpeg] " + line);
+                if (stats != null) {
+                    Matcher bench = BENCH_LINE.matcher(line);
+                    if (bench.find()) {
+                        double cpuSeconds = Double.parseDouble(bench.group(1)) + Double.parseDouble(bench.group(2));
+                        stats.addCpuMillis(Math.round(cpuSeconds * 1000));
+                    }
+                }
             }
 
             int exitCode = process.waitFor();
@@ -328,10 +844,47 @@ public class TranscodingService {
             System.err.println("Error executing FFmpeg: " + e.getMessage());
             e.printStackTrace();
             return false;
+        } finally {
+            if (process != null) {
+                processes.remove(process);
+            }
+        }
+    }
+
+    /**
+     * Kill every running ffmpeg process and refuse to start new ones, so the jobs
+     * running in this JVM end promptly (as failures their worker re-queues).
+     * Used on undeploy, before another deployment can claim the same jobs.
+     */
+    static void stopProcesses() {
+        stopping = true;
+        for (Process process : processes) {
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * Allow ffmpeg to be started again after stopProcesses().
+     */
+    static void resumeProcesses() {
+        stopping = false;
+    }
+
+    static boolean isStopping() {
+        return stopping;
+    }
+
+    private static long parseProgressValue(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            // "N/A" before the first frame, or a non-numeric key such as speed=1.5x
+            return -1;
         }
     }
 
-    private static Integer extractDuration(String inputPath) {
+    static Integer extractDuration(String inputPath) {
         String[] command = {
             "ffprobe",
             "-v", "error",
@@ -421,6 +974,6 @@ public class TranscodingService {
     }
 
     public static void shutdown() {
-        executor.shutdown();
+        TranscodingScheduler.shutdown();
     }
 }
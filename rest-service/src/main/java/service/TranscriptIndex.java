@@ -0,0 +1,333 @@
+package service;
+
+import database.CourseDAO;
+import database.TranscriptDAO;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over each course's transcript segments, for keyword
+ * and phrase queries that resolve to a playback time. A course's index is built
+ * from transcript_segments on first use and kept for the MAX_COURSES most
+ * recently searched courses; it is dropped when the course is reprocessed or
+ * deleted. Words are normalized like chat questions (case, accents, punctuation).
+ */
+public class TranscriptIndex {
+
+    private static final int MAX_COURSES =
+        System.getenv("TRANSCRIPT_INDEX_MAX_COURSES") != null ?
+        Integer.parseInt(System.getenv("TRANSCRIPT_INDEX_MAX_COURSES")) : 50;
+
+    // A quoted phrase, or a single word
+    private static final Pattern QUERY_TERM = Pattern.compile("\"([^\"]*)\"|(\\S+)");
+
+    private static final AtomicLong queries = new AtomicLong();
+    private static final AtomicLong loads = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+    private static final AtomicLong queryNanos = new AtomicLong();
+
+    // Bumped on every invalidation so an index loaded from an old transcript is not kept
+    private static final AtomicLong epoch = new AtomicLong();
+
+    private static final LinkedHashMap<Integer, CourseIndex> indexes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, CourseIndex> eldest) {
+            if (size() > MAX_COURSES) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private static final ConcurrentHashMap<Integer, CompletableFuture<CourseIndex>> loading = new ConcurrentHashMap<>();
+
+    public static class Hit {
+        public final int segmentIndex;
+        public final double startTime;
+        public final double endTime;
+        public final String text;
+        // Matched query words, with a phrase counting once per word
+        public final int score;
+
+        Hit(int segmentIndex, double startTime, double endTime, String text, int score) {
+            this.segmentIndex = segmentIndex;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.text = text;
+            this.score = score;
+        }
+    }
+
+    public static class Result {
+        // Video the transcript belongs to, or null
+        public final Integer videoId;
+        public final List<Hit> hits;
+
+        Result(Integer videoId, List<Hit> hits) {
+            this.videoId = videoId;
+            this.hits = hits;
+        }
+    }
+
+    static class CourseIndex {
+        final Integer videoId;
+        final double[] starts;
+        final double[] ends;
+        final String[] texts;
+        // Position of each segment's first word in the course-wide word sequence
+        final int[] firstWord;
+        // Word -> ascending positions in the word sequence
+        final Map<String, int[]> postings;
+
+        CourseIndex(Integer videoId, List<TranscriptDAO.Segment> segments) {
+            this.videoId = videoId;
+            int count = segments.size();
+            starts = new double[count];
+            ends = new double[count];
+            texts = new String[count];
+            firstWord = new int[count];
+
+            Map<String, int[]> building = new HashMap<>();
+            Map<String, Integer> sizes = new HashMap<>();
+            int position = 0;
+            for (int i = 0; i < count; i++) {
+                TranscriptDAO.Segment segment = segments.get(i);
+                starts[i] = segment.startTime;
+                ends[i] = segment.endTime;
+                texts[i] = segment.text;
+                firstWord[i] = position;
+                for (String word : words(segment.text)) {
+                    int size = sizes.getOrDefault(word, 0);
+                    int[] positions = building.get(word);
+                    if (positions == null) {
+                        positions = new int[4];
+                    } else if (size == positions.length) {
+                        positions = Arrays.copyOf(positions, size * 2);
+                    }
+                    positions[size] = position++;
+                    building.put(word, positions);
+                    sizes.put(word, size + 1);
+                }
+            }
+
+            postings = new HashMap<>(building.size() * 4 / 3 + 1);
+            for (Map.Entry<String, int[]> entry : building.entrySet()) {
+                postings.put(entry.getKey(), Arrays.copyOf(entry.getValue(), sizes.get(entry.getKey())));
+            }
+        }
+
+        int segmentAt(int position) {
+            int index = Arrays.binarySearch(firstWord, position);
+            if (index < 0) {
+                return -index - 2;
+            }
+            // Segments without words share a first position with the next one
+            while (index + 1 < firstWord.length && firstWord[index + 1] == position) {
+                index++;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Find the transcript segments matching a query. Quoted parts are matched as
+     * phrases (which may run across segments and are reported at their first
+     * word), other words individually. Segments are ranked by matched words,
+     * earlier segments first on ties. The result also carries the course's video
+     * id, from the same index the hits came from.
+     */
+    public static Result search(int courseId, String query, int limit) {
+        CourseIndex index = get(courseId);
+        long started = System.nanoTime();
+        queries.incrementAndGet();
+        Result result = search(index, query, limit);
+        queryNanos.addAndGet(System.nanoTime() - started);
+        return result;
+    }
+
+    static Result search(CourseIndex index, String query, int limit) {
+
+        int[] scores = new int[index.texts.length];
+        int[] lastTerm = new int[index.texts.length];
+        List<Integer> matched = new ArrayList<>();
+        int term = 0;
+        Matcher matcher = QUERY_TERM.matcher(query);
+        while (matcher.find()) {
+            String[] words = words(matcher.group(1) != null ? matcher.group(1) : matcher.group(2));
+            if (words.length == 0) {
+                continue;
+            }
+            term++;
+            // Walk the rarest word of a phrase and check the others around it
+            int anchor = 0;
+            for (int k = 0; k < words.length; k++) {
+                int[] positions = index.postings.get(words[k]);
+                if (positions == null) {
+                    anchor = -1;
+                    break;
+                }
+                if (positions.length < index.postings.get(words[anchor]).length) {
+                    anchor = k;
+                }
+            }
+            if (anchor < 0) {
+                continue;
+            }
+            for (int position : index.postings.get(words[anchor])) {
+                int start = position - anchor;
+                if (start < 0 || !containsPhrase(index, words, start, anchor)) {
+                    continue;
+                }
+                int segment = index.segmentAt(start);
+                // A term scores once per segment however often it occurs there
+                if (lastTerm[segment] != term) {
+                    lastTerm[segment] = term;
+                    if (scores[segment] == 0) {
+                        matched.add(segment);
+                    }
+                    scores[segment] += words.length;
+                }
+            }
+        }
+
+        // Keep only the best limit segments: best score, then earliest
+        Comparator<Integer> rank = (a, b) -> scores[a] != scores[b] ?
+                Integer.compare(scores[b], scores[a]) : Integer.compare(a, b);
+        PriorityQueue<Integer> best = new PriorityQueue<>(Math.max(1, limit), rank.reversed());
+        for (int segment : matched) {
+            best.add(segment);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<Integer> top = new ArrayList<>(best);
+        top.sort(rank);
+
+        List<Hit> hits = new ArrayList<>();
+        for (int segment : top) {
+            hits.add(new Hit(segment, index.starts[segment], index.ends[segment], index.texts[segment], scores[segment]));
+        }
+        return new Result(index.videoId, hits);
+    }
+
+    private static boolean containsPhrase(CourseIndex index, String[] words, int start, int skip) {
+        for (int k = 0; k < words.length; k++) {
+            if (k == skip) {
+                continue;
+            }
+            if (Arrays.binarySearch(index.postings.get(words[k]), start + k) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String[] words(String text) {
+        String normalized = AnswerCache.fingerprint(text);
+        return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+    }
+
+    private static CourseIndex get(int courseId) {
+        synchronized (indexes) {
+            CourseIndex index = indexes.get(courseId);
+            if (index != null) {
+                return index;
+            }
+        }
+
+        // Concurrent first searches of a course share one load
+        CompletableFuture<CourseIndex> load = new CompletableFuture<>();
+        CompletableFuture<CourseIndex> existing = loading.putIfAbsent(courseId, load);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        long loadEpoch = epoch.get();
+        try {
+            CourseDAO.Course course = CourseDAO.getCourseById(courseId);
+            CourseIndex index;
+            // Courses without a transcript are kept as empty indexes; a failed read is not kept
+            boolean keep = course != null;
+            try {
+                index = new CourseIndex(course != null ? course.videoId : null, TranscriptDAO.getSegments(courseId));
+            } catch (SQLException | ClassNotFoundException e) {
+                System.err.println("Error loading transcript index for course " + courseId + ": " + e.getMessage());
+                index = new CourseIndex(course != null ? course.videoId : null, new ArrayList<>());
+                keep = false;
+            }
+            loads.incrementAndGet();
+            synchronized (indexes) {
+                if (keep && epoch.get() == loadEpoch && MAX_COURSES > 0) {
+                    indexes.put(courseId, index);
+                }
+            }
+            load.complete(index);
+            return index;
+        } catch (RuntimeException | Error e) {
+            // Complete the shared load whatever happens, or concurrent searches block forever
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(courseId, load);
+        }
+    }
+
+    public static void invalidateCourse(int courseId) {
+        synchronized (indexes) {
+            epoch.incrementAndGet();
+            indexes.remove(courseId);
+        }
+    }
+
+    public static int size() {
+        synchronized (indexes) {
+            return indexes.size();
+        }
+    }
+
+    public static int getMaxCourses() {
+        return MAX_COURSES;
+    }
+
+    public static long getQueries() {
+        return queries.get();
+    }
+
+    public static long getLoads() {
+        return loads.get();
+    }
+
+    public static long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Average time a query took on a loaded index, in microseconds.
+     */
+    public static double getAvgQueryMicros() {
+        long count = queries.get();
+        return count > 0 ? queryNanos.get() / 1000.0 / count : 0.0;
+    }
+}
@@ -0,0 +1,146 @@
+package service;
+
+import database.TranscriptDAO;
+import util.JsonReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads /api/stt/transcribe responses in one pass: the full text, the language,
+ * and each segment's times, text and detected language. Whisper's per-segment
+ * token ids and scores make up most of a long response and are skipped without
+ * being built.
+ */
+class TranscriptParser {
+
+    static class ParsedTranscript {
+        String language;
+        String text;
+        double duration;
+        final List<TranscriptDAO.Segment> segments = new ArrayList<>();
+        // Seconds of speech per detected language, in order of first appearance
+        final Map<String, Double> languageSeconds = new LinkedHashMap<>();
+
+        /**
+         * Share of speech time per language, e.g. {"en":0.75,"es":0.25}.
+         */
+        String languageDistributionJson() {
+            double total = 0;
+            for (double seconds : languageSeconds.values()) {
+                total += seconds;
+            }
+            Map<String, Object> shares = new LinkedHashMap<>();
+            for (Map.Entry<String, Double> entry : languageSeconds.entrySet()) {
+                shares.put(entry.getKey(), total > 0 ? Math.round(entry.getValue() / total * 1000) / 1000.0 : 0.0);
+            }
+            return JsonReader.toJson(shares);
+        }
+    }
+
+    /**
+     * @throws IOException if the STT service reported a failure or the response is not valid JSON
+     */
+    static ParsedTranscript parse(String json) throws IOException {
+        ParsedTranscript transcript = new ParsedTranscript();
+        Boolean success = null;
+        String error = null;
+
+        try {
+            JsonReader reader = JsonReader.cursor(json);
+            reader.beginObject();
+            String key;
+            while ((key = reader.nextKey()) != null) {
+                switch (key) {
+                    case "success":
+                        Object value = reader.nextValue();
+                        success = value instanceof Boolean ? (Boolean) value : null;
+                        break;
+                    case "error":
+                        error = reader.nextString();
+                        break;
+                    case "language":
+                        transcript.language = reader.nextString();
+                        break;
+                    case "text":
+                        transcript.text = reader.nextString();
+                        break;
+                    case "duration":
+                        Double duration = reader.nextNumber();
+                        transcript.duration = duration != null ? duration : 0;
+                        break;
+                    case "segments":
+                        readSegments(reader, transcript);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid transcription response: " + e.getMessage(), e);
+        }
+
+        if (Boolean.FALSE.equals(success)) {
+            throw new IOException("Transcription failed: " + error);
+        }
+
+        // Segments without a detected language count for the transcript's language
+        for (TranscriptDAO.Segment segment : transcript.segments) {
+            String lang = segment.lang != null ? segment.lang : transcript.language;
+            if (lang != null) {
+                transcript.languageSeconds.merge(lang, Math.max(0, segment.endTime - segment.startTime), Double::sum);
+            }
+        }
+
+        if (transcript.text == null && !transcript.segments.isEmpty()) {
+            StringBuilder text = new StringBuilder();
+            for (TranscriptDAO.Segment segment : transcript.segments) {
+                if (text.length() > 0) {
+                    text.append(' ');
+                }
+                text.append(segment.text);
+            }
+            transcript.text = text.toString();
+        }
+        return transcript;
+    }
+
+    private static void readSegments(JsonReader reader, ParsedTranscript transcript) {
+        reader.beginArray();
+        while (reader.nextElement()) {
+            Double start = null;
+            Double end = null;
+            String text = null;
+            String lang = null;
+
+            reader.beginObject();
+            String key;
+            while ((key = reader.nextKey()) != null) {
+                switch (key) {
+                    case "start":
+                        start = reader.nextNumber();
+                        break;
+                    case "end":
+                        end = reader.nextNumber();
+                        break;
+                    case "text":
+                        text = reader.nextString();
+                        break;
+                    case "detected_lang":
+                        lang = reader.nextString();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+
+            if (start != null && end != null && text != null && !text.trim().isEmpty()) {
+                transcript.segments.add(new TranscriptDAO.Segment(
+                        transcript.segments.size(), start, end, text.trim(), lang));
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+
+/**
+ * Serves static media files (DASH segments) with HTTP caching and byte-range support.
+ * Handles If-None-Match / If-Modified-Since (304), single byte ranges (206/416)
+ * and If-Range, and streams the body through FileChannel.transferTo.
+ */
+public class SegmentStreamer {
+
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE_CACHE_CONTROL = "no-cache";
+
+    /**
+     * Build the response for a file on disk.
+     *
+     * @param immutable true when the file will never change again (completed rendition),
+     *                  which lets players and proxies cache it without revalidating
+     */
+    public static Response serve(File file, String contentType, boolean immutable,
+                                 HttpServletRequest request) {
+        long length = file.length();
+        // HTTP dates have one-second resolution
+        long lastModified = (file.lastModified() / 1000) * 1000;
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(file.lastModified()) + "\"";
+        String cacheControl = immutable ? IMMUTABLE_CACHE_CONTROL : REVALIDATE_CACHE_CONTROL;
+
+        if (isNotModified(request, etag, lastModified)) {
+            return withCommonHeaders(Response.notModified(), etag, lastModified, cacheControl).build();
+        }
+
+        String rangeHeader = request.getHeader("Range");
+        if (rangeHeader != null && isRangeApplicable(request, etag, lastModified)) {
+            long[] range = parseRange(rangeHeader, length);
+            if (range == null) {
+                return withCommonHeaders(Response.status(416), etag, lastModified, cacheControl)
+                        .header("Content-Range", "bytes */" + length)
+                        .build();
+            }
+            if (range.length == 2) {
+                long start = range[0];
+                long count = range[1] - range[0] + 1;
+                return withCommonHeaders(Response.status(206), etag, lastModified, cacheControl)
+                        .entity(transfer(file, start, count))
+                        .type(contentType)
+                        .header("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + length)
+                        .header("Content-Length", String.valueOf(count))
+                        .build();
+            }
+            // Empty array: multi-range or unsupported unit, fall through to a full response
+        }
+
+        return withCommonHeaders(Response.ok(), etag, lastModified, cacheControl)
+                .entity(transfer(file, 0, length))
+                .type(contentType)
+                .header("Content-Length", String.valueOf(length))
+                .build();
+    }
+
+    private static Response.ResponseBuilder withCommonHeaders(Response.ResponseBuilder builder, String etag,
+                                                              long lastModified, String cacheControl) {
+        return builder
+                .header("ETag", etag)
+                .lastModified(new Date(lastModified))
+                .header("Cache-Control", cacheControl)
+                .header("Accept-Ranges", "bytes")
+                .header("Access-Control-Allow-Origin", "*")
+                .header("Access-Control-Expose-Headers", "Content-Range, Content-Length, ETag");
+    }
+
+    /**
+     * If-None-Match takes precedence over If-Modified-Since (RFC 9110 section 13.2.2).
+     */
+    private static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return matchesEtag(ifNoneMatch, etag);
+        }
+        long ifModifiedSince = readDateHeader(request, "If-Modified-Since");
+        return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+    }
+
+    /**
+     * A Range request only applies if its If-Range validator (when present) still matches.
+     */
+    private static boolean isRangeApplicable(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        long date = readDateHeader(request, "If-Range");
+        return date >= 0 && lastModified == date;
+    }
+
+    /**
+     * Whether an If-None-Match header value matches the given entity tag.
+     */
+    public static boolean matchesEtag(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long readDateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parse a single "bytes=" range.
+     *
+     * @return {start, end} inclusive; an empty array if the header should be ignored
+     *         (multiple ranges or another unit); null if the range is unsatisfiable
+     */
+    static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=")) {
+            return new long[0];
+        }
+        String spec = header.substring(6).trim();
+        if (spec.contains(",")) {
+            return new long[0];
+        }
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+
+        try {
+            String startStr = spec.substring(0, dash).trim();
+            String endStr = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+
+            if (startStr.isEmpty()) {
+                // Suffix range: last N bytes
+                long suffix = Long.parseLong(endStr);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(startStr);
+                end = endStr.isEmpty() ? length - 1 : Math.min(Long.parseLong(endStr), length - 1);
+            }
+
+            if (start < 0 || start >= length || end < start) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stream [start, start + count) of the file. transferTo lets the JDK move the bytes
+     * without copying them through a user-space byte[] when the target allows it.
+     */
+    private static StreamingOutput transfer(File file, long start, long count) {
+        return (OutputStream out) -> {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(out);
+                long position = start;
+                long remaining = count;
+                while (remaining > 0) {
+                    long sent = channel.transferTo(position, remaining, target);
+                    if (sent <= 0) {
+                        break;
+                    }
+                    position += sent;
+                    remaining -= sent;
+                }
+                out.flush();
+            } catch (IOException e) {
+                // Players routinely abort segment downloads when switching quality or seeking
+                System.err.println("Segment transfer aborted for " + file.getName() + ": " + e.getMessage());
+            }
+        };
+    }
+}
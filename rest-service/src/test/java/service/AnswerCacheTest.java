@@ -0,0 +1,55 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// The cache is static, so every test uses its own course id
+class AnswerCacheTest {
+
+    @Test
+    void reusesAnswersForRephrasedQuestions() {
+        AnswerCache.put(201, "en", "What's the exam about?", "{\"answer\":\"a\"}", 1200, AnswerCache.currentEpoch());
+
+        assertEquals("{\"answer\":\"a\"}", AnswerCache.get(201, "en", "whats the EXAM about"));
+        assertNull(AnswerCache.get(201, "es", "What's the exam about?"));
+        assertNull(AnswerCache.get(202, "en", "What's the exam about?"));
+    }
+
+    @Test
+    void dropsAnswersGeneratedBeforeAnInvalidation() {
+        long epoch = AnswerCache.currentEpoch();
+        // The course is reprocessed while the answer is being generated
+        AnswerCache.invalidateCourse(203);
+        AnswerCache.put(203, "en", "question", "{\"answer\":\"stale\"}", 1000, epoch);
+
+        assertNull(AnswerCache.get(203, "en", "question"));
+
+        AnswerCache.put(203, "en", "question", "{\"answer\":\"fresh\"}", 1000, AnswerCache.currentEpoch());
+        assertEquals("{\"answer\":\"fresh\"}", AnswerCache.get(203, "en", "question"));
+    }
+
+    @Test
+    void invalidationDropsOnlyThatCourse() {
+        AnswerCache.put(204, "en", "question", "{\"answer\":\"204\"}", 1000, AnswerCache.currentEpoch());
+        AnswerCache.put(205, "en", "question", "{\"answer\":\"205\"}", 1000, AnswerCache.currentEpoch());
+
+        AnswerCache.invalidateCourse(204);
+
+        assertNull(AnswerCache.get(204, "en", "question"));
+        assertEquals("{\"answer\":\"205\"}", AnswerCache.get(205, "en", "question"));
+    }
+
+    @Test
+    void fingerprintIgnoresCaseAccentsAndPunctuation() {
+        assertEquals("que es la energia", AnswerCache.fingerprint("¿Qué es   la energía?"));
+        assertEquals("whats the exam about", AnswerCache.fingerprint("What’s the exam about?"));
+    }
+
+    @Test
+    void marksResponsesAsCached() {
+        assertEquals("{\"cached\":true,\"answer\":\"a\"}", AnswerCache.markCached("{\"answer\":\"a\"}", true));
+        assertEquals("{\"cached\":false}", AnswerCache.markCached("{}", false));
+    }
+}
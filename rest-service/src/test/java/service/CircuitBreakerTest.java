@@ -0,0 +1,123 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static long acquire(CircuitBreaker breaker) {
+        long permit = breaker.tryAcquire();
+        assertNotEquals(CircuitBreaker.REJECTED, permit);
+        return permit;
+    }
+
+    private static void fail(CircuitBreaker breaker, int times) {
+        for (int i = 0; i < times; i++) {
+            breaker.onFailure(acquire(breaker));
+        }
+    }
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 3, 60000);
+
+        fail(breaker, 2);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        fail(breaker, 1);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+        assertEquals(1, breaker.getRejections());
+        assertEquals(1, breaker.getOpenCount());
+        assertTrue(breaker.getRetryAfterSeconds() > 1);
+    }
+
+    @Test
+    void successResetsTheFailureCount() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 3, 60000);
+
+        fail(breaker, 2);
+        breaker.onSuccess(acquire(breaker));
+        fail(breaker, 2);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(1, breaker.getSuccesses());
+        assertEquals(4, breaker.getFailures());
+    }
+
+    @Test
+    void letsOneProbeThroughOnceOpenTimeHasPassed() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 0);
+        fail(breaker, 1);
+
+        long probe = acquire(breaker);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+
+        breaker.onSuccess(probe);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        acquire(breaker);
+        acquire(breaker);
+    }
+
+    @Test
+    void failedProbeOpensAgain() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 5, 0);
+        fail(breaker, 5);
+
+        breaker.onFailure(acquire(breaker));
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getOpenCount());
+    }
+
+    @Test
+    void releasedProbeLetsAnotherThrough() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 0);
+        fail(breaker, 1);
+
+        breaker.release(acquire(breaker));
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        acquire(breaker);
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+    }
+
+    @Test
+    void slowSuccessFromBeforeOpeningDoesNotCloseTheCircuit() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 2, 60000);
+        long slow = acquire(breaker);
+        fail(breaker, 2);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        breaker.onSuccess(slow);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+        assertEquals(1, breaker.getSuccesses());
+    }
+
+    @Test
+    void stragglerOutcomesDoNotSettleTheHalfOpenState() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 2, 0);
+        long releasedStraggler = acquire(breaker);
+        long failedStraggler = acquire(breaker);
+        fail(breaker, 2);
+
+        long probe = acquire(breaker);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        // Calls started while closed finish while the probe is still out
+        breaker.release(releasedStraggler);
+        breaker.onFailure(failedStraggler);
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+
+        breaker.onSuccess(probe);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
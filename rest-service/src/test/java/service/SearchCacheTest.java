@@ -0,0 +1,148 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The cache is static, so every test uses its own course id
+class SearchCacheTest {
+
+    @Test
+    void servesRepeatedSearchesFromTheCache() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+
+        String first = SearchCache.get(101, "Neural  Networks ", 5, null,
+                () -> "result " + loads.incrementAndGet());
+        String second = SearchCache.get(101, "neural networks", 5, null,
+                () -> "result " + loads.incrementAndGet());
+
+        assertEquals("result 1", first);
+        assertEquals("result 1", second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void keysOnResultCountAndLanguage() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+
+        SearchCache.get(102, "query", 5, null, () -> "a" + loads.incrementAndGet());
+        SearchCache.get(102, "query", 10, null, () -> "b" + loads.incrementAndGet());
+        SearchCache.get(102, "query", 5, "es", () -> "c" + loads.incrementAndGet());
+
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void doesNotKeepALoadThatRacedWithInvalidation() throws Exception {
+        String stale = SearchCache.get(103, "query", 5, null, () -> {
+            // The course is reprocessed while this search is in flight
+            SearchCache.invalidateCourse(103);
+            return "stale";
+        });
+        String fresh = SearchCache.get(103, "query", 5, null, () -> "fresh");
+
+        assertEquals("stale", stale);
+        assertEquals("fresh", fresh);
+    }
+
+    @Test
+    void invalidationDropsOnlyThatCourse() throws Exception {
+        SearchCache.get(104, "query", 5, null, () -> "course 104");
+        SearchCache.get(105, "query", 5, null, () -> "course 105");
+
+        SearchCache.invalidateCourse(104);
+
+        assertEquals("reloaded", SearchCache.get(104, "query", 5, null, () -> "reloaded"));
+        assertEquals("course 105", SearchCache.get(105, "query", 5, null, () -> "reloaded"));
+    }
+
+    @Test
+    void doesNotCacheFailures() throws Exception {
+        assertThrows(IOException.class, () -> SearchCache.get(106, "query", 5, null, () -> {
+            throw new IOException("unavailable");
+        }));
+
+        assertEquals("ok", SearchCache.get(106, "query", 5, null, () -> "ok"));
+    }
+
+    @Test
+    void concurrentIdenticalSearchesShareOneLoad() throws Exception {
+        int callers = 8;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        long coalescedBefore = SearchCache.getCoalesced();
+
+        List<Future<String>> results = searchConcurrently(107, callers, () -> {
+            loads.incrementAndGet();
+            release.await();
+            return "shared";
+        }, coalescedBefore, release);
+
+        for (Future<String> result : results) {
+            assertEquals("shared", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(callers - 1, SearchCache.getCoalesced() - coalescedBefore);
+    }
+
+    @Test
+    void leaderFailureReachesEveryWaiter() throws Exception {
+        int callers = 8;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        long coalescedBefore = SearchCache.getCoalesced();
+
+        List<Future<String>> results = searchConcurrently(108, callers, () -> {
+            loads.incrementAndGet();
+            release.await();
+            throw new IOException("unavailable");
+        }, coalescedBefore, release);
+
+        for (Future<String> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, e.getCause());
+        }
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * Start callers identical searches, let the loader finish once all but the
+     * leader are waiting on it, and return the callers' results.
+     */
+    private static List<Future<String>> searchConcurrently(int courseId, int callers, Callable<String> loader,
+                                                           long coalescedBefore, CountDownLatch release)
+            throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> SearchCache.get(courseId, "query", 5, null, loader)));
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (SearchCache.getCoalesced() - coalescedBefore < callers - 1
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertTrue(SearchCache.getCoalesced() - coalescedBefore >= callers - 1);
+            release.countDown();
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
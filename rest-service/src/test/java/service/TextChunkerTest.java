@@ -0,0 +1,147 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextChunkerTest {
+
+    private static List<TextChunker.Chunk> chunk(TextChunker chunker, String text,
+                                                 TextChunker.Timeline timeline) throws IOException {
+        List<TextChunker.Chunk> chunks = new ArrayList<>();
+        int count = chunker.chunk(new StringReader(text), "test", timeline, chunks::add);
+        assertEquals(chunks.size(), count);
+        return chunks;
+    }
+
+    private static String sentences(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append("Sentence number ").append(i).append(" is here. ");
+        }
+        return text.toString();
+    }
+
+    @Test
+    void keepsSentencesWholeWithinTarget() throws IOException {
+        List<TextChunker.Chunk> chunks = chunk(new TextChunker(100, 30, Locale.ROOT), sentences(40), null);
+
+        assertTrue(chunks.size() > 1);
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            TextChunker.Chunk chunk = chunks.get(i);
+            assertEquals(i, chunk.ordinal);
+            assertEquals("test", chunk.source);
+            assertTrue(chunk.text.length() <= 100, chunk.text);
+            assertTrue(chunk.text.startsWith("Sentence number "), chunk.text);
+            assertTrue(chunk.text.endsWith("is here."), chunk.text);
+            for (String sentence : chunk.text.split("(?<=\\.) ")) {
+                seen.add(sentence);
+            }
+        }
+        for (int i = 0; i < 40; i++) {
+            assertTrue(seen.contains("Sentence number " + i + " is here."), "missing sentence " + i);
+        }
+    }
+
+    @Test
+    void startsEachChunkWithTheLastSentenceOfThePrevious() throws IOException {
+        List<TextChunker.Chunk> chunks = chunk(new TextChunker(100, 30, Locale.ROOT), sentences(40), null);
+
+        for (int i = 1; i < chunks.size(); i++) {
+            String previous = chunks.get(i - 1).text;
+            String last = previous.substring(previous.lastIndexOf("Sentence number "));
+            assertTrue(chunks.get(i).text.startsWith(last), chunks.get(i).text);
+            assertTrue(chunks.get(i).startOffset < chunks.get(i - 1).endOffset);
+        }
+    }
+
+    @Test
+    void cutsLongSentencesAtWordBoundaries() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("word").append(i).append(' ');
+        }
+        Set<String> words = new HashSet<>(Arrays.asList(text.toString().trim().split(" ")));
+
+        List<TextChunker.Chunk> chunks = chunk(new TextChunker(50, 0, Locale.ROOT), text.toString(), null);
+
+        assertTrue(chunks.size() > 1);
+        for (TextChunker.Chunk chunk : chunks) {
+            assertTrue(chunk.text.length() <= 50, chunk.text);
+            for (String word : chunk.text.split(" ")) {
+                assertTrue(words.contains(word), "split word " + word);
+            }
+        }
+    }
+
+    @Test
+    void collapsesWhitespace() throws IOException {
+        List<TextChunker.Chunk> chunks = chunk(new TextChunker(100, 0, Locale.ROOT),
+                "  One\n\ttwo   three.\r\n\r\n", null);
+
+        assertEquals(1, chunks.size());
+        assertEquals("One two three.", chunks.get(0).text);
+        assertNull(chunks.get(0).startTime);
+        assertNull(chunks.get(0).startPage);
+    }
+
+    @Test
+    void producesNothingForBlankInput() throws IOException {
+        assertEquals(0, chunk(new TextChunker(100, 10, Locale.ROOT), " \n ", null).size());
+    }
+
+    @Test
+    void mapsChunksToSegmentTimes() throws IOException {
+        String first = "First segment text. ";
+        String second = "Second segment text. ";
+        TextChunker.Timeline timeline = new TextChunker.Timeline();
+        timeline.add(0, 0.0, 4.0);
+        timeline.add(first.length(), 4.0, 9.5);
+
+        List<TextChunker.Chunk> chunks = chunk(new TextChunker(1000, 0, Locale.ROOT), first + second, timeline);
+
+        assertEquals(1, chunks.size());
+        assertEquals(0.0, chunks.get(0).startTime);
+        assertEquals(9.5, chunks.get(0).endTime);
+    }
+
+    @Test
+    void mapsChunksToPages() {
+        TextChunker.PageIndex pages = new TextChunker.PageIndex();
+        List<TextChunker.Chunk> chunks = new ArrayList<>();
+        TextChunker.Feed feed = new TextChunker(40, 0, Locale.ROOT).feed("pdf", null, pages, chunks::add);
+
+        pages.add(feed.length(), 1);
+        feed.append("Page one has a heading without a stop");
+        feed.endSection();
+        pages.add(feed.length(), 2);
+        feed.append("Page two starts here. It goes on.");
+        feed.endSection();
+        feed.finish();
+
+        assertEquals(2, chunks.size());
+        assertEquals("Page one has a heading without a stop", chunks.get(0).text);
+        assertEquals(Integer.valueOf(1), chunks.get(0).startPage);
+        assertEquals(Integer.valueOf(1), chunks.get(0).endPage);
+        assertEquals(Integer.valueOf(2), chunks.get(1).startPage);
+        assertEquals(Integer.valueOf(2), chunks.get(1).endPage);
+    }
+
+    @Test
+    void rejectsNonPositiveTarget() {
+        assertThrows(IllegalArgumentException.class, () -> new TextChunker(0, 0, Locale.ROOT));
+    }
+}
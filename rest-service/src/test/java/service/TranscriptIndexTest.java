@@ -0,0 +1,107 @@
+package service;
+
+import database.TranscriptDAO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TranscriptIndexTest {
+
+    private static TranscriptIndex.CourseIndex index(String... texts) {
+        List<TranscriptDAO.Segment> segments = new ArrayList<>();
+        for (int i = 0; i < texts.length; i++) {
+            segments.add(new TranscriptDAO.Segment(i, i * 10.0, i * 10.0 + 10, texts[i], "en"));
+        }
+        return new TranscriptIndex.CourseIndex(7, segments);
+    }
+
+    private static List<Integer> segments(TranscriptIndex.Result result) {
+        List<Integer> indexes = new ArrayList<>();
+        for (TranscriptIndex.Hit hit : result.hits) {
+            indexes.add(hit.segmentIndex);
+        }
+        return indexes;
+    }
+
+    @Test
+    void matchesPhraseWithinSegment() {
+        TranscriptIndex.Result result = TranscriptIndex.search(
+                index("we start with linear algebra", "then the linear model", "algebra is linear"),
+                "\"linear algebra\"", 5);
+
+        assertEquals(List.of(0), segments(result));
+        assertEquals(7, result.videoId);
+        TranscriptIndex.Hit hit = result.hits.get(0);
+        assertEquals(0.0, hit.startTime);
+        assertEquals(10.0, hit.endTime);
+        assertEquals("we start with linear algebra", hit.text);
+        assertEquals(2, hit.score);
+    }
+
+    @Test
+    void matchesPhraseAcrossSegmentsAtItsFirstWord() {
+        TranscriptIndex.Result result = TranscriptIndex.search(
+                index("the quick brown", "fox jumps over"), "\"brown fox jumps\"", 5);
+
+        assertEquals(List.of(0), segments(result));
+    }
+
+    @Test
+    void requiresPhraseWordsInOrderAndAdjacent() {
+        TranscriptIndex.CourseIndex index = index("the quick brown fox", "fox brown");
+
+        assertTrue(TranscriptIndex.search(index, "\"quick fox\"", 5).hits.isEmpty());
+        assertEquals(List.of(1), segments(TranscriptIndex.search(index, "\"fox brown\"", 5)));
+    }
+
+    @Test
+    void ignoresCaseAccentsAndPunctuation() {
+        TranscriptIndex.Result result = TranscriptIndex.search(
+                index("Le café, c'est ouvert!", "nothing here"), "\"CAFE C'EST\"", 5);
+
+        assertEquals(List.of(0), segments(result));
+    }
+
+    @Test
+    void ranksByMatchedWordsThenEarlierSegment() {
+        TranscriptIndex.CourseIndex index = index(
+                "gradient only",
+                "gradient descent explained",
+                "descent only",
+                "gradient descent again");
+
+        TranscriptIndex.Result result = TranscriptIndex.search(index, "gradient descent", 10);
+
+        assertEquals(List.of(1, 3, 0, 2), segments(result));
+        assertEquals(2, result.hits.get(0).score);
+        assertEquals(1, result.hits.get(2).score);
+    }
+
+    @Test
+    void scoresRepeatedWordOncePerSegment() {
+        TranscriptIndex.Result result = TranscriptIndex.search(
+                index("loss loss loss", "loss function"), "loss function", 5);
+
+        assertEquals(List.of(1, 0), segments(result));
+        assertEquals(1, result.hits.get(1).score);
+    }
+
+    @Test
+    void keepsOnlyTheBestLimitHits() {
+        TranscriptIndex.CourseIndex index = index("a topic", "topic b", "c topic extra", "topic extra");
+
+        assertEquals(List.of(2, 3), segments(TranscriptIndex.search(index, "topic extra", 2)));
+    }
+
+    @Test
+    void findsNothingInAnEmptyIndex() {
+        TranscriptIndex.Result result = TranscriptIndex.search(index(), "anything \"at all\"", 5);
+
+        assertTrue(result.hits.isEmpty());
+        assertEquals(7, result.videoId);
+    }
+}
@@ -0,0 +1,68 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TranscriptParserTest {
+
+    @Test
+    void readsSegmentsAndSkipsTokens() throws IOException {
+        TranscriptParser.ParsedTranscript transcript = TranscriptParser.parse(
+            "{\"success\":true,\"language\":\"en\",\"duration\":12.5,\"text\":\"Hello there. Hola.\"," +
+            "\"segments\":[" +
+            "{\"id\":0,\"start\":0.0,\"end\":3.0,\"text\":\" Hello there. \",\"tokens\":[50364,2425,{\"x\":\"]\"}]}," +
+            "{\"id\":1,\"start\":3.0,\"end\":4.0,\"text\":\"   \"}," +
+            "{\"id\":2,\"start\":4.0,\"end\":5.0,\"text\":\"Hola.\",\"detected_lang\":\"es\"}]," +
+            "\"extra\":{\"ignored\":[1,2,3]}}");
+
+        assertEquals("en", transcript.language);
+        assertEquals("Hello there. Hola.", transcript.text);
+        assertEquals(12.5, transcript.duration);
+        // The blank segment is dropped and the others are renumbered
+        assertEquals(2, transcript.segments.size());
+        assertEquals(0, transcript.segments.get(0).index);
+        assertEquals("Hello there.", transcript.segments.get(0).text);
+        assertNull(transcript.segments.get(0).lang);
+        assertEquals(1, transcript.segments.get(1).index);
+        assertEquals(4.0, transcript.segments.get(1).startTime);
+        assertEquals("es", transcript.segments.get(1).lang);
+    }
+
+    @Test
+    void sharesSpeechTimeBetweenLanguages() throws IOException {
+        TranscriptParser.ParsedTranscript transcript = TranscriptParser.parse(
+            "{\"language\":\"en\",\"segments\":[" +
+            "{\"start\":0,\"end\":3,\"text\":\"one\"}," +
+            "{\"start\":3,\"end\":4,\"text\":\"dos\",\"detected_lang\":\"es\"}]}");
+
+        // Segments without a detected language count for the transcript's language
+        assertEquals("{\"en\":0.75,\"es\":0.25}", transcript.languageDistributionJson());
+    }
+
+    @Test
+    void joinsSegmentTextWhenFullTextIsMissing() throws IOException {
+        TranscriptParser.ParsedTranscript transcript = TranscriptParser.parse(
+            "{\"segments\":[{\"start\":0,\"end\":1,\"text\":\"first\"},{\"start\":1,\"end\":2,\"text\":\"second\"}]}");
+
+        assertEquals("first second", transcript.text);
+    }
+
+    @Test
+    void reportsServiceFailure() {
+        IOException e = assertThrows(IOException.class,
+            () -> TranscriptParser.parse("{\"success\":false,\"error\":\"model not loaded\"}"));
+        assertTrue(e.getMessage().contains("model not loaded"));
+    }
+
+    @Test
+    void reportsInvalidJson() {
+        assertThrows(IOException.class, () -> TranscriptParser.parse("{\"segments\":[{\"start\":0,"));
+        assertThrows(IOException.class, () -> TranscriptParser.parse("<html>Bad Gateway</html>"));
+    }
+}
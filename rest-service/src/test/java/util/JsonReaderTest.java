@@ -0,0 +1,105 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonReaderTest {
+
+    @Test
+    void parsesEveryValueType() {
+        Map<String, Object> object = JsonReader.parseObject(
+            "{\"n\":42,\"d\":-1.5e2,\"t\":true,\"f\":false,\"z\":null,\"s\":\"x\",\"a\":[1,{\"k\":\"v\"}]}");
+
+        assertEquals(42L, object.get("n"));
+        assertEquals(-150.0, object.get("d"));
+        assertEquals(Boolean.TRUE, object.get("t"));
+        assertEquals(Boolean.FALSE, object.get("f"));
+        assertTrue(object.containsKey("z"));
+        assertNull(object.get("z"));
+        assertEquals("x", object.get("s"));
+        List<Object> array = JsonReader.getList(object, "a");
+        assertEquals(1L, array.get(0));
+        assertEquals("v", ((Map<?, ?>) array.get(1)).get("k"));
+    }
+
+    @Test
+    void keepsKeyOrder() {
+        Map<String, Object> object = JsonReader.parseObject("{\"b\":1,\"a\":2,\"c\":3}");
+        assertEquals(Arrays.asList("b", "a", "c"), Arrays.asList(object.keySet().toArray()));
+    }
+
+    @Test
+    void decodesEscapes() {
+        assertEquals("a\"b\\c/\n\té", JsonReader.parse("\"a\\\"b\\\\c\\/\\n\\t\\u00e9\""));
+    }
+
+    @Test
+    void escapesControlCharactersWhenWriting() {
+        String text = "line\nbreak\u0001\u001f\"quoted\"\\";
+        String json = JsonReader.toJson(text);
+
+        for (char c : json.toCharArray()) {
+            assertTrue(c >= 0x20, "unescaped control character in " + json);
+        }
+        assertEquals(text, JsonReader.parse(json));
+    }
+
+    @Test
+    void roundTripsMapsAndLists() {
+        Map<String, Object> object = new LinkedHashMap<>();
+        object.put("id", 7L);
+        object.put("tags", Arrays.asList("a", null, true));
+        object.put("score", 0.5);
+
+        String json = JsonReader.toJson(object);
+
+        assertEquals("{\"id\":7,\"tags\":[\"a\",null,true],\"score\":0.5}", json);
+        assertEquals(object, JsonReader.parseObject(json));
+    }
+
+    @Test
+    void rejectsMalformedJson() {
+        assertThrows(IllegalArgumentException.class, () -> JsonReader.parse("{\"a\":1"));
+        assertThrows(IllegalArgumentException.class, () -> JsonReader.parse("{\"a\":1} x"));
+        assertThrows(IllegalArgumentException.class, () -> JsonReader.parse("{a:1}"));
+        assertThrows(IllegalArgumentException.class, () -> JsonReader.parse(null));
+        assertThrows(IllegalArgumentException.class, () -> JsonReader.parseObject("[1]"));
+    }
+
+    @Test
+    void cursorSkipsValuesItDoesNotRead() {
+        JsonReader reader = JsonReader.cursor(
+            "{\"skip\":{\"x\":[1,\"}]\",{\"y\":null}]},\"text\":\"kept\",\"n\":\"not a number\",\"end\":3}");
+
+        reader.beginObject();
+        assertEquals("skip", reader.nextKey());
+        reader.skipValue();
+        assertEquals("text", reader.nextKey());
+        assertEquals("kept", reader.nextString());
+        assertEquals("n", reader.nextKey());
+        assertNull(reader.nextNumber());
+        assertEquals("end", reader.nextKey());
+        assertEquals(3.0, reader.nextNumber());
+        assertNull(reader.nextKey());
+    }
+
+    @Test
+    void cursorWalksArrays() {
+        JsonReader reader = JsonReader.cursor("[ 1 , 2,3 ]");
+        double sum = 0;
+        reader.beginArray();
+        while (reader.nextElement()) {
+            sum += reader.nextNumber();
+        }
+        assertEquals(6.0, sum);
+    }
+}
@@ -352,11 +352,13 @@
                 const formData = new URLSearchParams();
                 formData.append('question', question);
                 
-                const response = await fetch(apiBaseUrl + '/course/' + courseId + '/chat', {
+                // Streamed as Server-Sent Events so the answer appears while it is generated
+                const response = await fetch(apiBaseUrl + '/course/' + courseId + '/chat/stream', {
                     method: 'POST',
                     headers: {
                         'Authorization': 'Bearer ' + token,
-                        'Content-Type': 'application/x-www-form-urlencoded'
+                        'Content-Type': 'application/x-www-form-urlencoded',
+                        'Accept': 'text/event-stream'
                     },
                     body: formData
                 });
@@ -373,10 +375,45 @@
                     throw new Error(errorMsg);
                 }
                 
-                const data = await response.json();
-                
-                document.getElementById(loadingId).remove();
-                addMessage('assistant', data.answer || data.error || 'No response received', false, data.sources);
+                const bubble = document.querySelector('#' + loadingId + ' .message-bubble');
+                const reader = response.body.getReader();
+                const decoder = new TextDecoder();
+                let buffer = '';
+                let answer = '';
+                let sources = null;
+                let finished = false;
+
+                while (!finished) {
+                    const { value, done } = await reader.read();
+                    if (done) break;
+                    buffer += decoder.decode(value, { stream: true });
+
+                    let separator;
+                    while ((separator = buffer.indexOf('\n\n')) >= 0) {
+                        const event = parseSseEvent(buffer.slice(0, separator));
+                        buffer = buffer.slice(separator + 2);
+                        if (!event) continue;
+
+                        if (event.name === 'meta') {
+                            sources = event.data.sources;
+                        } else if (event.name === 'token') {
+                            answer += event.data.text;
+                            bubble.textContent = answer;
+                            scrollToBottom();
+                        } else if (event.name === 'error') {
+                            throw new Error(event.data.error || 'Failed to get response');
+                        } else if (event.name === 'done') {
+                            finished = true;
+                        }
+                    }
+                }
+
+                if (!answer) {
+                    bubble.textContent = 'No response received';
+                }
+                if (sources && sources.length > 0) {
+                    appendSources(bubble.parentElement, sources);
+                }
                 
             } catch (error) {
                 console.error('Error:', error);
@@ -391,6 +428,38 @@
             }
         }
         
+        function parseSseEvent(frame) {
+            let name = 'message';
+            const data = [];
+            for (const line of frame.split('\n')) {
+                if (line.startsWith('event:')) {
+                    name = line.slice(6).trim();
+                } else if (line.startsWith('data:')) {
+                    data.push(line.slice(5).replace(/^ /, ''));
+                }
+            }
+            if (data.length === 0) return null;
+            try {
+                return { name: name, data: JSON.parse(data.join('\n')) };
+            } catch (e) {
+                return null;
+            }
+        }
+
+        function appendSources(messageContent, sources) {
+            const sourcesDiv = document.createElement('div');
+            sourcesDiv.className = 'message-sources';
+            sourcesDiv.textContent = 'Sources: ' + sources.length + ' reference(s)';
+            messageContent.appendChild(sourcesDiv);
+        }
+
+        function scrollToBottom() {
+            messagesContainer.scrollTo({
+                top: messagesContainer.scrollHeight,
+                behavior: 'smooth'
+            });
+        }
+
         function addMessage(role, content, isLoading = false, sources = null) {
             const emptyChat = messagesContainer.querySelector('.empty-chat');
             if (emptyChat) {
@@ -425,22 +494,14 @@
             messageContent.appendChild(bubble);
             
             if (sources && sources.length > 0) {
-                const sourcesDiv = document.createElement('div');
-                sourcesDiv.className = 'message-sources';
-                sourcesDiv.textContent = 'Sources: ' + sources.length + ' reference(s)';
-                messageContent.appendChild(sourcesDiv);
+                appendSources(messageContent, sources);
             }
             
             message.appendChild(avatar);
             message.appendChild(messageContent);
             messagesContainer.appendChild(message);
             
-            setTimeout(() => {
-                messagesContainer.scrollTo({
-                    top: messagesContainer.scrollHeight,
-                    behavior: 'smooth'
-                });
-            }, 100);
+            setTimeout(scrollToBottom, 100);
             
             return messageId;
         }
@@ -463,15 +463,37 @@
         }
         
         // Auto-refresh for processing courses (but not ERROR status)
-        setInterval(() => {
-            const processingCards = document.querySelectorAll('.status-PROCESSING');
-            const errorCards = document.querySelectorAll('.status-ERROR');
-            // Only refresh if there are processing courses and no errors
-            if (processingCards.length > 0 && errorCards.length === 0) {
-                console.log('Auto-refreshing courses (processing detected)');
-                loadCourses();
-            }
-        }, 10000); // Refresh every 10 seconds if there are processing courses
+        function startPolling() {
+            setInterval(() => {
+                const processingCards = document.querySelectorAll('.status-PROCESSING');
+                const errorCards = document.querySelectorAll('.status-ERROR');
+                // Only refresh if there are processing courses and no errors
+                if (processingCards.length > 0 && errorCards.length === 0) {
+                    console.log('Auto-refreshing courses (processing detected)');
+                    loadCourses();
+                }
+            }, 10000); // Refresh every 10 seconds if there are processing courses
+        }
+
+        if (window.EventSource && token) {
+            // Reload the list only when a course actually changes status
+            const events = new EventSource(apiBaseUrl + '/events?courses=all&token=' + encodeURIComponent(token));
+            let opened = false;
+            events.onopen = () => {
+                // After a reconnect, catch up on changes sent while disconnected
+                if (opened) loadCourses();
+                opened = true;
+            };
+            events.addEventListener('course-status', () => loadCourses());
+            events.onerror = () => {
+                if (!opened) {
+                    events.close();
+                    startPolling();
+                }
+            };
+        } else {
+            startPolling();
+        }
 
         loadCourses();
     </script>
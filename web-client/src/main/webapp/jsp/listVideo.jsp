@@ -448,61 +448,110 @@
         function updateVideoStatus(videoId) {
             fetch(API_BASE_URL + '/video/status/' + videoId)
                 .then(response => response.json())
-                .then(data => {
-                    const card = document.querySelector('[data-video-id="' + videoId + '"]');
-                    if (!card) return;
+                .then(data => applyVideoStatus(videoId, data))
+                .catch(err => console.error('Error fetching video status:', err));
+        }
 
-                    const statusBadge = card.querySelector('.status-badge');
-                    const progressContainer = card.querySelector('.progress-bar-container');
-                    const progressBar = card.querySelector('.progress-bar');
-                    const progressText = card.querySelector('.progress-text');
-                    const actionsDiv = card.querySelector('.video-actions');
+        function applyVideoStatus(videoId, data) {
+            const card = document.querySelector('[data-video-id="' + videoId + '"]');
+            if (!card) return;
 
-                    statusBadge.className = 'status-badge';
-                    statusBadge.textContent = data.status;
+            const statusBadge = card.querySelector('.status-badge');
+            const progressContainer = card.querySelector('.progress-bar-container');
+            const progressBar = card.querySelector('.progress-bar');
+            const progressText = card.querySelector('.progress-text');
+            const actionsDiv = card.querySelector('.video-actions');
 
-                    if (data.status === 'READY') {
-                        statusBadge.classList.add('status-ready');
-                        statusBadge.textContent = 'Ready';
-                        if (progressContainer) progressContainer.style.display = 'none';
-                        window.location.reload();
-                    } else if (data.status === 'PARTIAL_READY') {
-                        statusBadge.classList.add('status-partial-ready');
-                        statusBadge.textContent = '360p Available';
-                        if (progressBar) {
-                            progressBar.style.width = '70%';
-                            progressBar.classList.add('processing');
-                        }
-                        if (progressText) progressText.textContent = 'Higher qualities transcoding...';
-                        window.location.reload();
-                    } else if (data.status === 'PROCESSING') {
-                        statusBadge.classList.add('status-processing');
-                        if (progressBar) {
-                            progressBar.style.width = '50%';
-                            progressBar.classList.add('processing');
-                        }
-                        if (progressText) progressText.textContent = 'Transcoding video...';
-                    } else if (data.status === 'UPLOADING') {
-                        statusBadge.classList.add('status-uploading');
-                        if (progressBar) {
-                            progressBar.style.width = '20%';
-                            progressBar.classList.remove('processing');
-                        }
-                        if (progressText) progressText.textContent = 'Upload complete, waiting for transcoding...';
-                    } else if (data.status === 'ERROR') {
-                        statusBadge.classList.add('status-error');
-                        if (progressContainer) progressContainer.style.display = 'none';
-                        window.location.reload();
+            statusBadge.className = 'status-badge';
+            statusBadge.textContent = data.status;
+
+            if (data.status === 'READY') {
+                statusBadge.classList.add('status-ready');
+                statusBadge.textContent = 'Ready';
+                if (progressContainer) progressContainer.style.display = 'none';
+                window.location.reload();
+            } else if (data.status === 'PARTIAL_READY') {
+                statusBadge.classList.add('status-partial-ready');
+                statusBadge.textContent = '360p Available';
+                if (progressBar) {
+                    progressBar.style.width = '70%';
+                    progressBar.classList.add('processing');
+                }
+                if (progressText) progressText.textContent = 'Higher qualities transcoding...';
+                window.location.reload();
+            } else if (data.status === 'PROCESSING') {
+                statusBadge.classList.add('status-processing');
+                showProgress(card, data.transcode ? data.transcode.progress : null);
+            } else if (data.status === 'UPLOADING') {
+                statusBadge.classList.add('status-uploading');
+                if (progressBar) {
+                    progressBar.style.width = '20%';
+                    progressBar.classList.remove('processing');
+                }
+                if (progressText) progressText.textContent = 'Upload complete, waiting for transcoding...';
+            } else if (data.status === 'ERROR') {
+                statusBadge.classList.add('status-error');
+                if (progressContainer) progressContainer.style.display = 'none';
+                window.location.reload();
+            }
+        }
+
+        function showProgress(card, progress) {
+            const progressBar = card.querySelector('.progress-bar');
+            const progressText = card.querySelector('.progress-text');
+            if (progressBar) {
+                progressBar.style.width = (progress && progress.percent !== null ? Math.max(progress.percent, 5) : 50) + '%';
+                progressBar.classList.add('processing');
+            }
+            if (progressText) {
+                if (progress && progress.percent !== null) {
+                    let text = 'Transcoding ' + progress.rendition + '... ' + Math.floor(progress.percent) + '%';
+                    if (progress.etaSeconds !== null) {
+                        text += ' (about ' + Math.max(1, Math.round(progress.etaSeconds / 60)) + ' min left)';
                     }
-                })
-                .catch(err => console.error('Error fetching video status:', err));
+                    progressText.textContent = text;
+                } else {
+                    progressText.textContent = 'Transcoding video...';
+                }
+            }
         }
 
-        if (processingVideos.length > 0) {
+        function startPolling() {
             setInterval(function() {
                 processingVideos.forEach(videoId => updateVideoStatus(videoId));
             }, 5000);
         }
+
+        if (processingVideos.length > 0) {
+            if (window.EventSource) {
+                // Status changes and progress are pushed by the server
+                const events = new EventSource(API_BASE_URL + '/events?videos=' + processingVideos.join(','));
+                let opened = false;
+                events.onopen = () => {
+                    // After a reconnect, catch up on changes sent while disconnected
+                    if (opened) processingVideos.forEach(videoId => updateVideoStatus(videoId));
+                    opened = true;
+                };
+                events.addEventListener('video-status', e => {
+                    const data = JSON.parse(e.data);
+                    applyVideoStatus(data.id, { status: data.status });
+                });
+                events.addEventListener('video-progress', e => {
+                    const data = JSON.parse(e.data);
+                    const card = document.querySelector('[data-video-id="' + data.id + '"]');
+                    if (card && data.progress) showProgress(card, data.progress);
+                });
+                events.onerror = () => {
+                    // The browser reconnects on its own; fall back to polling if the stream never opened
+                    if (!opened) {
+                        events.close();
+                        startPolling();
+                    }
+                };
+            } else {
+                startPolling();
+            }
+        }
     </script>
 </body>
 </html>
@@ -115,7 +115,8 @@
             let availableAudioQualities = [];
 
             // Estado para re-inicializar manteniendo posición
-            let lastTime = 0;
+            // ?t=<segundos> (enlaces de búsqueda) empieza el vídeo en ese punto
+            let lastTime = parseFloat(new URLSearchParams(window.location.search).get('t')) || 0;
             let lastWasPaused = true;
             let forcedVideoRepId = null;   // null = auto
             let forcedAudioRepId = null;   // opcional